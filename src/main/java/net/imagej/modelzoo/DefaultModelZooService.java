@@ -29,6 +29,7 @@
 package net.imagej.modelzoo;
 
 import io.bioimage.specification.ModelSpecification;
+import io.bioimage.specification.io.SpecificationWriter;
 import net.imagej.Dataset;
 import net.imagej.DatasetService;
 import net.imagej.modelzoo.consumer.DefaultModelZooPrediction;
@@ -37,18 +38,24 @@ import net.imagej.modelzoo.consumer.ModelZooPredictionOptions;
 import net.imagej.modelzoo.consumer.command.DefaultModelZooBatchPredictionCommand;
 import net.imagej.modelzoo.consumer.command.DefaultSingleImagePredictionCommand;
 import net.imagej.modelzoo.consumer.command.SingleImagePredictionCommand;
+import net.imagej.modelzoo.consumer.model.ModelZooModel;
 import net.imagej.modelzoo.consumer.model.prediction.ImageInput;
 import net.imagej.modelzoo.consumer.model.prediction.PredictionInput;
 import net.imagej.modelzoo.consumer.model.prediction.PredictionOutput;
 import net.imagej.modelzoo.consumer.sanitycheck.DefaultModelZooSanityCheckFromFileCommand;
 import net.imagej.modelzoo.consumer.sanitycheck.DefaultModelZooSanityCheckFromImageCommand;
+import net.imagej.modelzoo.consumer.tiling.TilingPlanner;
 import net.imagej.modelzoo.io.ModelZooIOService;
+import net.imagej.modelzoo.metrics.ModelZooMetrics;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.type.NativeType;
 import net.imglib2.type.numeric.RealType;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.scijava.Context;
 import org.scijava.command.CommandInfo;
 import org.scijava.command.CommandService;
+import org.scijava.io.location.FileLocation;
+import org.scijava.io.location.Location;
 import org.scijava.module.Module;
 import org.scijava.module.ModuleException;
 import org.scijava.plugin.Parameter;
@@ -91,6 +98,10 @@ public class DefaultModelZooService extends AbstractService implements ModelZooS
 	private final static String groundTruthParameter = "inputGroundTruth";
 	private final static String outputParameter = "output";
 
+	private final ModelZooModelCache modelCache = new ModelZooModelCache(2);
+	private final ModelZooMetrics metrics = new ModelZooMetrics();
+	private final TilingPlanner tilingPlanner = new TilingPlanner();
+
 	@Override
 	public ModelZooIOService io() {
 		return io;
@@ -166,6 +177,69 @@ public class DefaultModelZooService extends AbstractService implements ModelZooS
 		return prediction;
 	}
 
+	@Override
+	public ModelZooModel loadModel(ModelZooArchive archive) throws Exception {
+		return modelCache.acquire(getCacheKey(archive), archive::createModelInstance);
+	}
+
+	@Override
+	public void releaseModel(ModelZooModel model) {
+		modelCache.release(model);
+	}
+
+	@Override
+	public void invalidateModelCache(ModelZooArchive archive) {
+		modelCache.invalidate(getCacheKeyPrefix(archive));
+	}
+
+	@Override
+	public void clearModelCache() {
+		modelCache.clear();
+	}
+
+	@Override
+	public void setModelCacheSize(int size) {
+		modelCache.setCapacity(size);
+	}
+
+	@Override
+	public ModelZooMetrics metrics() {
+		return metrics;
+	}
+
+	@Override
+	public TilingPlanner tilingPlanner() {
+		return tilingPlanner;
+	}
+
+	@Override
+	public void dispose() {
+		modelCache.clear();
+	}
+
+	private static String getCacheKeyPrefix(ModelZooArchive archive) {
+		Location location = archive.getLocation();
+		return (location == null ? "" : location.getURI().toString()) + "|";
+	}
+
+	private static String getCacheKey(ModelZooArchive archive) {
+		long lastModified = 0;
+		if (archive.getLocation() instanceof FileLocation) {
+			lastModified = ((FileLocation) archive.getLocation()).getFile().lastModified();
+		}
+		return getCacheKeyPrefix(archive) + lastModified + "|" + getSpecificationHash(archive.getSpecification());
+	}
+
+	private static String getSpecificationHash(ModelSpecification specification) {
+		if (specification == null) return "";
+		try {
+			return DigestUtils.sha1Hex(SpecificationWriter.write(specification));
+		} catch (Exception e) {
+			// the specification cannot be serialized, fall back to the instance
+			return String.valueOf(System.identityHashCode(specification));
+		}
+	}
+
 	@Override
 	public void predictInteractive(ModelZooArchive trainedModel) throws ModuleException {
 		Module mycommand = getModule(trainedModel.getSpecification(), SingleImagePredictionCommand.class);
@@ -0,0 +1,193 @@
+/*-
+ * #%L
+ * This is the bioimage.io modelzoo library for ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2020 Center for Systems Biology Dresden
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imagej.modelzoo;
+
+import net.imagej.modelzoo.consumer.model.ModelZooModel;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * Keeps loaded {@link ModelZooModel} instances around so that consecutive predictions with the same model
+ * don't have to load it again. Least recently used models are disposed once the capacity is exceeded.
+ * A cached model is handed out to one prediction at a time, concurrent requests receive a new, uncached instance.
+ */
+public class ModelZooModelCache {
+
+	private static class Entry {
+		final String key;
+		final ModelZooModel model;
+		boolean inUse = false;
+		boolean evicted = false;
+
+		Entry(String key, ModelZooModel model) {
+			this.key = key;
+			this.model = model;
+		}
+	}
+
+	private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private final List<Entry> evictedInUse = new ArrayList<>();
+	private int capacity;
+	private int hits = 0;
+	private int misses = 0;
+
+	public ModelZooModelCache(int capacity) {
+		this.capacity = capacity;
+	}
+
+	/**
+	 * @param key the key identifying the model
+	 * @param loader loads the model in case it is not cached or the cached instance is currently in use
+	 * @return a model which has to be handed back via {@link #release(ModelZooModel)} after usage
+	 */
+	public ModelZooModel acquire(String key, Callable<ModelZooModel> loader) throws Exception {
+		synchronized (this) {
+			Entry entry = entries.get(key);
+			if (entry != null && !entry.inUse) {
+				entry.inUse = true;
+				hits++;
+				return entry.model;
+			}
+			misses++;
+		}
+		ModelZooModel model = loader.call();
+		if (model == null || !model.isInitialized() || capacity < 1) return model;
+		synchronized (this) {
+			if (entries.containsKey(key)) {
+				// the cached instance is in use, the new instance will not be cached
+				return model;
+			}
+			Entry entry = new Entry(key, model);
+			entry.inUse = true;
+			entries.put(key, entry);
+			evict();
+		}
+		return model;
+	}
+
+	/**
+	 * Resets a model after usage so that it can be reused.
+	 * Models not managed by this cache or not supporting {@link ModelZooModel#reset()} are disposed.
+	 */
+	public void release(ModelZooModel model) {
+		if (model == null) return;
+		Entry entry = find(model);
+		if (entry == null || entry.evicted) {
+			model.dispose();
+			return;
+		}
+		if (!model.reset()) {
+			synchronized (this) {
+				entries.remove(entry.key);
+			}
+			model.dispose();
+			return;
+		}
+		synchronized (this) {
+			entry.inUse = false;
+			evict();
+		}
+	}
+
+	/**
+	 * Disposes all cached models with keys starting with the given prefix.
+	 */
+	public synchronized void invalidate(String keyPrefix) {
+		Iterator<Entry> iterator = entries.values().iterator();
+		while (iterator.hasNext()) {
+			Entry entry = iterator.next();
+			if (entry.key.startsWith(keyPrefix)) {
+				iterator.remove();
+				dispose(entry);
+			}
+		}
+	}
+
+	public synchronized void clear() {
+		invalidate("");
+	}
+
+	public synchronized void setCapacity(int capacity) {
+		this.capacity = capacity;
+		evict();
+	}
+
+	public synchronized int getCapacity() {
+		return capacity;
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public synchronized int getHits() {
+		return hits;
+	}
+
+	public synchronized int getMisses() {
+		return misses;
+	}
+
+	private synchronized Entry find(ModelZooModel model) {
+		for (Entry entry : entries.values()) {
+			if (entry.model == model) return entry;
+		}
+		for (Entry entry : evictedInUse) {
+			if (entry.model == model) {
+				evictedInUse.remove(entry);
+				return entry;
+			}
+		}
+		return null;
+	}
+
+	private void evict() {
+		Iterator<Entry> iterator = entries.values().iterator();
+		while (entries.size() > capacity && iterator.hasNext()) {
+			Entry entry = iterator.next();
+			iterator.remove();
+			dispose(entry);
+		}
+	}
+
+	private void dispose(Entry entry) {
+		if (entry.inUse) {
+			// disposed as soon as the model gets released
+			entry.evicted = true;
+			evictedInUse.add(entry);
+		} else {
+			entry.model.dispose();
+		}
+	}
+}
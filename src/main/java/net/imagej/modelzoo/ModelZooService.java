@@ -31,8 +31,11 @@ package net.imagej.modelzoo;
 import net.imagej.ImageJService;
 import net.imagej.modelzoo.consumer.ModelZooPrediction;
 import net.imagej.modelzoo.consumer.ModelZooPredictionOptions;
+import net.imagej.modelzoo.consumer.model.ModelZooModel;
 import net.imagej.modelzoo.consumer.model.prediction.PredictionOutput;
+import net.imagej.modelzoo.consumer.tiling.TilingPlanner;
 import net.imagej.modelzoo.io.ModelZooIOService;
+import net.imagej.modelzoo.metrics.ModelZooMetrics;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.type.NativeType;
 import net.imglib2.type.numeric.RealType;
@@ -66,4 +69,40 @@ public interface ModelZooService extends ImageJService {
 	}
 
 	ModelZooPrediction getPrediction(ModelZooArchive model, ModelZooPredictionOptions options);
+
+	/**
+	 * @return a loaded instance of the model, reused from previous predictions if possible.
+	 * Hand it back via {@link #releaseModel(ModelZooModel)} after usage.
+	 */
+	ModelZooModel loadModel(ModelZooArchive archive) throws Exception;
+
+	/**
+	 * Keeps the model loaded for consecutive predictions in case it is cached, disposes it otherwise.
+	 */
+	void releaseModel(ModelZooModel model);
+
+	/**
+	 * Disposes all cached instances of the given model.
+	 */
+	void invalidateModelCache(ModelZooArchive archive);
+
+	/**
+	 * Disposes all cached model instances.
+	 */
+	void clearModelCache();
+
+	/**
+	 * @param size the maximum number of models kept loaded (0 = no caching)
+	 */
+	void setModelCacheSize(int size);
+
+	/**
+	 * @return timings and counters collected by all predictions run in this context
+	 */
+	ModelZooMetrics metrics();
+
+	/**
+	 * @return planner choosing and remembering tiling configurations which fit into a memory budget
+	 */
+	TilingPlanner tilingPlanner();
 }
@@ -33,6 +33,7 @@ import net.imagej.DatasetService;
 import net.imagej.modelzoo.ModelZooArchive;
 import net.imagej.modelzoo.ModelZooService;
 import net.imagej.modelzoo.consumer.model.ModelZooModel;
+import net.imagej.modelzoo.consumer.model.SessionConfiguration;
 import net.imagej.modelzoo.consumer.model.node.ImageNode;
 import net.imagej.modelzoo.consumer.model.node.ModelZooNode;
 import net.imagej.modelzoo.consumer.model.node.processor.NodeProcessor;
@@ -40,11 +41,17 @@ import net.imagej.modelzoo.consumer.model.node.processor.NodeProcessorException;
 import net.imagej.modelzoo.consumer.model.prediction.PredictionInput;
 import net.imagej.modelzoo.consumer.model.prediction.PredictionOutput;
 import net.imagej.modelzoo.consumer.preprocessing.InputMappingHandler;
+import net.imagej.modelzoo.consumer.tiling.TilingOverhead;
+import net.imagej.modelzoo.consumer.tiling.TilingStrategy;
+import net.imagej.modelzoo.metrics.ModelZooMetrics;
 import org.scijava.Context;
 import org.scijava.log.LogService;
 import org.scijava.plugin.Parameter;
+import org.scijava.plugin.PluginInfo;
+import org.scijava.plugin.PluginService;
 
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -64,6 +71,9 @@ public abstract class AbstractModelZooPrediction<I extends PredictionInput, O ex
 	@Parameter
 	private DatasetService datasetService;
 
+	@Parameter
+	private PluginService pluginService;
+
 	private ModelZooPredictionOptions options = ModelZooPredictionOptions.options();
 
 	private final InputMappingHandler inputHandling;
@@ -76,6 +86,7 @@ public abstract class AbstractModelZooPrediction<I extends PredictionInput, O ex
 	private I input;
 	protected boolean canceled;
 	private TiledPredictionExecutor executor;
+	private TilingOverhead tilingOverhead;
 	private List<PredictionCompletedCallback> onCompletedCallbacks;
 	public AbstractModelZooPrediction() {
 		inputHandling = new InputMappingHandler();
@@ -96,26 +107,57 @@ public abstract class AbstractModelZooPrediction<I extends PredictionInput, O ex
 	public void run() throws OutOfMemoryError, Exception {
 
 		input.attachToInputHandler(inputHandling);
-		ModelZooModel model = loadModel(modelArchive);
+		ModelZooMetrics metrics = metrics();
+		metrics.count(ModelZooMetrics.PREDICTIONS, 1);
+		ModelZooModel model;
+		try (ModelZooMetrics.Timer ignored = metrics.start(ModelZooMetrics.LOAD_MODEL)) {
+			model = loadModel(modelArchive);
+		}
 		if (model == null || !validateModel(model)) return;
 		try {
 			if(canceled) return;
-			preprocessing(model);
+			try (ModelZooMetrics.Timer ignored = metrics.start(ModelZooMetrics.PREPROCESSING)) {
+				preprocessing(model);
+			}
 			if(canceled) return;
-			executePrediction(model);
+			try (ModelZooMetrics.Timer ignored = metrics.start(ModelZooMetrics.EXECUTE_PREDICTION)) {
+				executePrediction(model);
+			}
 			if(canceled) return;
-			postprocessing(model);
+			try (ModelZooMetrics.Timer ignored = metrics.start(ModelZooMetrics.POSTPROCESSING)) {
+				postprocessing(model);
+			}
 			if(canceled) return;
-			this.output = createOutput(model);
+			try (ModelZooMetrics.Timer ignored = metrics.start(ModelZooMetrics.CREATE_OUTPUT)) {
+				this.output = createOutput(model);
+			}
 			log.info("Prediction done.");
 		} finally {
 			for (PredictionCompletedCallback onCompletedCallback : onCompletedCallbacks) {
 				onCompletedCallback.run();
 			}
-			model.dispose();
+			releaseModel(model);
+			dumpMetrics(metrics);
 		}
 	}
 
+	private void dumpMetrics(ModelZooMetrics metrics) {
+		Path metricsFile = options.values.metricsFile();
+		if(metricsFile == null) return;
+		try {
+			metrics.dump(metricsFile);
+		} catch (IOException e) {
+			log.error("Could not write prediction metrics to " + metricsFile, e);
+		}
+	}
+
+	/**
+	 * @return the metrics collected by the {@link ModelZooService}
+	 */
+	protected ModelZooMetrics metrics() {
+		return modelZooService != null ? modelZooService.metrics() : ModelZooMetrics.disabled();
+	}
+
 	@Override
 	public void setInput(I input) {
 		this.input = input;
@@ -141,21 +183,31 @@ public abstract class AbstractModelZooPrediction<I extends PredictionInput, O ex
 	protected boolean validateModel(ModelZooModel model) {
 		if (model == null || !model.isInitialized()) {
 			log.error("Model does not exist or cannot be loaded. Exiting.");
-			if(model != null) model.dispose();
+			if(model != null) releaseModel(model);
 			return false;
 		}
 		if(!inputValidationAndMapping(model)) {
 			log.error("Model and input data do not match. Exiting.");
-			model.dispose();
+			releaseModel(model);
 			return false;
 		}
 		return true;
 	}
 
 	protected ModelZooModel loadModel(ModelZooArchive modelArchive) throws Exception {
+		if(useModelCache()) return modelZooService.loadModel(modelArchive);
 		return modelArchive.createModelInstance();
 	}
 
+	protected void releaseModel(ModelZooModel model) {
+		if(useModelCache()) modelZooService.releaseModel(model);
+		else model.dispose();
+	}
+
+	private boolean useModelCache() {
+		return options.values.cacheModel() && modelZooService != null;
+	}
+
 	protected void preprocessing(ModelZooModel model) throws NodeProcessorException {
 		for (ModelZooNode<?> inputNode : model.getInputNodes()) {
 			for (NodeProcessor processor : inputNode.getProcessors()) {
@@ -201,7 +253,22 @@ public abstract class AbstractModelZooPrediction<I extends PredictionInput, O ex
 		executor.setTilingEnabled(options.values.tilingEnabled());
 		executor.setNumberOfTiles(options.values.numberOfTiles());
 		executor.setBatchSize(options.values.batchSize());
+		executor.setPipelineDepth(options.values.pipelineDepth());
+		executor.setTilesPerBatch(options.values.tilesPerBatch());
 		executor.setCacheDir(options.values.cacheDirectory());
+		executor.setOutputDir(options.values.chunkedOutputDirectory());
+		executor.setMetrics(metrics());
+		executor.setProbeTiling(options.values.probeTiling());
+		executor.setTilingStrategy(createTilingStrategy());
+		executor.setBlending(options.values.tileBlending());
+		executor.setHaloScale(options.values.haloScale());
+		executor.setParallelWorkers(options.values.parallelWorkers());
+		int workers = Math.max(1, options.values.parallelWorkers());
+		model.setParallelism(options.values.sessionPool() ? workers : 1, getSessionConfiguration());
+		executor.setWarmUp(options.values.warmUp());
+		if(options.values.memoryBudget() > 0 && modelZooService != null) {
+			executor.planTiling(modelZooService.tilingPlanner(), getPlanningKey(), options.values.memoryBudget());
+		}
 		boolean isOutOfMemory = true;
 		boolean canHandleOutOfMemory = true;
 
@@ -211,14 +278,44 @@ public abstract class AbstractModelZooPrediction<I extends PredictionInput, O ex
 				isOutOfMemory = false;
 			} catch (final OutOfMemoryError e) {
 				log.debug(e);
+				metrics().count(ModelZooMetrics.OOM_RETRIES, 1);
 				canHandleOutOfMemory = executor.increaseTiling();
 				options.numberOfTiles(executor.getNumberOfTiles());
 				options.batchSize(executor.getBatchSize());
+				options.tilesPerBatch(executor.getTilesPerBatch());
 				if(!canHandleOutOfMemory) throw new OutOfMemoryError();
 			} finally {
 				executor.dispose();
 			}
 		}
+		tilingOverhead = executor.getTilingOverhead();
+	}
+
+	private SessionConfiguration getSessionConfiguration() {
+		SessionConfiguration configuration = new SessionConfiguration();
+		if(options.values.intraOpThreads() > 0) configuration.intraOpThreads(options.values.intraOpThreads());
+		if(options.values.interOpThreads() > 0) configuration.interOpThreads(options.values.interOpThreads());
+		return configuration.withDefaults(options.values.sessionConfiguration());
+	}
+
+	private TilingStrategy createTilingStrategy() {
+		String name = options.values.tilingStrategy();
+		for (PluginInfo<TilingStrategy> info : pluginService.getPluginsOfType(TilingStrategy.class)) {
+			if(info.getName().equals(name)) {
+				TilingStrategy strategy = pluginService.createInstance(info);
+				strategy.setup(options.values);
+				return strategy;
+			}
+		}
+		log.warn("Could not find tiling strategy " + name + ", using the default tiling.");
+		return null;
+	}
+
+	private String getPlanningKey() {
+		if(modelArchive == null) return "";
+		String key = modelArchive.getLocation() != null ? modelArchive.getLocation().getURI().toString() : "";
+		if(modelArchive.getSpecification() != null) key += ":" + modelArchive.getSpecification().getName();
+		return key;
 	}
 
 	protected boolean inputValidationAndMapping(ModelZooModel model) {
@@ -230,6 +327,13 @@ public abstract class AbstractModelZooPrediction<I extends PredictionInput, O ex
 		return inputHandling.getSuccess();
 	}
 
+	/**
+	 * @return how many voxels were predicted by the last prediction compared to the size of the input (null = not tiled)
+	 */
+	public TilingOverhead getTilingOverhead() {
+		return tilingOverhead;
+	}
+
 	@Override
 	public Map<String, Object> getOutputs() {
 		return outputs;
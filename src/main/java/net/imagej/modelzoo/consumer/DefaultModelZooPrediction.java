@@ -33,6 +33,7 @@ import net.imagej.modelzoo.consumer.model.ModelZooModel;
 import net.imagej.modelzoo.consumer.model.node.ImageNode;
 import net.imagej.modelzoo.consumer.model.node.ModelZooNode;
 import net.imagej.modelzoo.consumer.model.prediction.DefaultPredictionOutput;
+import net.imagej.modelzoo.consumer.model.prediction.ChunkedImageSource;
 import net.imagej.modelzoo.consumer.model.prediction.ImageInput;
 import net.imagej.modelzoo.consumer.sanitycheck.ImageToImageSanityCheck;
 import net.imagej.modelzoo.consumer.sanitycheck.SanityCheck;
@@ -84,6 +85,10 @@ public class DefaultModelZooPrediction extends AbstractModelZooPrediction<ImageI
 		setInput(new ImageInput<>(name, image, axes));
 	}
 
+	public <T extends RealType<T> & NativeType<T>> void setInput(String name, ChunkedImageSource<T> source, String axes) {
+		setInput(new ImageInput<>(name, source, axes));
+	}
+
 	@Override
 	public SanityCheck getSanityCheck() {
 		return new ImageToImageSanityCheck(context());
@@ -28,6 +28,8 @@
  */
 package net.imagej.modelzoo.consumer;
 
+import net.imagej.modelzoo.consumer.model.SessionConfiguration;
+import net.imagej.modelzoo.consumer.tiling.TileBlending;
 import net.imglib2.cache.img.DiskCachedCellImgOptions;
 import org.scijava.optional.AbstractOptions;
 
@@ -43,6 +45,25 @@ public class ModelZooPredictionOptions extends AbstractOptions<ModelZooPredictio
 	private static final String cacheDirectoryKey = "cacheDirectory";
 	private static final String showProgressDialogKey = "showProgressDialog";
 	private static final String convertIntoInputFormatKey = "convertIntoInputFormat";
+	private static final String pipelineDepthKey = "pipelineDepth";
+	private static final String parallelWorkersKey = "parallelWorkers";
+	private static final String sessionPoolKey = "sessionPool";
+	private static final String intraOpThreadsKey = "intraOpThreads";
+	private static final String interOpThreadsKey = "interOpThreads";
+	private static final String sessionConfigurationKey = "sessionConfiguration";
+	private static final String warmUpKey = "warmUp";
+	private static final String cacheModelKey = "cacheModel";
+	private static final String percentileAccuracyKey = "percentileAccuracy";
+	private static final String exactPercentilesKey = "exactPercentiles";
+	private static final String tilesPerBatchKey = "tilesPerBatch";
+	private static final String metricsFileKey = "metricsFile";
+	private static final String memoryBudgetKey = "memoryBudget";
+	private static final String probeTilingKey = "probeTiling";
+	private static final String chunkedOutputDirectoryKey = "chunkedOutputDirectory";
+	private static final String tilingStrategyKey = "tilingStrategy";
+	private static final String tileSizeKey = "tileSize";
+	private static final String tileBlendingKey = "tileBlending";
+	private static final String haloScaleKey = "haloScale";
 
 	/**
 	 * @return Default {@link ModelZooPredictionOptions} instance
@@ -88,7 +109,149 @@ public class ModelZooPredictionOptions extends AbstractOptions<ModelZooPredictio
 	}
 
 	/**
-	 * see (@link {@link DiskCachedCellImgOptions#cacheDirectory(Path)}
+	 * @param pipelineDepth How many tiles can be prepared ahead and written back while another tile is predicted (0 = sequential tile processing)
+	 */
+	public ModelZooPredictionOptions pipelineDepth(int pipelineDepth) {
+		return setValue(pipelineDepthKey, pipelineDepth);
+	}
+
+	/**
+	 * @param parallelWorkers How many threads predict tiles concurrently, taking them from a shared queue (1 = one tile at a time).
+	 *                        Each worker predicts single tiles, tiles are not stacked.
+	 */
+	public ModelZooPredictionOptions parallelWorkers(int parallelWorkers) {
+		return setValue(parallelWorkersKey, parallelWorkers);
+	}
+
+	/**
+	 * @param sessionPool Whether each parallel worker gets its own session of the model instead of all workers sharing one session
+	 */
+	public ModelZooPredictionOptions sessionPool(boolean sessionPool) {
+		return setValue(sessionPoolKey, sessionPool);
+	}
+
+	/**
+	 * @param intraOpThreads How many threads the model uses within a single operation (0 = see {@link #sessionConfiguration(SessionConfiguration)})
+	 */
+	public ModelZooPredictionOptions intraOpThreads(int intraOpThreads) {
+		return setValue(intraOpThreadsKey, intraOpThreads);
+	}
+
+	/**
+	 * @param interOpThreads How many operations of the model can run in parallel (0 = see {@link #sessionConfiguration(SessionConfiguration)})
+	 */
+	public ModelZooPredictionOptions interOpThreads(int interOpThreads) {
+		return setValue(interOpThreadsKey, interOpThreads);
+	}
+
+	/**
+	 * @param sessionConfiguration Settings of the sessions running the model, overriding the defaults of the model archive.
+	 *                             {@link #intraOpThreads(int)} and {@link #interOpThreads(int)} take precedence if set.
+	 */
+	public ModelZooPredictionOptions sessionConfiguration(SessionConfiguration sessionConfiguration) {
+		return setValue(sessionConfigurationKey, sessionConfiguration);
+	}
+
+	/**
+	 * @param warmUp Whether the model runs dummy data of the planned tile shape once before the first tile, reported as separate metric.
+	 *               Predictions without tiling are not warmed up.
+	 */
+	public ModelZooPredictionOptions warmUp(boolean warmUp) {
+		return setValue(warmUpKey, warmUp);
+	}
+
+	/**
+	 * @param tilesPerBatch How many tiles should be stacked along the batch axis of the model and predicted at once,
+	 *                      ignored when tiles are predicted by multiple {@link #parallelWorkers(int)}
+	 */
+	public ModelZooPredictionOptions tilesPerBatch(int tilesPerBatch) {
+		return setValue(tilesPerBatchKey, tilesPerBatch);
+	}
+
+	/**
+	 * @param tilingStrategy Name of the {@link net.imagej.modelzoo.consumer.tiling.TilingStrategy} plugin splitting the input into tiles (e.g. greedy, cube, fixed, memory)
+	 */
+	public ModelZooPredictionOptions tilingStrategy(String tilingStrategy) {
+		return setValue(tilingStrategyKey, tilingStrategy);
+	}
+
+	/**
+	 * @param tileSize Size of the tiles along each padded axis, used by the fixed tiling strategy
+	 */
+	public ModelZooPredictionOptions tileSize(int tileSize) {
+		return setValue(tileSizeKey, tileSize);
+	}
+
+	/**
+	 * @param tileBlending How the predictions of overlapping tiles are combined, e.g. weighted averaging instead of cropping the halo
+	 */
+	public ModelZooPredictionOptions tileBlending(TileBlending tileBlending) {
+		return setValue(tileBlendingKey, tileBlending);
+	}
+
+	/**
+	 * @param haloScale Fraction of the halo of the model used to pad tiles (1 = full halo), smaller halos are usually sufficient with tile blending
+	 */
+	public ModelZooPredictionOptions haloScale(double haloScale) {
+		return setValue(haloScaleKey, haloScale);
+	}
+
+	/**
+	 * @param memoryBudget Memory (in bytes) a single batch of tiles may use, tiling and batch size are chosen accordingly (0 = no planning)
+	 */
+	public ModelZooPredictionOptions memoryBudget(long memoryBudget) {
+		return setValue(memoryBudgetKey, memoryBudget);
+	}
+
+	/**
+	 * @param probeTiling Whether to predict a single tile before processing the whole image, to detect a failing configuration early
+	 */
+	public ModelZooPredictionOptions probeTiling(boolean probeTiling) {
+		return setValue(probeTilingKey, probeTiling);
+	}
+
+	/**
+	 * @param cacheModel Whether the loaded model should be kept in memory for consecutive predictions.
+	 *                   Cached models keep their sessions and GPU memory until they are evicted by the cache of the
+	 *                   {@link net.imagej.modelzoo.ModelZooService} or the cache is cleared, e.g. via
+	 *                   {@code Plugins>bioimage.io>Clear model cache}. Otherwise, the model is disposed after each prediction.
+	 */
+	public ModelZooPredictionOptions cacheModel(boolean cacheModel) {
+		return setValue(cacheModelKey, cacheModel);
+	}
+
+	/**
+	 * @param percentileAccuracy Maximal rank error (as fraction of the number of pixels) of approximated percentiles, only used if {@link #exactPercentiles(boolean)} is disabled
+	 */
+	public ModelZooPredictionOptions percentileAccuracy(double percentileAccuracy) {
+		return setValue(percentileAccuracyKey, percentileAccuracy);
+	}
+
+	/**
+	 * @param exactPercentiles Whether percentiles of floating point images should be computed exactly (default) instead of approximated
+	 */
+	public ModelZooPredictionOptions exactPercentiles(boolean exactPercentiles) {
+		return setValue(exactPercentilesKey, exactPercentiles);
+	}
+
+	/**
+	 * @param metricsFile File the collected prediction metrics are written to after each prediction (JSON, or CSV if the file name ends with .csv)
+	 */
+	public ModelZooPredictionOptions metricsFile(Path metricsFile) {
+		return setValue(metricsFileKey, metricsFile);
+	}
+
+	/**
+	 * @param chunkedOutputDirectory N5 container the tiled outputs are written to tile by tile, one dataset per output (null = outputs are cached)
+	 */
+	public ModelZooPredictionOptions chunkedOutputDirectory(Path chunkedOutputDirectory) {
+		return setValue(chunkedOutputDirectoryKey, chunkedOutputDirectory);
+	}
+
+	/**
+	 * see (@link {@link DiskCachedCellImgOptions#cacheDirectory(Path)}, each tiled output is cached in its own
+	 * subdirectory which is deleted when the JVM exits. The batch prediction uses a directory per input file,
+	 * which it deletes as soon as the outputs of the file are saved.
 	 */
 	public ModelZooPredictionOptions cacheDirectory(Path cacheDirectory) {
 		return setValue(cacheDirectoryKey, cacheDirectory);
@@ -137,5 +300,119 @@ public class ModelZooPredictionOptions extends AbstractOptions<ModelZooPredictio
 		public boolean convertIntoInputFormat() {
 			return getValueOrDefault(convertIntoInputFormatKey, false);
 		}
+		/**
+		 * @return How many tiles can be prepared ahead and written back while another tile is predicted (0 = sequential tile processing)
+		 */
+		public int pipelineDepth() {
+			return getValueOrDefault(pipelineDepthKey, 0);
+		}
+		/**
+		 * @return How many threads predict tiles concurrently, taking them from a shared queue (1 = one tile at a time)
+		 */
+		public int parallelWorkers() {
+			return getValueOrDefault(parallelWorkersKey, 1);
+		}
+		/**
+		 * @return Whether each parallel worker gets its own session of the model instead of all workers sharing one session
+		 */
+		public boolean sessionPool() {
+			return getValueOrDefault(sessionPoolKey, false);
+		}
+		/**
+		 * @return How many threads the model uses within a single operation (0 = taken from the session configuration)
+		 */
+		public int intraOpThreads() {
+			return getValueOrDefault(intraOpThreadsKey, 0);
+		}
+		/**
+		 * @return How many operations of the model can run in parallel (0 = taken from the session configuration)
+		 */
+		public int interOpThreads() {
+			return getValueOrDefault(interOpThreadsKey, 0);
+		}
+		/**
+		 * @return Settings of the sessions running the model, overriding the defaults of the model archive (null = archive defaults)
+		 */
+		public SessionConfiguration sessionConfiguration() {
+			return getValueOrDefault(sessionConfigurationKey, null);
+		}
+		/**
+		 * @return Whether the model runs dummy data of the planned tile shape once before the first tile, reported as separate metric
+		 */
+		public boolean warmUp() {
+			return getValueOrDefault(warmUpKey, false);
+		}
+		/**
+		 * @return How many tiles should be stacked along the batch axis of the model and predicted at once
+		 */
+		public int tilesPerBatch() {
+			return getValueOrDefault(tilesPerBatchKey, 1);
+		}
+		/**
+		 * @return Name of the {@link net.imagej.modelzoo.consumer.tiling.TilingStrategy} plugin splitting the input into tiles
+		 */
+		public String tilingStrategy() {
+			return getValueOrDefault(tilingStrategyKey, "greedy");
+		}
+		/**
+		 * @return Size of the tiles along each padded axis, used by the fixed tiling strategy
+		 */
+		public int tileSize() {
+			return getValueOrDefault(tileSizeKey, 256);
+		}
+		/**
+		 * @return How the predictions of overlapping tiles are combined
+		 */
+		public TileBlending tileBlending() {
+			return getValueOrDefault(tileBlendingKey, TileBlending.NONE);
+		}
+		/**
+		 * @return Fraction of the halo of the model used to pad tiles (1 = full halo)
+		 */
+		public double haloScale() {
+			return getValueOrDefault(haloScaleKey, 1.);
+		}
+		/**
+		 * @return Memory (in bytes) a single batch of tiles may use, tiling and batch size are chosen accordingly (0 = no planning)
+		 */
+		public long memoryBudget() {
+			return getValueOrDefault(memoryBudgetKey, 0L);
+		}
+		/**
+		 * @return Whether to predict a single tile before processing the whole image, to detect a failing configuration early
+		 */
+		public boolean probeTiling() {
+			return getValueOrDefault(probeTilingKey, false);
+		}
+		/**
+		 * @return Whether the loaded model should be kept in memory for consecutive predictions
+		 */
+		public boolean cacheModel() {
+			return getValueOrDefault(cacheModelKey, false);
+		}
+		/**
+		 * @return Maximal rank error (as fraction of the number of pixels) of approximated percentiles
+		 */
+		public double percentileAccuracy() {
+			return getValueOrDefault(percentileAccuracyKey, 0.001);
+		}
+		/**
+		 * @return Whether percentiles of floating point images should be computed exactly (default) instead of approximated
+		 */
+		public boolean exactPercentiles() {
+			return getValueOrDefault(exactPercentilesKey, true);
+		}
+		/**
+		 * @return N5 container the tiled outputs are written to tile by tile, one dataset per output (null = outputs are cached)
+		 */
+		public Path chunkedOutputDirectory() {
+			return getValueOrDefault(chunkedOutputDirectoryKey, null);
+		}
+		/**
+		 * @return File the collected prediction metrics are written to after each prediction (null = no metrics file)
+		 */
+		public Path metricsFile() {
+			return getValueOrDefault(metricsFileKey, null);
+		}
 	}
 }
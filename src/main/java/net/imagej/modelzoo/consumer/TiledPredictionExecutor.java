@@ -29,13 +29,23 @@
 
 package net.imagej.modelzoo.consumer;
 
+import net.imagej.axis.AxisType;
 import net.imagej.modelzoo.consumer.model.ModelZooModel;
+import net.imagej.modelzoo.consumer.model.node.ImageDataReference;
 import net.imagej.modelzoo.consumer.model.node.InputImageNode;
 import net.imagej.modelzoo.consumer.model.node.ModelZooNode;
 import net.imagej.modelzoo.consumer.model.node.OutputImageNode;
+import net.imagej.modelzoo.consumer.model.prediction.N5ImageSink;
 import net.imagej.modelzoo.consumer.tiling.DefaultTiling;
+import net.imagej.modelzoo.consumer.tiling.TileBlending;
+import net.imagej.modelzoo.consumer.tiling.TilePlan;
+import net.imagej.modelzoo.consumer.tiling.TilingOverhead;
+import net.imagej.modelzoo.consumer.tiling.TilingPlanner;
+import net.imagej.modelzoo.consumer.tiling.TilingStrategy;
+import net.imagej.modelzoo.metrics.ModelZooMetrics;
 import net.imglib2.type.NativeType;
 import net.imglib2.type.numeric.RealType;
+import net.imglib2.util.Intervals;
 import org.scijava.Cancelable;
 import org.scijava.Context;
 import org.scijava.app.StatusService;
@@ -44,8 +54,19 @@ import org.scijava.plugin.Parameter;
 
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class TiledPredictionExecutor implements Cancelable {
 
@@ -58,14 +79,27 @@ public class TiledPredictionExecutor implements Cancelable {
 	private final ModelZooModel model;
 	private DefaultTiling tiling;
 	private int nTiles = 8;
-	private int oldNTiles;
-	private int oldBatchesSize;
 	private boolean processedTiles = false;
-	private boolean canceled = false;
+	// whether the next run continues with the tiles of the previous run which are not resolved yet
+	private boolean resumeTiling = false;
+	private volatile boolean canceled = false;
 	private int batchSize = 10;
 	private boolean tilingEnabled = true;
+	private int pipelineDepth = 0;
+	private int parallelWorkers = 1;
+	private boolean warmUp = false;
+	private int tilesPerBatch = 1;
+	private ModelZooMetrics metrics = ModelZooMetrics.disabled();
+	private boolean probeTiling = false;
+	private TilingPlanner planner;
+	private TilingStrategy tilingStrategy;
+	private TilingOverhead tilingOverhead;
+	private TileBlending blending = TileBlending.NONE;
+	private double haloScale = 1;
+	private String planKey;
 
 	private Path cacheDir = null;
+	private Path outputDir = null;
 	private ArrayList<OutputImageNode> tilingOutputs;
 	private InputImageNode tilingInput;
 
@@ -79,17 +113,45 @@ public class TiledPredictionExecutor implements Cancelable {
 		try {
 			assignTilingNodes();
 			if (!tilingEnabled || tilingInput == null) {
-				model.predict();
+				try (ModelZooMetrics.Timer ignored = metrics.start(ModelZooMetrics.TILE_INFER)) {
+					predict();
+				}
 			} else {
-				initTiling();
-				while (processNextTile()) {
-					model.predict();
-					tiling.resolveCurrentTile();
+				if(predictsInParallel() && tilesPerBatch > 1) {
+					log.warn("Tiles are not stacked when predicting tiles in parallel, predicting one tile per worker at a time");
+					tilesPerBatch = 1;
+				}
+				if(resumeTiling) {
+					resumeTiling = false;
+					processedTiles = false;
+					tiling.resume(tilesPerBatch);
+				} else {
+					if(probeTiling) probe();
+					initTiling();
+				}
+				warmUp();
+				if(predictsInParallel()) {
+					runParallel();
+				} else if(pipelineDepth > 0) {
+					runPipelined();
+				} else {
+					while (processNextTile()) {
+						try (ModelZooMetrics.Timer ignored = metrics.start(ModelZooMetrics.TILE_INFER)) {
+							predict();
+						}
+						try (ModelZooMetrics.Timer ignored = metrics.start(ModelZooMetrics.TILE_WRITE_BACK)) {
+							tiling.resolveCurrentTile();
+						}
+					}
 				}
 				statusService.showProgress(1, 1);
-				if(!isCanceled()) tiling.finish();
+				if(!isCanceled()) {
+					tiling.finish();
+					rememberTiling();
+					recordTilingOverhead();
+				}
 			}
-		} catch (final CancellationException | RejectedExecutionException e) {
+		} catch (final CancellationException | RejectedExecutionException | InterruptedException e) {
 			//canceled
 			String PROGRESS_CANCELED = "Canceled";
 			log.warn(PROGRESS_CANCELED);
@@ -97,14 +159,334 @@ public class TiledPredictionExecutor implements Cancelable {
 		} catch (final IllegalArgumentException e) {
 			throw e;
 		} catch (final IllegalStateException exc) {
-			if (exc.getMessage() != null && exc.getMessage().contains("OOM")) {
-				throw new OutOfMemoryError();
-			}
+			rethrowOutOfMemory(exc);
 			exc.printStackTrace();
 			throw exc;
 		}
 	}
 
+	/**
+	 * Runs the tiles through three stages connected by bounded queues: a prefetch thread prepares the next input tiles,
+	 * the calling thread runs the prediction and a write-back thread copies the predicted tiles into the output.
+	 */
+	private void runPipelined() throws InterruptedException {
+		BlockingQueue<PipelineItem> prepared = new ArrayBlockingQueue<>(pipelineDepth);
+		BlockingQueue<PipelineItem> predicted = new ArrayBlockingQueue<>(pipelineDepth);
+		AtomicReference<Throwable> writeBackError = new AtomicReference<>();
+		ExecutorService pool = Executors.newFixedThreadPool(2, runnable -> {
+			Thread thread = new Thread(runnable, "modelzoo-tile-pipeline");
+			thread.setDaemon(true);
+			return thread;
+		});
+		try {
+			pool.submit(() -> prefetchTiles(prepared));
+			pool.submit(() -> writeBackTiles(predicted, writeBackError));
+			while (!isCanceled()) {
+				PipelineItem item = prepared.take();
+				if (item.error != null) rethrow(item.error);
+				if (item.isLast()) break;
+				int doneTiles = tiling.getDoneTileCount();
+				tiling.assignTile(item.input);
+				metrics.count(ModelZooMetrics.TILES, tiling.getDoneTileCount() - doneTiles);
+				statusService.showStatus(tiling.getDoneTileCount()-1, (int) tiling.getTilesTotalCount(), "Predicting tile " + (tiling.getDoneTileCount()) + " of " + tiling.getTilesTotalCount() + "..");
+				log.info("Processing tile " + (tiling.getDoneTileCount()) + "..");
+				try (ModelZooMetrics.Timer ignored = metrics.start(ModelZooMetrics.TILE_INFER)) {
+					predict();
+				}
+				predicted.put(PipelineItem.output(tiling.getCurrentOutputData()));
+				if (writeBackError.get() != null) rethrow(writeBackError.get());
+			}
+			if (isCanceled()) return;
+			predicted.put(PipelineItem.last());
+			// the prefetch thread is done at this point, wait for the remaining tiles to be written back
+			pool.shutdown();
+			pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+			if (writeBackError.get() != null) rethrow(writeBackError.get());
+			processedTiles = true;
+		} finally {
+			pool.shutdownNow();
+			// the tiles might get requeued after a failure, wait until no thread is working on them anymore
+			pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	private boolean predictsInParallel() {
+		return parallelWorkers > 1 && model.supportsConcurrentPrediction();
+	}
+
+	/**
+	 * Predicts the tiles with multiple workers, each worker takes the next tile from a shared queue, predicts it
+	 * and writes the result into the region of the output covered by the tile.
+	 */
+	private void runParallel() throws InterruptedException {
+		Queue<TilePlan.Entry> queue = new ConcurrentLinkedQueue<>(tiling.getTilePlan().getEntries());
+		AtomicReference<Throwable> error = new AtomicReference<>();
+		ExecutorService pool = Executors.newFixedThreadPool(parallelWorkers, runnable -> {
+			Thread thread = new Thread(runnable, "modelzoo-tile-worker");
+			thread.setDaemon(true);
+			return thread;
+		});
+		log.info("Predicting " + queue.size() + " tile(s) with " + parallelWorkers + " workers..");
+		try {
+			for (int i = 0; i < parallelWorkers; i++) {
+				pool.submit(() -> predictTiles(queue, error));
+			}
+			pool.shutdown();
+			pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+			if (error.get() != null) rethrow(error.get());
+			if (!isCanceled()) processedTiles = true;
+		} finally {
+			pool.shutdownNow();
+			// the tiles might get requeued after a failure, wait until no thread is working on them anymore
+			pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	private void predictTiles(Queue<TilePlan.Entry> queue, AtomicReference<Throwable> error) {
+		try {
+			TilePlan.Entry tile;
+			while (!isCanceled() && error.get() == null && (tile = queue.poll()) != null) {
+				ImageDataReference<?> input;
+				try (ModelZooMetrics.Timer ignored = metrics.start(ModelZooMetrics.TILE_PREPARE)) {
+					input = tiling.prepareTile(tile);
+				}
+				List<ImageDataReference<?>> outputs;
+				try (ModelZooMetrics.Timer ignored = metrics.start(ModelZooMetrics.TILE_INFER)) {
+					outputs = predict(getModelInputs(input));
+				}
+				try (ModelZooMetrics.Timer ignored = metrics.start(ModelZooMetrics.TILE_WRITE_BACK)) {
+					tiling.resolveTile(tile, getTilingOutputs(outputs));
+				}
+				metrics.count(ModelZooMetrics.TILES, 1);
+				int doneTiles = tiling.getDoneTileCount();
+				statusService.showStatus(doneTiles, (int) tiling.getTilesTotalCount(), "Predicted tile " + doneTiles + " of " + tiling.getTilesTotalCount() + "..");
+			}
+		} catch (Throwable e) {
+			error.compareAndSet(null, e);
+		}
+	}
+
+	private void predict() {
+		try {
+			model.predict();
+		} catch (IllegalStateException e) {
+			rethrowOutOfMemory(e);
+			throw e;
+		}
+	}
+
+	private List<ImageDataReference<?>> predict(List<ImageDataReference<?>> inputs) {
+		try {
+			return model.predict(inputs);
+		} catch (IllegalStateException e) {
+			rethrowOutOfMemory(e);
+			throw e;
+		}
+	}
+
+	/**
+	 * TensorFlow reports running out of memory as {@link IllegalStateException} mentioning "OOM",
+	 * this turns it into an {@link OutOfMemoryError} so that the tiling gets increased.
+	 */
+	private static void rethrowOutOfMemory(IllegalStateException e) {
+		if (e.getMessage() != null && e.getMessage().contains("OOM")) {
+			OutOfMemoryError error = new OutOfMemoryError(e.getMessage());
+			error.initCause(e);
+			throw error;
+		}
+	}
+
+	/**
+	 * @return the data of all input nodes, using the given tile for the tiled input
+	 */
+	private List<ImageDataReference<?>> getModelInputs(ImageDataReference<?> tile) {
+		List<ImageDataReference<?>> inputs = new ArrayList<>();
+		for (ModelZooNode<?> inputNode : model.getInputNodes()) {
+			inputs.add(inputNode == tilingInput ? tile : (ImageDataReference<?>) inputNode.getData());
+		}
+		return inputs;
+	}
+
+	/**
+	 * @return the predicted data of the tiled outputs, in the order of the tiled outputs
+	 */
+	private List<ImageDataReference<?>> getTilingOutputs(List<ImageDataReference<?>> outputs) {
+		List<ImageDataReference<?>> res = new ArrayList<>();
+		for (OutputImageNode outputNode : tilingOutputs) {
+			res.add(outputs.get(model.getOutputNodes().indexOf(outputNode)));
+		}
+		return res;
+	}
+
+	private void prefetchTiles(BlockingQueue<PipelineItem> prepared) {
+		try {
+			while (!isCanceled() && tiling.hasInputTilesLeft()) {
+				ImageDataReference<?> tile;
+				try (ModelZooMetrics.Timer ignored = metrics.start(ModelZooMetrics.TILE_PREPARE)) {
+					tile = tiling.prepareNextTile();
+				}
+				prepared.put(PipelineItem.input(tile));
+			}
+			prepared.put(PipelineItem.last());
+		} catch (InterruptedException ignored) {
+		} catch (Throwable e) {
+			try {
+				prepared.put(PipelineItem.failed(e));
+			} catch (InterruptedException ignored) {
+			}
+		}
+	}
+
+	private void writeBackTiles(BlockingQueue<PipelineItem> predicted, AtomicReference<Throwable> error) {
+		try {
+			PipelineItem item;
+			while (!(item = predicted.take()).isLast()) {
+				// keep draining the queue after a failure so that the prediction thread does not block
+				if (error.get() != null) continue;
+				try (ModelZooMetrics.Timer ignored = metrics.start(ModelZooMetrics.TILE_WRITE_BACK)) {
+					tiling.resolveTile(item.outputs);
+				} catch (Throwable e) {
+					error.set(e);
+				}
+			}
+		} catch (InterruptedException ignored) {
+		}
+	}
+
+	private static void rethrow(Throwable error) {
+		if (error instanceof Error) throw (Error) error;
+		if (error instanceof RuntimeException) throw (RuntimeException) error;
+		throw new IllegalStateException(error);
+	}
+
+	private static class PipelineItem {
+		ImageDataReference<?> input;
+		List<ImageDataReference<?>> outputs;
+		Throwable error;
+
+		static PipelineItem input(ImageDataReference<?> input) {
+			PipelineItem item = new PipelineItem();
+			item.input = input;
+			return item;
+		}
+
+		static PipelineItem output(List<ImageDataReference<?>> outputs) {
+			PipelineItem item = new PipelineItem();
+			item.outputs = outputs;
+			return item;
+		}
+
+		static PipelineItem failed(Throwable error) {
+			PipelineItem item = new PipelineItem();
+			item.error = error;
+			return item;
+		}
+
+		static PipelineItem last() {
+			return new PipelineItem();
+		}
+
+		boolean isLast() {
+			return input == null && outputs == null && error == null;
+		}
+	}
+
+	/**
+	 * Runs dummy data of the shape of the next tile through the model, so that its initialization
+	 * is not part of the time of the first tile.
+	 */
+	private void warmUp() {
+		if (!warmUp) return;
+		Map<AxisType, Long> tileShape = getWarmUpShape(tilingInput, tiling.getTilePlan());
+		if (tileShape != null) model.warmUp(tileShape);
+	}
+
+	/**
+	 * @return the shape of the first planned tile including its padding, or null if no tiles are planned
+	 */
+	static Map<AxisType, Long> getWarmUpShape(InputImageNode input, TilePlan plan) {
+		if (plan.isEmpty()) return null;
+		long[] shape = Intervals.dimensionsAsLongArray(plan.get(0).getPaddedInterval());
+		Map<AxisType, Long> tileShape = new HashMap<>();
+		for (int i = 0; i < shape.length; i++) {
+			tileShape.put(input.getDataAxis(i).getType(), shape[i]);
+		}
+		return tileShape;
+	}
+
+	/**
+	 * Predicts a single batch of tiles and switches to a smaller tiling in case it runs out of memory,
+	 * so that the full tiling starts with a configuration which is known to work.
+	 */
+	private void probe() {
+		ImageDataReference<?> inputData = tilingInput.getData();
+		List<ImageDataReference<?>> outputData = new ArrayList<>();
+		for (OutputImageNode outputNode : tilingOutputs) {
+			outputData.add(outputNode.getData());
+		}
+		try {
+			while (!isCanceled()) {
+				initTiling();
+				if (!processNextTile()) return;
+				log.info("Probing tiling with " + tiling.getTilesNum() + " tile(s), batch size " + batchSize + "..");
+				try {
+					predict();
+					return;
+				} catch (OutOfMemoryError e) {
+					if (!increaseTiling()) throw e;
+					// the full tiling is initialized again after probing
+					resumeTiling = false;
+				}
+			}
+		} finally {
+			// the nodes hold the probed tile, the full tiling has to start from the original data
+			tilingInput.setData(inputData);
+			for (int i = 0; i < tilingOutputs.size(); i++) {
+				tilingOutputs.get(i).setData(outputData.get(i));
+			}
+		}
+	}
+
+	/**
+	 * Chooses the number of tiles, the batch size and the number of tiles per batch so that a single batch
+	 * fits into the memory budget, or reuses the configuration remembered for this model and input shape.
+	 * The configuration is remembered once the prediction succeeded.
+	 */
+	public void planTiling(TilingPlanner planner, String modelKey, long memoryBudget) {
+		assignTilingNodes();
+		if (!tilingEnabled || tilingInput == null) return;
+		this.planner = planner;
+		planKey = TilingPlanner.getKey(modelKey, Intervals.dimensionsAsLongArray(tilingInput.getData().getData()));
+		TilingPlanner.Plan plan = planner.getRememberedPlan(planKey);
+		if (plan != null) {
+			log.info("Using remembered tiling: " + plan);
+		} else {
+			plan = planner.plan(tilingInput, tilingOutputs, memoryBudget, batchSize, tilesPerBatch);
+			if (plan.getEstimatedBytes() > memoryBudget) {
+				log.warn("No tiling fits into the memory budget of " + memoryBudget / (1024 * 1024) + " MB, using " + plan);
+			} else {
+				log.info("Planned tiling for a memory budget of " + memoryBudget / (1024 * 1024) + " MB: " + plan);
+			}
+		}
+		setNumberOfTiles(plan.getNumberOfTiles());
+		setBatchSize(plan.getBatchSize());
+		setTilesPerBatch(plan.getTilesPerBatch());
+	}
+
+	private void recordTilingOverhead() {
+		tilingOverhead = tiling.getTilingOverhead();
+		if (tilingOverhead == null) return;
+		log.info("Tiling overhead: " + tilingOverhead);
+		metrics.count(ModelZooMetrics.IMAGE_VOXELS, tilingOverhead.getImageVoxels());
+		metrics.count(ModelZooMetrics.INFERENCE_VOXELS, tilingOverhead.getInferenceVoxels());
+	}
+
+	private void rememberTiling() {
+		if (planner == null) return;
+		long bytes = planner.estimateBytes(tilingInput, tilingOutputs, nTiles, batchSize, tilesPerBatch);
+		planner.remember(planKey, new TilingPlanner.Plan(nTiles, batchSize, tilesPerBatch, bytes));
+	}
+
 	/**
 	 * Take the first image output which has a reference to an input image, collect all other output nodes connected to this input
 	 */
@@ -138,31 +520,65 @@ public class TiledPredictionExecutor implements Cancelable {
 		this.batchSize = batchSize;
 	}
 
+	public void setTilingStrategy(TilingStrategy tilingStrategy) {
+		this.tilingStrategy = tilingStrategy;
+	}
+
+	public void setBlending(TileBlending blending) {
+		this.blending = blending;
+	}
+
+	public void setHaloScale(double haloScale) {
+		this.haloScale = haloScale;
+	}
+
+	public void setPipelineDepth(int pipelineDepth) {
+		this.pipelineDepth = pipelineDepth;
+	}
+
+	/**
+	 * @param parallelWorkers how many tiles are predicted concurrently, if supported by the model (1 = sequential prediction)
+	 */
+	public void setParallelWorkers(int parallelWorkers) {
+		this.parallelWorkers = parallelWorkers;
+	}
+
+	/**
+	 * @param warmUp whether the model is warmed up with the shape of the planned tiles before the first tile, only used with tiling
+	 */
+	public void setWarmUp(boolean warmUp) {
+		this.warmUp = warmUp;
+	}
+
+	/**
+	 * @param tilesPerBatch how many tiles are stacked and predicted at once, ignored when predicting tiles in parallel
+	 */
+	public void setTilesPerBatch(int tilesPerBatch) {
+		this.tilesPerBatch = tilesPerBatch;
+	}
+
 	public boolean increaseTiling() {
 
-		// We expect it to be an out of memory exception and
-		// try it again with more tiles or smaller batches.
-		int nTiles = tiling.getTilesNum();
-		int batchSize = tiling.getBatchSize();
-		if (oldNTiles == nTiles && oldBatchesSize == batchSize) {
-			return false;
+		// We expect it to be an out of memory exception and continue with the tiles which are not
+		// predicted yet, using less stacked tiles or splitting them into smaller batches and tiles.
+		// The output of the tiles predicted so far is kept.
+		if (tiling == null) return false;
+		if (tilesPerBatch > 1) {
+			tilesPerBatch /= 2;
+			resumeTiling = true;
+			log.warn("Out of memory exception occurred. Continuing with " + tilesPerBatch + " tile(s) per batch...");
+			return true;
 		}
-		oldNTiles = nTiles;
-		oldBatchesSize = batchSize;
-
-		batchSize /= 2;
-		if (batchSize < 1) {
-			batchSize = 1;
-			nTiles *= 2;
+		if (!tiling.splitRemainingTiles()) {
+			return false;
 		}
-
-		setNumberOfTiles(nTiles);
-		setBatchSize(batchSize);
-		tiling.resetInputData();
+		setNumberOfTiles(tiling.getTilesNum());
+		setBatchSize(tiling.getBatchSize());
+		resumeTiling = true;
 
 		log.warn(
-				"Out of memory exception occurred. Trying with " + nTiles +
-						" tiles, batch size " + batchSize + "...");
+				"Out of memory exception occurred. Continuing with the remaining " +
+						(tiling.getTilesTotalCount() - tiling.getDoneTileCount()) + " tile(s) split into smaller tiles...");
 
 		return true;
 	}
@@ -174,7 +590,11 @@ public class TiledPredictionExecutor implements Cancelable {
 			processedTiles = true;
 			return false;
 		}
-		tiling.assignNextTile();
+		int doneTiles = tiling.getDoneTileCount();
+		try (ModelZooMetrics.Timer ignored = metrics.start(ModelZooMetrics.TILE_PREPARE)) {
+			tiling.assignNextTile();
+		}
+		metrics.count(ModelZooMetrics.TILES, tiling.getDoneTileCount() - doneTiles);
 		statusService.showStatus(tiling.getDoneTileCount()-1, (int) tiling.getTilesTotalCount(), "Predicting tile " + (tiling.getDoneTileCount()) + " of " + tiling.getTilesTotalCount() + "..");
 		log.info("Processing tile " + (tiling.getDoneTileCount()) + "..");
 		return true;
@@ -183,8 +603,16 @@ public class TiledPredictionExecutor implements Cancelable {
 	private <TO extends RealType<TO> & NativeType<TO>, TI extends RealType<TI> & NativeType<TI>> void initTiling() {
 		processedTiles = false;
 		tiling = new DefaultTiling(tilingInput, tilingOutputs, cacheDir);
+		tiling.setLogger(log);
+		if(outputDir != null) {
+			tiling.setOutputSinks(node -> new N5ImageSink<>(outputDir.resolve(node.getName())));
+		}
+		if(tilingStrategy != null) tiling.setTilingStrategy(tilingStrategy);
+		tiling.setBlending(blending);
+		tiling.setHaloScale(haloScale);
 		tiling.setNumberOfTiles(nTiles);
 		tiling.setBatchSize(batchSize);
+		tiling.setTilesPerBatch(tilesPerBatch);
 		tiling.init();
 	}
 
@@ -218,10 +646,36 @@ public class TiledPredictionExecutor implements Cancelable {
 		return batchSize;
 	}
 
+	public int getTilesPerBatch() {
+		return tilesPerBatch;
+	}
+
+	/**
+	 * @return the voxels predicted by the last successful tiled prediction compared to the size of its input (null = not tiled)
+	 */
+	public TilingOverhead getTilingOverhead() {
+		return tilingOverhead;
+	}
+
 	public void setCacheDir(Path cacheDir) {
 		this.cacheDir = cacheDir;
 	}
 
+	/**
+	 * @param outputDir N5 container each tiled output is written to as dataset, tile by tile (null = outputs are cached)
+	 */
+	public void setOutputDir(Path outputDir) {
+		this.outputDir = outputDir;
+	}
+
+	public void setProbeTiling(boolean probeTiling) {
+		this.probeTiling = probeTiling;
+	}
+
+	public void setMetrics(ModelZooMetrics metrics) {
+		this.metrics = metrics;
+	}
+
 	public void dispose() {
 		if(tiling != null) tiling.dispose();
 	}
@@ -38,9 +38,11 @@ import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.type.NativeType;
 import net.imglib2.type.numeric.RealType;
 import org.scijava.Context;
+import org.scijava.ItemVisibility;
 import org.scijava.log.LogService;
 import org.scijava.plugin.Parameter;
 import org.scijava.ui.UIService;
+import org.scijava.widget.FileWidget;
 
 import java.io.File;
 import java.io.IOException;
@@ -69,6 +71,12 @@ public abstract class AbstractSingleImagePredictionCommand<T extends RealType<T>
 	@Parameter(label = "Convert output into input image format", required = false)
 	private boolean convertOutputToInputFormat = false;
 
+	@Parameter(label = "Write outputs tile by tile into N5 container (optional)", required = false, persist = false, style = FileWidget.DIRECTORY_STYLE)
+	private File chunkedOutputDirectory;
+
+	@Parameter(required = false, persist = false, visibility = ItemVisibility.INVISIBLE)
+	private File cacheDirectory;
+
 	@Parameter
 	private LogService log;
 
@@ -126,7 +134,9 @@ public abstract class AbstractSingleImagePredictionCommand<T extends RealType<T>
 				.numberOfTiles(numTiles)
 				.batchSize(batchSize)
 				.showProgressDialog(showProgressDialog)
-				.convertIntoInputFormat(convertOutputToInputFormat);
+				.convertIntoInputFormat(convertOutputToInputFormat)
+				.chunkedOutputDirectory(chunkedOutputDirectory == null ? null : chunkedOutputDirectory.toPath())
+				.cacheDirectory(cacheDirectory == null ? null : cacheDirectory.toPath());
 	}
 
 	protected void setInput(P prediction) {
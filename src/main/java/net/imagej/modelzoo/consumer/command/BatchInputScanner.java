@@ -0,0 +1,199 @@
+/*-
+ * #%L
+ * This is the bioimage.io modelzoo library for ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2020 Center for Systems Biology Dresden
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imagej.modelzoo.consumer.command;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Lists the input files of a batch prediction lazily, one directory at a time, in a stable (sorted) order.
+ * Hidden files and directories are skipped. Include and exclude patterns are comma separated globs,
+ * patterns without a {@code /} are matched against the file name, all others against the path relative to the root.
+ */
+public class BatchInputScanner implements Iterable<Path> {
+
+	private final Path root;
+	private List<PathMatcher> includes = Collections.emptyList();
+	private List<PathMatcher> excludes = Collections.emptyList();
+	private List<Boolean> includesMatchName = Collections.emptyList();
+	private List<Boolean> excludesMatchName = Collections.emptyList();
+	private int maxDepth = 1;
+	private final List<Path> skippedDirectories = new ArrayList<>();
+
+	public BatchInputScanner(Path root) {
+		this.root = root;
+	}
+
+	/**
+	 * @param includes Comma separated globs, only matching files are listed (empty = all files)
+	 */
+	public void setIncludes(String includes) {
+		this.includes = new ArrayList<>();
+		this.includesMatchName = new ArrayList<>();
+		parse(includes, this.includes, this.includesMatchName);
+	}
+
+	/**
+	 * @param excludes Comma separated globs, matching files and directories are skipped
+	 */
+	public void setExcludes(String excludes) {
+		this.excludes = new ArrayList<>();
+		this.excludesMatchName = new ArrayList<>();
+		parse(excludes, this.excludes, this.excludesMatchName);
+	}
+
+	/**
+	 * @param maxDepth How deep to descend into subdirectories (1 = only files directly in the root directory)
+	 */
+	public void setMaxDepth(int maxDepth) {
+		this.maxDepth = Math.max(1, maxDepth);
+	}
+
+	/**
+	 * @param directory Directory which should not be scanned, e.g. the output directory if it is located inside the root
+	 */
+	public void skipDirectory(Path directory) {
+		skippedDirectories.add(directory.toAbsolutePath().normalize());
+	}
+
+	/**
+	 * @return where the output of the given input file should be stored, mirroring the directory tree below the root
+	 */
+	public Path getMirroredPath(Path outputRoot, Path input) {
+		return outputRoot.resolve(root.relativize(input).toString());
+	}
+
+	private void parse(String globs, List<PathMatcher> matchers, List<Boolean> matchName) {
+		if(globs == null) return;
+		FileSystem fileSystem = root.getFileSystem();
+		for (String glob : globs.split(",")) {
+			glob = glob.trim();
+			if(glob.isEmpty()) continue;
+			matchers.add(fileSystem.getPathMatcher("glob:" + glob));
+			matchName.add(!glob.contains("/"));
+		}
+	}
+
+	private static boolean matches(Path root, Path path, List<PathMatcher> matchers, List<Boolean> matchName) {
+		for (int i = 0; i < matchers.size(); i++) {
+			Path matched = matchName.get(i) ? path.getFileName() : root.relativize(path);
+			if(matchers.get(i).matches(matched)) return true;
+		}
+		return false;
+	}
+
+	private boolean isHidden(Path path) {
+		return path.getFileName().toString().startsWith(".");
+	}
+
+	private boolean acceptDirectory(Path directory) {
+		if(isHidden(directory)) return false;
+		if(skippedDirectories.contains(directory.toAbsolutePath().normalize())) return false;
+		return !matches(root, directory, excludes, excludesMatchName);
+	}
+
+	private boolean acceptFile(Path file) {
+		if(isHidden(file)) return false;
+		if(!includes.isEmpty() && !matches(root, file, includes, includesMatchName)) return false;
+		return !matches(root, file, excludes, excludesMatchName);
+	}
+
+	/**
+	 * @throws UncheckedIOException if a directory cannot be listed
+	 */
+	@Override
+	public Iterator<Path> iterator() {
+		return new ScanIterator();
+	}
+
+	private class ScanIterator implements Iterator<Path> {
+
+		// directories which still need to be listed, with their depth
+		private final Deque<Path> directories = new ArrayDeque<>();
+		private final Deque<Integer> depths = new ArrayDeque<>();
+		private final Deque<Path> files = new ArrayDeque<>();
+
+		ScanIterator() {
+			directories.push(root);
+			depths.push(1);
+		}
+
+		@Override
+		public boolean hasNext() {
+			while(files.isEmpty() && !directories.isEmpty()) {
+				list(directories.pop(), depths.pop());
+			}
+			return !files.isEmpty();
+		}
+
+		@Override
+		public Path next() {
+			if(!hasNext()) throw new NoSuchElementException();
+			return files.pop();
+		}
+
+		private void list(Path directory, int depth) {
+			List<Path> entries = new ArrayList<>();
+			try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+				for (Path entry : stream) {
+					entries.add(entry);
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			Collections.sort(entries);
+			List<Path> subdirectories = new ArrayList<>();
+			for (Path entry : entries) {
+				if(Files.isDirectory(entry)) {
+					if(depth < maxDepth && acceptDirectory(entry)) subdirectories.add(entry);
+				} else if(Files.isRegularFile(entry) && acceptFile(entry)) {
+					files.add(entry);
+				}
+			}
+			// files of a directory come before the files of its subdirectories
+			Collections.reverse(subdirectories);
+			for (Path subdirectory : subdirectories) {
+				directories.push(subdirectory);
+				depths.push(depth + 1);
+			}
+		}
+	}
+}
@@ -0,0 +1,195 @@
+/*-
+ * #%L
+ * This is the bioimage.io modelzoo library for ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2020 Center for Systems Biology Dresden
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imagej.modelzoo.consumer.command;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Records which inputs of a batch prediction are done, so that a restarted batch prediction can skip them.
+ * The manifest is stored in the output directory as one JSON entry per line, entries are only appended.
+ * When reading the manifest, the last entry of each input counts, an incomplete last line is ignored.
+ */
+public class BatchPredictionManifest implements AutoCloseable {
+
+	public static final String FILE_NAME = "modelzoo-batch-manifest.jsonl";
+
+	public enum Status {
+		DONE, FAILED
+	}
+
+	public static class Entry {
+		String input;
+		long size;
+		long lastModified;
+		String modelHash;
+		String options;
+		Status status;
+		long durationMillis;
+
+		public String getInput() {
+			return input;
+		}
+
+		public Status getStatus() {
+			return status;
+		}
+
+		public long getDurationMillis() {
+			return durationMillis;
+		}
+	}
+
+	private final File file;
+	private final Gson gson = new Gson();
+	private final Map<String, Entry> entries = new HashMap<>();
+	private Writer writer;
+
+	private BatchPredictionManifest(File file) {
+		this.file = file;
+	}
+
+	public static BatchPredictionManifest open(File outputDirectory) throws IOException {
+		BatchPredictionManifest manifest = new BatchPredictionManifest(new File(outputDirectory, FILE_NAME));
+		manifest.read();
+		return manifest;
+	}
+
+	private void read() throws IOException {
+		if(!file.exists()) return;
+		try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if(line.trim().isEmpty()) continue;
+				try {
+					Entry entry = gson.fromJson(line, Entry.class);
+					if(entry != null && entry.input != null) entries.put(entry.input, entry);
+				} catch (JsonParseException e) {
+					// the process died while writing this line
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return whether the input was predicted successfully before, with the same model and options, and did not change since
+	 */
+	public synchronized boolean isDone(File input, String modelHash, String options) {
+		Entry entry = entries.get(key(input));
+		return entry != null
+				&& entry.status == Status.DONE
+				&& entry.size == input.length()
+				&& entry.lastModified == input.lastModified()
+				&& Objects.equals(entry.modelHash, modelHash)
+				&& Objects.equals(entry.options, options);
+	}
+
+	public synchronized Entry getEntry(File input) {
+		return entries.get(key(input));
+	}
+
+	public synchronized void record(File input, String modelHash, String options, Status status, long durationMillis) throws IOException {
+		Entry entry = new Entry();
+		entry.input = key(input);
+		entry.size = input.length();
+		entry.lastModified = input.lastModified();
+		entry.modelHash = modelHash;
+		entry.options = options;
+		entry.status = status;
+		entry.durationMillis = durationMillis;
+		if(writer == null) {
+			boolean incompleteLine = endsWithIncompleteLine();
+			writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+			if(incompleteLine) writer.write('\n');
+		}
+		writer.write(gson.toJson(entry));
+		writer.write('\n');
+		writer.flush();
+		entries.put(entry.input, entry);
+	}
+
+	private boolean endsWithIncompleteLine() throws IOException {
+		if(!file.exists() || file.length() == 0) return false;
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			raf.seek(raf.length() - 1);
+			return raf.read() != '\n';
+		}
+	}
+
+	private static String key(File input) {
+		return input.getAbsolutePath();
+	}
+
+	/**
+	 * @return SHA-256 hash of the file content
+	 */
+	public static String hash(File file) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException(e);
+		}
+		byte[] buffer = new byte[1 << 16];
+		try (InputStream in = Files.newInputStream(file.toPath())) {
+			int read;
+			while ((read = in.read(buffer)) > 0) {
+				digest.update(buffer, 0, read);
+			}
+		}
+		StringBuilder res = new StringBuilder();
+		for (byte b : digest.digest()) {
+			res.append(String.format("%02x", b));
+		}
+		return res.toString();
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if(writer != null) {
+			writer.close();
+			writer = null;
+		}
+	}
+}
@@ -0,0 +1,251 @@
+/*-
+ * #%L
+ * This is the bioimage.io modelzoo library for ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2020 Center for Systems Biology Dresden
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imagej.modelzoo.consumer.command;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Predicts a list of files while overlapping reading, inference and writing.
+ * Files are read by a pool of reader threads and written by a pool of writer threads,
+ * inference is executed one file at a time by the calling thread so that a single loaded model can be shared.
+ * The stages are connected by bounded queues, a failing file does not stop the processing of the other files.
+ */
+public class BatchPredictionPipeline<I, O> {
+
+	public interface Reader<I> {
+		I read(File file) throws Exception;
+	}
+
+	public interface Predictor<I, O> {
+		O predict(File file, I input) throws Exception;
+	}
+
+	public interface Writer<O> {
+		void write(File file, O output) throws Exception;
+	}
+
+	private final Reader<I> reader;
+	private final Predictor<I, O> predictor;
+	private final Writer<O> writer;
+	private int readerThreads = 2;
+	private int writerThreads = 2;
+	private int queueCapacity = 4;
+
+	public BatchPredictionPipeline(Reader<I> reader, Predictor<I, O> predictor, Writer<O> writer) {
+		this.reader = reader;
+		this.predictor = predictor;
+		this.writer = writer;
+	}
+
+	/**
+	 * @param readerThreads How many files are read in parallel
+	 */
+	public void setReaderThreads(int readerThreads) {
+		this.readerThreads = Math.max(1, readerThreads);
+	}
+
+	/**
+	 * @param writerThreads How many outputs are written in parallel
+	 */
+	public void setWriterThreads(int writerThreads) {
+		this.writerThreads = Math.max(1, writerThreads);
+	}
+
+	/**
+	 * @param queueCapacity How many read inputs and predicted outputs can wait for the next stage
+	 */
+	public void setQueueCapacity(int queueCapacity) {
+		this.queueCapacity = Math.max(1, queueCapacity);
+	}
+
+	public Summary run(List<File> files) throws InterruptedException {
+		return run(files.iterator());
+	}
+
+	/**
+	 * @param files Input files, only consumed as fast as the files are processed
+	 */
+	public Summary run(Iterator<File> files) throws InterruptedException {
+		Summary summary = new Summary();
+		final long startTime = System.nanoTime();
+		final ReadResult<I> end = new ReadResult<>(null);
+		Semaphore pendingInputs = new Semaphore(readerThreads + queueCapacity);
+		BlockingQueue<ReadResult<I>> inputs = new ArrayBlockingQueue<>(readerThreads + queueCapacity + 1);
+		Semaphore pendingOutputs = new Semaphore(writerThreads + queueCapacity);
+		ExecutorService readers = Executors.newFixedThreadPool(readerThreads);
+		ExecutorService writers = Executors.newFixedThreadPool(writerThreads);
+		Thread feeder = new Thread(() -> {
+			try {
+				try {
+					while (files.hasNext()) {
+						File file = files.next();
+						pendingInputs.acquire();
+						readers.submit(() -> {
+							ReadResult<I> result = new ReadResult<>(file);
+							try {
+								result.input = reader.read(file);
+							} catch (Exception | OutOfMemoryError e) {
+								result.error = e;
+							}
+							inputs.put(result);
+							return null;
+						});
+					}
+				} catch (RuntimeException e) {
+					summary.scanError = e;
+				}
+				readers.shutdown();
+				readers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+				inputs.put(end);
+			} catch (InterruptedException ignored) {
+			}
+		}, "modelzoo-batch-input");
+		feeder.setDaemon(true);
+		feeder.start();
+		try {
+			ReadResult<I> read;
+			while ((read = inputs.take()) != end) {
+				pendingInputs.release();
+				if (read.error != null) {
+					summary.fail(read.file, read.error);
+					continue;
+				}
+				O output;
+				try {
+					output = predictor.predict(read.file, read.input);
+				} catch (Exception | OutOfMemoryError e) {
+					summary.fail(read.file, e);
+					continue;
+				}
+				pendingOutputs.acquire();
+				File file = read.file;
+				writers.submit(() -> {
+					try {
+						writer.write(file, output);
+						summary.succeed(file);
+					} catch (Exception | OutOfMemoryError e) {
+						summary.fail(file, e);
+					} finally {
+						pendingOutputs.release();
+					}
+				});
+			}
+			writers.shutdown();
+			writers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		} finally {
+			feeder.interrupt();
+			readers.shutdownNow();
+			writers.shutdownNow();
+			summary.nanos = System.nanoTime() - startTime;
+		}
+		return summary;
+	}
+
+	private static class ReadResult<I> {
+		final File file;
+		I input;
+		Throwable error;
+
+		ReadResult(File file) {
+			this.file = file;
+		}
+	}
+
+	public static class Summary {
+
+		private final AtomicInteger succeeded = new AtomicInteger();
+		private final Map<File, Throwable> failures = Collections.synchronizedMap(new LinkedHashMap<>());
+		private long bytes;
+		private long nanos;
+		private volatile RuntimeException scanError;
+
+		private void succeed(File file) {
+			succeeded.incrementAndGet();
+			synchronized (this) {
+				bytes += file.length();
+			}
+		}
+
+		private void fail(File file, Throwable error) {
+			failures.put(file, error);
+		}
+
+		public int getSucceededCount() {
+			return succeeded.get();
+		}
+
+		public Map<File, Throwable> getFailures() {
+			return failures;
+		}
+
+		/**
+		 * @return Size of the successfully processed input files in bytes
+		 */
+		public synchronized long getBytes() {
+			return bytes;
+		}
+
+		/**
+		 * @return the error which stopped listing the input files early, or null
+		 */
+		public RuntimeException getScanError() {
+			return scanError;
+		}
+
+		public long getNanos() {
+			return nanos;
+		}
+
+		public double getFilesPerSecond() {
+			return nanos == 0 ? 0 : getSucceededCount() / (nanos / 1e9);
+		}
+
+		public double getMegabytesPerSecond() {
+			return nanos == 0 ? 0 : getBytes() / 1e6 / (nanos / 1e9);
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d file(s) predicted, %d failed, %.2f files/s, %.2f MB/s",
+					getSucceededCount(), failures.size(), getFilesPerSecond(), getMegabytesPerSecond());
+		}
+	}
+}
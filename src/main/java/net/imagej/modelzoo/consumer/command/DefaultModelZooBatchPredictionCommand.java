@@ -32,6 +32,7 @@ package net.imagej.modelzoo.consumer.command;
 import io.scif.services.DatasetIOService;
 import net.imagej.Dataset;
 import net.imagej.modelzoo.ModelZooService;
+import org.apache.commons.io.FileUtils;
 import org.scijava.command.Command;
 import org.scijava.command.DynamicCommand;
 import org.scijava.io.location.FileLocation;
@@ -44,16 +45,31 @@ import org.scijava.widget.FileWidget;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.Arrays;
-import java.util.Collections;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.HashMap;
-import java.util.List;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 @Plugin(type = Command.class)
 public class DefaultModelZooBatchPredictionCommand extends DynamicCommand {
 
+	private static final String partialPrefix = ".partial_";
+	private static final String chunkedOutputInput = "chunkedOutputDirectory";
+	private static final String cacheDirectoryInput = "cacheDirectory";
+
 	@Parameter(label = "Import model (.zip) from file")
 	private File modelFile;
 
@@ -66,6 +82,27 @@ public class DefaultModelZooBatchPredictionCommand extends DynamicCommand {
 	@Parameter(style = FileWidget.DIRECTORY_STYLE)
 	private File outputDirectory;
 
+	@Parameter(label = "Input files (comma separated patterns, e.g. *.tif)", required = false)
+	private String includePattern = "";
+
+	@Parameter(label = "Excluded files and directories (comma separated patterns)", required = false)
+	private String excludePattern = "";
+
+	@Parameter(label = "Directory depth (1 = no subdirectories)", required = false, min = "1")
+	private int recursionDepth = 1;
+
+	@Parameter(label = "Number of threads reading input files", required = false, min = "1")
+	private int readerThreads = 2;
+
+	@Parameter(label = "Number of threads writing output files", required = false, min = "1")
+	private int writerThreads = 2;
+
+	@Parameter(label = "Number of files waiting between reading, prediction and writing", required = false, min = "1")
+	private int queueSize = 4;
+
+	@Parameter(label = "Write outputs tile by tile into an N5 container per input file", required = false)
+	private boolean chunkedOutput = false;
+
 	@Parameter
 	private LogService log;
 
@@ -75,54 +112,198 @@ public class DefaultModelZooBatchPredictionCommand extends DynamicCommand {
 	@Parameter
 	private ModelZooService modelZooService;
 
+	private BatchInputScanner scanner;
+
+	// the cached outputs of each input file, deleted once the outputs are saved
+	private Path cacheDirectory;
+	private final Map<File, Path> cacheDirectories = new ConcurrentHashMap<>();
+
 	public void run() {
 
 		if (!valid(inputDirectory, "Input")) return;
 		if (!valid(outputDirectory, "Output")) return;
 
-		File[] files = inputDirectory.listFiles();
-		if(files == null || files.length == 0) {
+		scanner = new BatchInputScanner(inputDirectory.toPath());
+		scanner.setIncludes(includePattern);
+		scanner.setExcludes(excludePattern);
+		scanner.setMaxDepth(recursionDepth);
+		scanner.skipDirectory(outputDirectory.toPath());
+		Iterator<File> inputFiles = StreamSupport.stream(scanner.spliterator(), false)
+				.map(Path::toFile)
+				.filter(file -> !file.getName().equals(BatchPredictionManifest.FILE_NAME))
+				.iterator();
+		if(!inputFiles.hasNext()) {
 			log.warn("No files in input directory.");
 			return;
 		}
 
+		if(chunkedOutput && prediction.getInfo().getInput(chunkedOutputInput) == null) {
+			log.warn("Prediction cannot write outputs tile by tile, saving them as files instead.");
+			chunkedOutput = false;
+		}
+
 		final long startTime = System.currentTimeMillis();
 		log.info("ModelZoo batch prediction start: " + inputDirectory);
 
-		List<File>  inputFiles = Arrays.asList(files);
-		Collections.sort(inputFiles);
-		boolean firstRun = true;
-		for (File inputFile : inputFiles) {
+		try (BatchPredictionManifest manifest = BatchPredictionManifest.open(outputDirectory)) {
+			deletePartialOutputs();
+			cacheDirectory = Files.createTempDirectory("modelzoo-batch");
+			String modelHash = BatchPredictionManifest.hash(modelFile);
+			Map<File, Long> predictionStart = new ConcurrentHashMap<>();
+			String options;
+			// for the first run, execute the command interactively
+			// to harvest missing inputs. for consecutive runs,
+			// we assume the same input parameters will be used
+			File firstFile = inputFiles.next();
 			try {
-				Dataset input = datasetIOService.open(inputFile.getAbsolutePath());
-				prediction.setInput("input", input);
-				prediction.resolveInput("input");
-				if(firstRun) {
-					// for the first run, execute the command interactively
-					// to harvest missing inputs. for consecutive runs,
-					// we assume the same input parameters will be used
-					firstRun = false;
-					Map<String, Object> chosenParameters = prediction.getInputs();
-					chosenParameters.forEach(this::setInput);
-					context().service(ModuleService.class).run(prediction, true).get();
-				} else {
-					context().service(ModuleService.class).run(prediction, false).get();
-				}
-				saveOutputs(inputFile, prediction);
-			} catch (IOException | ExecutionException | InterruptedException e) {
+				predictionStart.put(firstFile, System.currentTimeMillis());
+				setInput(prediction, datasetIOService.open(firstFile.getAbsolutePath()));
+				setChunkedOutput(prediction, firstFile);
+				setCacheDirectory(prediction, firstFile);
+				Map<String, Object> chosenParameters = prediction.getInputs();
+				chosenParameters.forEach(this::setInput);
+				context().service(ModuleService.class).run(prediction, true).get();
+				options = getOptions(prediction);
+				saveOutputs(firstFile, getOutputs(prediction));
+				manifest.record(firstFile, modelHash, options, BatchPredictionManifest.Status.DONE,
+						System.currentTimeMillis() - predictionStart.remove(firstFile));
+			} catch (IOException | ExecutionException e) {
 				e.printStackTrace();
+				options = getOptions(prediction);
+				manifest.record(firstFile, modelHash, options, BatchPredictionManifest.Status.FAILED, 0);
+			} finally {
+				deleteCacheDirectory(firstFile);
 			}
+
+			// skip inputs which were predicted with the same model and options before and did not change since
+			AtomicInteger skipped = new AtomicInteger();
+			final String chosenOptions = options;
+			Iterator<File> remainingFiles = StreamSupport.stream(Spliterators.spliteratorUnknownSize(inputFiles, Spliterator.ORDERED), false)
+					.filter(file -> {
+						if(!manifest.isDone(file, modelHash, chosenOptions)) return true;
+						skipped.incrementAndGet();
+						return false;
+					}).iterator();
+
+			BatchPredictionPipeline<Dataset, Map<String, Object>> pipeline = new BatchPredictionPipeline<>(
+					file -> datasetIOService.open(file.getAbsolutePath()),
+					(file, input) -> {
+						predictionStart.put(file, System.currentTimeMillis());
+						setInput(prediction, input);
+						setChunkedOutput(prediction, file);
+						setCacheDirectory(prediction, file);
+						context().service(ModuleService.class).run(prediction, false).get();
+						return getOutputs(prediction);
+					},
+					(file, outputs) -> {
+						try {
+							saveOutputs(file, outputs);
+						} finally {
+							deleteCacheDirectory(file);
+						}
+						manifest.record(file, modelHash, chosenOptions, BatchPredictionManifest.Status.DONE,
+								System.currentTimeMillis() - predictionStart.remove(file));
+					});
+			pipeline.setReaderThreads(readerThreads);
+			pipeline.setWriterThreads(writerThreads);
+			pipeline.setQueueCapacity(queueSize);
+			BatchPredictionPipeline.Summary summary = pipeline.run(remainingFiles);
+			for (Map.Entry<File, Throwable> failure : summary.getFailures().entrySet()) {
+				log.error("Could not process " + failure.getKey(), failure.getValue());
+				deleteCacheDirectory(failure.getKey());
+				Long start = predictionStart.remove(failure.getKey());
+				manifest.record(failure.getKey(), modelHash, chosenOptions, BatchPredictionManifest.Status.FAILED,
+						start == null ? 0 : System.currentTimeMillis() - start);
+			}
+			if(summary.getScanError() != null) log.error("Could not list all input files", summary.getScanError());
+			if(skipped.get() > 0) log.info("Skipped " + skipped.get() + " file(s) already predicted according to " + BatchPredictionManifest.FILE_NAME);
+			log.info("ModelZoo batch prediction summary: " + summary);
+		} catch (IOException | UncheckedIOException e) {
+			log.error("Could not access batch prediction manifest or input files", e);
+		} catch (InterruptedException e) {
+			log.warn("ModelZoo batch prediction interrupted.");
+			Thread.currentThread().interrupt();
+		} finally {
+			cacheDirectories.clear();
+			if(cacheDirectory != null) FileUtils.deleteQuietly(cacheDirectory.toFile());
 		}
 
 		log.info("ModelZoo batch prediction exit (took " + (System.currentTimeMillis() - startTime) + " milliseconds)");
 
 	}
 
-	private void saveOutputs(File inputFile, Module prediction) throws IOException {
+	/**
+	 * @return the parameters of the prediction module which are not specific to a single input, sorted by name
+	 */
+	private String getOptions(Module prediction) {
+		Map<String, Object> options = new TreeMap<>();
+		if(chunkedOutput) options.put("chunkedOutput", true);
+		prediction.getInputs().forEach((name, value) -> {
+			if(name.equals("input")) return;
+			if(value instanceof Number || value instanceof Boolean || value instanceof CharSequence
+					|| value instanceof Character || value instanceof Enum) {
+				options.put(name, value);
+			}
+		});
+		return options.toString();
+	}
+
+	private static void setInput(Module prediction, Dataset input) {
+		prediction.setInput("input", input);
+		prediction.resolveInput("input");
+	}
+
+	private static Map<String, Object> getOutputs(Module prediction) {
 		HashMap<String, Object> nonNullOutputs = new HashMap<>();
 		prediction.getOutputs().forEach((s, o) -> {
 			if (o != null) nonNullOutputs.put(s, o);
 		});
+		return nonNullOutputs;
+	}
+
+	/**
+	 * Lets the prediction write its outputs tile by tile into a partial N5 container next to the other outputs,
+	 * which gets renamed once the prediction is done. The container is not asked for when running the first file.
+	 */
+	private void setChunkedOutput(Module prediction, File inputFile) throws IOException {
+		if(prediction.getInfo().getInput(chunkedOutputInput) == null) return;
+		File container = chunkedOutput ? getChunkedOutputFile(inputFile, partialPrefix) : null;
+		if(container != null) FileUtils.deleteDirectory(container);
+		prediction.setInput(chunkedOutputInput, container);
+		prediction.resolveInput(chunkedOutputInput);
+	}
+
+	/**
+	 * Lets the prediction cache the tiled outputs of the given file in their own directory,
+	 * so that they can be deleted as soon as the outputs are saved.
+	 */
+	private void setCacheDirectory(Module prediction, File inputFile) throws IOException {
+		if(prediction.getInfo().getInput(cacheDirectoryInput) == null) return;
+		Path directory = Files.createTempDirectory(cacheDirectory, "input");
+		cacheDirectories.put(inputFile, directory);
+		prediction.setInput(cacheDirectoryInput, directory.toFile());
+		prediction.resolveInput(cacheDirectoryInput);
+	}
+
+	private void deleteCacheDirectory(File inputFile) {
+		Path directory = cacheDirectories.remove(inputFile);
+		if(directory != null) FileUtils.deleteQuietly(directory.toFile());
+	}
+
+	private File getChunkedOutputFile(File inputFile, String prefix) {
+		String name = inputFile.getName().split("\\.(?=[^\\.]+$)")[0] + ".n5";
+		File outputDir = scanner.getMirroredPath(outputDirectory.toPath(), inputFile.toPath()).getParent().toFile();
+		return new File(outputDir, prefix + name);
+	}
+
+	private void saveOutputs(File inputFile, Map<String, Object> nonNullOutputs) throws IOException {
+		// the container only exists if the outputs were tiled, otherwise they are saved as files
+		if(chunkedOutput && getChunkedOutputFile(inputFile, partialPrefix).exists()) {
+			File container = getChunkedOutputFile(inputFile, "");
+			FileUtils.deleteDirectory(container);
+			Files.move(getChunkedOutputFile(inputFile, partialPrefix).toPath(), container.toPath());
+			return;
+		}
 		for (Map.Entry<String, Object> entry : nonNullOutputs.entrySet()) {
 			Object object = entry.getValue();
 			if (object instanceof Dataset) {
@@ -132,13 +313,32 @@ public class DefaultModelZooBatchPredictionCommand extends DynamicCommand {
 					String[] tokens = outName.split("\\.(?=[^\\.]+$)");
 					outName = tokens[0] + "_" + output.getName() + "." + tokens[1];
 				}
-				File outputFile = new File(outputDirectory, outName);
-				if (outputFile.exists()) outputFile.delete();
-				datasetIOService.save(output, new FileLocation(outputFile));
+				// the output is stored in the same subdirectory relative to the output directory as the input
+				File outputDir = scanner.getMirroredPath(outputDirectory.toPath(), inputFile.toPath()).getParent().toFile();
+				Files.createDirectories(outputDir.toPath());
+				// write into a temporary file first, a partially written output should never replace a complete one
+				File outputFile = new File(outputDir, outName);
+				File partialFile = new File(outputDir, partialPrefix + outName);
+				if (partialFile.exists()) partialFile.delete();
+				datasetIOService.save(output, new FileLocation(partialFile));
+				try {
+					Files.move(partialFile.toPath(), outputFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+				} catch (AtomicMoveNotSupportedException e) {
+					Files.move(partialFile.toPath(), outputFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+				}
 			}
 		}
 	}
 
+	private void deletePartialOutputs() throws IOException {
+		try (Stream<Path> files = Files.walk(outputDirectory.toPath(), recursionDepth)) {
+			// partial N5 containers are directories, collect them before deleting them
+			files.filter(file -> file.getFileName().toString().startsWith(partialPrefix))
+					.collect(Collectors.toList())
+					.forEach(file -> FileUtils.deleteQuietly(file.toFile()));
+		}
+	}
+
 	private boolean valid(File dir, String name) {
 		if (!dir.exists()) {
 			log.error(name + " does not exist");
@@ -31,12 +31,15 @@ package net.imagej.modelzoo.consumer.model;
 
 import io.bioimage.specification.ModelSpecification;
 import io.scif.MissingLibraryException;
+import net.imagej.axis.AxisType;
+import net.imagej.modelzoo.consumer.model.node.ImageDataReference;
 import net.imagej.modelzoo.consumer.model.node.ModelZooNode;
 import org.scijava.Disposable;
 import org.scijava.io.location.Location;
 import org.scijava.plugin.SciJavaPlugin;
 
 import java.util.List;
+import java.util.Map;
 
 public interface ModelZooModel extends Disposable, SciJavaPlugin {
 
@@ -55,4 +58,45 @@ public interface ModelZooModel extends Disposable, SciJavaPlugin {
 
 	void predict() throws IllegalArgumentException, OutOfMemoryError;
 
+	/**
+	 * @return whether {@link #predict(List)} is implemented and can be called from multiple threads at once
+	 */
+	default boolean supportsConcurrentPrediction() {
+		return false;
+	}
+
+	/**
+	 * Predicts the given data without changing the data of the nodes.
+	 * @param inputs the data of each input node
+	 * @return the data of each output node
+	 */
+	default List<ImageDataReference<?>> predict(List<ImageDataReference<?>> inputs) throws IllegalArgumentException, OutOfMemoryError {
+		throw new UnsupportedOperationException("Concurrent prediction is not supported by " + getClass().getSimpleName());
+	}
+
+	/**
+	 * Configures how predictions are run, e.g. before calling {@link #predict(List)} from multiple threads.
+	 * @param sessions how many independent sessions are used by concurrent predictions (1 = one shared session)
+	 * @param configuration settings of the sessions, unset values are taken from the defaults of the model archive
+	 */
+	default void setParallelism(int sessions, SessionConfiguration configuration) {
+	}
+
+	/**
+	 * Runs dummy data through the model so that the first prediction does not pay for initializing it,
+	 * does nothing if the model was already warmed up with the same tile shape and configuration.
+	 * @param tileShape size of the planned tiles for each axis, adjusted to the minimal size and step of the axis,
+	 *                  axes which are not part of the map get their minimal size
+	 */
+	default void warmUp(Map<AxisType, Long> tileShape) {
+	}
+
+	/**
+	 * Drops the data of the previous prediction so that the loaded model can be reused.
+	 * @return whether the model supports being reused
+	 */
+	default boolean reset() {
+		return false;
+	}
+
 }
@@ -0,0 +1,196 @@
+/*-
+ * #%L
+ * This is the bioimage.io modelzoo library for ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2020 Center for Systems Biology Dresden
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imagej.modelzoo.consumer.model;
+
+import io.bioimage.specification.ModelSpecification;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import static io.bioimage.specification.util.SpecificationUtil.asMap;
+
+/**
+ * Settings of the sessions running a model, values which are not set keep the default of the framework.
+ * A model archive can provide defaults in the {@code config: fiji: session:} section of its specification,
+ * using the names of the setters as keys. There are no GPU memory settings: the model is loaded before the
+ * configuration is applied, which already sets up the GPU memory of the process.
+ */
+public class SessionConfiguration {
+
+	private final static String idConfigFiji = "fiji";
+	private final static String idSession = "session";
+	private final static String intraOpThreadsKey = "intraOpThreads";
+	private final static String interOpThreadsKey = "interOpThreads";
+	private final static String usePerSessionThreadsKey = "usePerSessionThreads";
+	private final static String constantFoldingKey = "constantFolding";
+	private final static String xlaJitKey = "xlaJit";
+
+	private Integer intraOpThreads;
+	private Integer interOpThreads;
+	private Boolean usePerSessionThreads;
+	private Boolean constantFolding;
+	private Boolean xlaJit;
+
+	/**
+	 * @param intraOpThreads How many threads are used within a single operation
+	 */
+	public SessionConfiguration intraOpThreads(Integer intraOpThreads) {
+		this.intraOpThreads = intraOpThreads;
+		return this;
+	}
+
+	/**
+	 * @param interOpThreads How many operations can run in parallel
+	 */
+	public SessionConfiguration interOpThreads(Integer interOpThreads) {
+		this.interOpThreads = interOpThreads;
+		return this;
+	}
+
+	/**
+	 * @param usePerSessionThreads Whether each session gets its own thread pools instead of sharing the global ones
+	 */
+	public SessionConfiguration usePerSessionThreads(Boolean usePerSessionThreads) {
+		this.usePerSessionThreads = usePerSessionThreads;
+		return this;
+	}
+
+	/**
+	 * @param constantFolding Whether the graph optimizer precomputes operations depending on constants only
+	 */
+	public SessionConfiguration constantFolding(Boolean constantFolding) {
+		this.constantFolding = constantFolding;
+		return this;
+	}
+
+	/**
+	 * @param xlaJit Whether the graph gets compiled with XLA, only effective if the framework was built with XLA
+	 */
+	public SessionConfiguration xlaJit(Boolean xlaJit) {
+		this.xlaJit = xlaJit;
+		return this;
+	}
+
+	public Integer getIntraOpThreads() {
+		return intraOpThreads;
+	}
+
+	public Integer getInterOpThreads() {
+		return interOpThreads;
+	}
+
+	public Boolean getUsePerSessionThreads() {
+		return usePerSessionThreads;
+	}
+
+	public Boolean getConstantFolding() {
+		return constantFolding;
+	}
+
+	public Boolean getXlaJit() {
+		return xlaJit;
+	}
+
+	/**
+	 * @return whether no value is set, i.e. the defaults of the framework are used
+	 */
+	public boolean isEmpty() {
+		return toMap().isEmpty();
+	}
+
+	/**
+	 * @return a new configuration with the values of this configuration, values which are not set are taken from the given defaults
+	 */
+	public SessionConfiguration withDefaults(SessionConfiguration defaults) {
+		Map<String, Object> values = defaults == null ? new LinkedHashMap<>() : defaults.toMap();
+		values.putAll(toMap());
+		return fromMap(values);
+	}
+
+	/**
+	 * @return the defaults of the given model specification, an empty configuration if it does not provide any
+	 */
+	public static SessionConfiguration fromSpecification(ModelSpecification specification) {
+		Map<String, Object> config = specification == null ? null : specification.getConfig();
+		Map<String, Object> fijiConfig = config == null ? null : asMap(config.get(idConfigFiji));
+		Map<String, Object> session = fijiConfig == null ? null : asMap(fijiConfig.get(idSession));
+		return fromMap(session);
+	}
+
+	public static SessionConfiguration fromMap(Map<String, Object> values) {
+		SessionConfiguration configuration = new SessionConfiguration();
+		if(values == null) return configuration;
+		configuration.intraOpThreads = toInteger(values.get(intraOpThreadsKey));
+		configuration.interOpThreads = toInteger(values.get(interOpThreadsKey));
+		configuration.usePerSessionThreads = (Boolean) values.get(usePerSessionThreadsKey);
+		configuration.constantFolding = (Boolean) values.get(constantFoldingKey);
+		configuration.xlaJit = (Boolean) values.get(xlaJitKey);
+		return configuration;
+	}
+
+	private static Integer toInteger(Object value) {
+		return value == null ? null : ((Number) value).intValue();
+	}
+
+	/**
+	 * @return the values which are set, as stored in the model specification
+	 */
+	public Map<String, Object> toMap() {
+		Map<String, Object> values = new LinkedHashMap<>();
+		putIfSet(values, intraOpThreadsKey, intraOpThreads);
+		putIfSet(values, interOpThreadsKey, interOpThreads);
+		putIfSet(values, usePerSessionThreadsKey, usePerSessionThreads);
+		putIfSet(values, constantFoldingKey, constantFolding);
+		putIfSet(values, xlaJitKey, xlaJit);
+		return values;
+	}
+
+	private static void putIfSet(Map<String, Object> values, String key, Object value) {
+		if(value != null) values.put(key, value);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (o == null || getClass() != o.getClass()) return false;
+		return toMap().equals(((SessionConfiguration) o).toMap());
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(toMap());
+	}
+
+	@Override
+	public String toString() {
+		return toMap().toString();
+	}
+}
@@ -29,15 +29,24 @@
 
 package net.imagej.modelzoo.consumer.model.node;
 
+import net.imglib2.img.cell.AbstractCellImg;
+import net.imglib2.img.cell.CellGrid;
 import net.imglib2.type.NativeType;
 import net.imglib2.type.numeric.RealType;
 
 public class InputImageNode extends ImageNode {
 
 	private ImageDataReference<?> originalDataType;
+	private int[] chunkSize;
 
 	public void setOriginalData(ImageDataReference<?> data) {
 		originalDataType = getEmptyReference(data);
+		chunkSize = null;
+		if(data.getData() instanceof AbstractCellImg) {
+			CellGrid grid = ((AbstractCellImg<?, ?, ?, ?>) data.getData()).getCellGrid();
+			chunkSize = new int[grid.numDimensions()];
+			grid.cellDimensions(chunkSize);
+		}
 	}
 
 	private <T extends RealType<T> & NativeType<T>> DefaultImageDataReference<T> getEmptyReference(ImageDataReference<T> data) {
@@ -53,4 +62,11 @@ public class InputImageNode extends ImageNode {
 	public <O extends RealType<O> & NativeType<O>> O getOriginalDataType() {
 		return (O) originalDataType.getDataType();
 	}
+
+	/**
+	 * @return the chunk size of the original data if it is stored in cells, otherwise null
+	 */
+	public int[] getChunkSize() {
+		return chunkSize;
+	}
 }
@@ -106,4 +106,13 @@ public class ModelZooAxis {
 	public void setStep(Integer step) {
 		this.step = step;
 	}
+
+	/**
+	 * @return the smallest size accepted by the model which is at least the given size, the minimal size if the axis has no step
+	 */
+	public long getValidSize(long size) {
+		long min = this.min == null ? 1 : this.min;
+		if (step == null || step <= 0 || size <= min) return min;
+		return min + (size - min + step - 1) / step * step;
+	}
 }
@@ -0,0 +1,60 @@
+/*-
+ * #%L
+ * This is the bioimage.io modelzoo library for ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2020 Center for Systems Biology Dresden
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imagej.modelzoo.consumer.model.prediction;
+
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.RealType;
+
+import java.io.IOException;
+
+/**
+ * Chunked image file (e.g. an N5 dataset) the tiles of a prediction output are written to as soon as they are predicted,
+ * instead of collecting the whole output in a cache first.
+ */
+public interface ChunkedImageSink<T extends RealType<T> & NativeType<T>> {
+
+	/**
+	 * Called once before the first tile is written.
+	 * @param chunkSize size of the output tiles, a suggestion for the chunk size of the file
+	 */
+	void create(long[] dimensions, int[] chunkSize, T type) throws IOException;
+
+	/**
+	 * Writes the given tile, the interval of the tile is its position in the output.
+	 * Tiles might not match the chunks of the file, e.g. after tiles were split because the memory was insufficient.
+	 */
+	void writeTile(RandomAccessibleInterval<? extends RealType<?>> tile) throws IOException;
+
+	/**
+	 * Called after the last tile was written.
+	 * @return the written image, reading it lazily
+	 */
+	RandomAccessibleInterval<T> finish() throws IOException;
+}
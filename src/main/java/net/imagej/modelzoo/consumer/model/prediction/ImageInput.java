@@ -31,6 +31,8 @@ package net.imagej.modelzoo.consumer.model.prediction;
 import net.imagej.modelzoo.consumer.preprocessing.InputHandler;
 import net.imagej.modelzoo.consumer.preprocessing.InputMappingHandler;
 import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.cache.img.ReadOnlyCachedCellImgFactory;
+import net.imglib2.cache.img.ReadOnlyCachedCellImgOptions;
 import net.imglib2.type.NativeType;
 import net.imglib2.type.numeric.RealType;
 
@@ -46,6 +48,19 @@ public class ImageInput<T extends RealType<T> & NativeType<T>> implements Predic
 		this.name = name;
 	}
 
+	/**
+	 * Creates an input which reads the chunks of the source lazily, when they are needed for predicting a tile.
+	 * Tiles are aligned with the chunks of the source if possible.
+	 */
+	public ImageInput(String name, ChunkedImageSource<T> source, String axes) {
+		this(name, openLazily(source), axes);
+	}
+
+	private static <T extends RealType<T> & NativeType<T>> RandomAccessibleInterval<T> openLazily(ChunkedImageSource<T> source) {
+		ReadOnlyCachedCellImgOptions options = ReadOnlyCachedCellImgOptions.options().cellDimensions(source.getChunkSize());
+		return new ReadOnlyCachedCellImgFactory(options).create(source.getDimensions(), source.getType(), source::readChunk);
+	}
+
 	@Override
 	public void attachToInputHandler(InputHandler handler) {
 		handler.handleImageInput(this);
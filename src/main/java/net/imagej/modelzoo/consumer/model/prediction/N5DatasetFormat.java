@@ -0,0 +1,174 @@
+/*-
+ * #%L
+ * This is the bioimage.io modelzoo library for ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2020 Center for Systems Biology Dresden
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imagej.modelzoo.consumer.model.prediction;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.ByteType;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.integer.LongType;
+import net.imglib2.type.numeric.integer.ShortType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedIntType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.type.numeric.real.FloatType;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Layout of uncompressed N5 datasets, as written by {@link N5ImageSink} and read by {@link N5ImageSource}.
+ * A dataset is a directory with an {@code attributes.json} file and one file per block at {@code x/y/z/..},
+ * each block starting with a header (mode, number of dimensions, block size) followed by the big endian pixel values.
+ */
+class N5DatasetFormat {
+
+	static final String ATTRIBUTES = "attributes.json";
+	private static final String VERSION = "2.5.1";
+
+	static class Attributes {
+		long[] dimensions;
+		int[] blockSize;
+		String dataType;
+		JsonObject compression;
+	}
+
+	static void writeAttributes(Path dataset, long[] dimensions, int[] blockSize, String dataType) throws IOException {
+		Files.createDirectories(dataset);
+		Path root = dataset.getParent();
+		if(root != null && !Files.exists(root.resolve(ATTRIBUTES))) {
+			JsonObject rootAttributes = new JsonObject();
+			rootAttributes.addProperty("n5", VERSION);
+			write(root.resolve(ATTRIBUTES), rootAttributes);
+		}
+		Attributes attributes = new Attributes();
+		attributes.dimensions = dimensions;
+		attributes.blockSize = blockSize;
+		attributes.dataType = dataType;
+		attributes.compression = new JsonObject();
+		attributes.compression.addProperty("type", "raw");
+		write(dataset.resolve(ATTRIBUTES), attributes);
+	}
+
+	private static void write(Path file, Object json) throws IOException {
+		try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			new Gson().toJson(json, writer);
+		}
+	}
+
+	static Attributes readAttributes(Path dataset) throws IOException {
+		try (Reader reader = Files.newBufferedReader(dataset.resolve(ATTRIBUTES), StandardCharsets.UTF_8)) {
+			Attributes attributes = new Gson().fromJson(reader, Attributes.class);
+			if(attributes.compression != null && attributes.compression.has("type")
+					&& !"raw".equals(attributes.compression.get("type").getAsString())) {
+				throw new IOException("Compressed N5 datasets are not supported: " + dataset);
+			}
+			return attributes;
+		}
+	}
+
+	static Path getBlockPath(Path dataset, long[] gridPosition) {
+		Path path = dataset;
+		for (long position : gridPosition) {
+			path = path.resolve(Long.toString(position));
+		}
+		return path;
+	}
+
+	static String getDataType(RealType<?> type) throws IOException {
+		if(type instanceof FloatType) return "float32";
+		if(type instanceof DoubleType) return "float64";
+		if(type instanceof UnsignedByteType) return "uint8";
+		if(type instanceof ByteType) return "int8";
+		if(type instanceof UnsignedShortType) return "uint16";
+		if(type instanceof ShortType) return "int16";
+		if(type instanceof UnsignedIntType) return "uint32";
+		if(type instanceof IntType) return "int32";
+		if(type instanceof LongType) return "int64";
+		throw new IOException("Data type not supported by N5 output: " + type.getClass().getSimpleName());
+	}
+
+	@SuppressWarnings("unchecked")
+	static <T extends RealType<T> & NativeType<T>> T createType(String dataType) throws IOException {
+		switch (dataType) {
+			case "float32": return (T) new FloatType();
+			case "float64": return (T) new DoubleType();
+			case "uint8": return (T) new UnsignedByteType();
+			case "int8": return (T) new ByteType();
+			case "uint16": return (T) new UnsignedShortType();
+			case "int16": return (T) new ShortType();
+			case "uint32": return (T) new UnsignedIntType();
+			case "int32": return (T) new IntType();
+			case "int64": return (T) new LongType();
+			default: throw new IOException("N5 data type not supported: " + dataType);
+		}
+	}
+
+	static int getBytesPerPixel(String dataType) {
+		switch (dataType) {
+			case "float64": case "int64": return 8;
+			case "float32": case "int32": case "uint32": return 4;
+			case "uint16": case "int16": return 2;
+			default: return 1;
+		}
+	}
+
+	static void put(ByteBuffer buffer, String dataType, RealType<?> value) {
+		switch (dataType) {
+			case "float32": buffer.putFloat(value.getRealFloat()); break;
+			case "float64": buffer.putDouble(value.getRealDouble()); break;
+			case "uint8": case "int8": buffer.put((byte) (long) value.getRealDouble()); break;
+			case "uint16": case "int16": buffer.putShort((short) (long) value.getRealDouble()); break;
+			case "uint32": case "int32": buffer.putInt((int) (long) value.getRealDouble()); break;
+			default: buffer.putLong((long) value.getRealDouble());
+		}
+	}
+
+	static void get(ByteBuffer buffer, String dataType, RealType<?> value) {
+		switch (dataType) {
+			case "float32": value.setReal(buffer.getFloat()); break;
+			case "float64": value.setReal(buffer.getDouble()); break;
+			case "uint8": value.setReal(buffer.get() & 0xff); break;
+			case "int8": value.setReal(buffer.get()); break;
+			case "uint16": value.setReal(buffer.getShort() & 0xffff); break;
+			case "int16": value.setReal(buffer.getShort()); break;
+			case "uint32": value.setReal(buffer.getInt() & 0xffffffffL); break;
+			case "int32": value.setReal(buffer.getInt()); break;
+			default: value.setReal(buffer.getLong());
+		}
+	}
+}
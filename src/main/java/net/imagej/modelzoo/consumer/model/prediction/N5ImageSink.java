@@ -0,0 +1,201 @@
+/*-
+ * #%L
+ * This is the bioimage.io modelzoo library for ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2020 Center for Systems Biology Dresden
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imagej.modelzoo.consumer.model.prediction;
+
+import net.imglib2.Cursor;
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.Views;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes an image as uncompressed N5 dataset, block by block.
+ * A block is written to disk as soon as tiles covering all of its pixels were written, only incomplete blocks are kept in memory.
+ */
+public class N5ImageSink<T extends RealType<T> & NativeType<T>> implements ChunkedImageSink<T> {
+
+	private final Path dataset;
+	private long[] dimensions;
+	private int[] blockSize;
+	private long[] gridSize;
+	private String dataType;
+	private T type;
+	private final Map<Long, PendingBlock<T>> pendingBlocks = new HashMap<>();
+
+	private static class PendingBlock<T> {
+		final long[] gridPosition;
+		final Interval interval;
+		final Img<T> data;
+		final BitSet written;
+		int remaining;
+
+		PendingBlock(long[] gridPosition, Interval interval, Img<T> data) {
+			this.gridPosition = gridPosition;
+			this.interval = interval;
+			this.data = data;
+			this.remaining = (int) Intervals.numElements(interval);
+			this.written = new BitSet(remaining);
+		}
+	}
+
+	/**
+	 * @param dataset directory of the dataset, located inside the N5 container directory
+	 */
+	public N5ImageSink(Path dataset) {
+		this.dataset = dataset;
+	}
+
+	@Override
+	public void create(long[] dimensions, int[] chunkSize, T type) throws IOException {
+		this.dimensions = dimensions.clone();
+		this.blockSize = chunkSize.clone();
+		this.type = type.createVariable();
+		this.dataType = N5DatasetFormat.getDataType(type);
+		gridSize = new long[dimensions.length];
+		for (int d = 0; d < dimensions.length; d++) {
+			gridSize[d] = (dimensions[d] + blockSize[d] - 1) / blockSize[d];
+		}
+		N5DatasetFormat.writeAttributes(dataset, dimensions, blockSize, dataType);
+	}
+
+	@Override
+	public synchronized void writeTile(RandomAccessibleInterval<? extends RealType<?>> tile) throws IOException {
+		int n = dimensions.length;
+		long[] gridMin = new long[n];
+		long[] gridMax = new long[n];
+		for (int d = 0; d < n; d++) {
+			gridMin[d] = Math.max(0, tile.min(d)) / blockSize[d];
+			gridMax[d] = Math.min(dimensions[d] - 1, tile.max(d)) / blockSize[d];
+			if(gridMin[d] > gridMax[d]) return;
+		}
+		long[] gridPosition = gridMin.clone();
+		while(true) {
+			writeToBlock(tile, gridPosition.clone());
+			int d = 0;
+			for (; d < n; d++) {
+				if(++gridPosition[d] <= gridMax[d]) break;
+				gridPosition[d] = gridMin[d];
+			}
+			if(d == n) break;
+		}
+	}
+
+	private void writeToBlock(RandomAccessibleInterval<? extends RealType<?>> tile, long[] gridPosition) throws IOException {
+		long index = 0;
+		for (int d = gridPosition.length - 1; d >= 0; d--) {
+			index = index * gridSize[d] + gridPosition[d];
+		}
+		PendingBlock<T> block = pendingBlocks.get(index);
+		if(block == null) {
+			Interval interval = getBlockInterval(gridPosition);
+			block = new PendingBlock<>(gridPosition, interval, new ArrayImgFactory<>(type).create(interval));
+			pendingBlocks.put(index, block);
+		}
+		Interval intersection = Intervals.intersect(block.interval, tile);
+		if(Intervals.isEmpty(intersection)) return;
+		Cursor<? extends RealType<?>> in = Views.interval(tile, intersection).localizingCursor();
+		RandomAccess<T> out = Views.translate(block.data, Intervals.minAsLongArray(block.interval)).randomAccess();
+		long[] blockMin = Intervals.minAsLongArray(block.interval);
+		long[] blockDims = Intervals.dimensionsAsLongArray(block.interval);
+		while (in.hasNext()) {
+			in.fwd();
+			out.setPosition(in);
+			out.get().setReal(in.get().getRealDouble());
+			long offset = 0;
+			for (int d = blockMin.length - 1; d >= 0; d--) {
+				offset = offset * blockDims[d] + in.getLongPosition(d) - blockMin[d];
+			}
+			if(!block.written.get((int) offset)) {
+				block.written.set((int) offset);
+				block.remaining--;
+			}
+		}
+		if(block.remaining == 0) {
+			writeBlock(block);
+			pendingBlocks.remove(index);
+		}
+	}
+
+	private Interval getBlockInterval(long[] gridPosition) {
+		long[] min = new long[gridPosition.length];
+		long[] max = new long[gridPosition.length];
+		for (int d = 0; d < min.length; d++) {
+			min[d] = gridPosition[d] * blockSize[d];
+			max[d] = Math.min(dimensions[d], min[d] + blockSize[d]) - 1;
+		}
+		return new FinalInterval(min, max);
+	}
+
+	private void writeBlock(PendingBlock<T> block) throws IOException {
+		int n = block.gridPosition.length;
+		long numElements = Intervals.numElements(block.interval);
+		ByteBuffer buffer = ByteBuffer.allocate(4 + 4 * n + (int) numElements * N5DatasetFormat.getBytesPerPixel(dataType));
+		buffer.order(ByteOrder.BIG_ENDIAN);
+		// block header: mode 0 (default), number of dimensions, size of the block
+		buffer.putShort((short) 0);
+		buffer.putShort((short) n);
+		for (int d = 0; d < n; d++) {
+			buffer.putInt((int) block.interval.dimension(d));
+		}
+		for (T pixel : Views.flatIterable(block.data)) {
+			N5DatasetFormat.put(buffer, dataType, pixel);
+		}
+		Path file = N5DatasetFormat.getBlockPath(dataset, block.gridPosition);
+		Files.createDirectories(file.getParent());
+		try (OutputStream out = Files.newOutputStream(file)) {
+			out.write(buffer.array());
+		}
+	}
+
+	@Override
+	public synchronized RandomAccessibleInterval<T> finish() throws IOException {
+		// blocks which were not fully covered by the written tiles
+		for (PendingBlock<T> block : pendingBlocks.values()) {
+			writeBlock(block);
+		}
+		pendingBlocks.clear();
+		return new ImageInput<>("", new N5ImageSource<T>(dataset), "").getImage();
+	}
+}
@@ -0,0 +1,94 @@
+/*-
+ * #%L
+ * This is the bioimage.io modelzoo library for ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2020 Center for Systems Biology Dresden
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imagej.modelzoo.consumer.model.prediction;
+
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.view.Views;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Reads an uncompressed N5 dataset block by block, missing blocks are filled with zeros.
+ */
+public class N5ImageSource<T extends RealType<T> & NativeType<T>> implements ChunkedImageSource<T> {
+
+	private final Path dataset;
+	private final N5DatasetFormat.Attributes attributes;
+
+	public N5ImageSource(Path dataset) throws IOException {
+		this.dataset = dataset;
+		this.attributes = N5DatasetFormat.readAttributes(dataset);
+	}
+
+	@Override
+	public long[] getDimensions() {
+		return attributes.dimensions.clone();
+	}
+
+	@Override
+	public int[] getChunkSize() {
+		return attributes.blockSize.clone();
+	}
+
+	@Override
+	public T getType() {
+		try {
+			return N5DatasetFormat.createType(attributes.dataType);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public void readChunk(RandomAccessibleInterval<T> chunk) throws IOException {
+		long[] gridPosition = new long[chunk.numDimensions()];
+		for (int d = 0; d < gridPosition.length; d++) {
+			gridPosition[d] = chunk.min(d) / attributes.blockSize[d];
+		}
+		Path file = N5DatasetFormat.getBlockPath(dataset, gridPosition);
+		if(!Files.exists(file)) return;
+		ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+		buffer.order(ByteOrder.BIG_ENDIAN);
+		buffer.getShort();
+		int n = buffer.getShort();
+		for (int d = 0; d < n; d++) {
+			if(buffer.getInt() != chunk.dimension(d)) throw new IOException("Unexpected block size in " + file);
+		}
+		for (T pixel : Views.flatIterable(chunk)) {
+			N5DatasetFormat.get(buffer, attributes.dataType, pixel);
+		}
+	}
+}
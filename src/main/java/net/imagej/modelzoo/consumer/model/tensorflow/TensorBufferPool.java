@@ -0,0 +1,100 @@
+/*-
+ * #%L
+ * This is the bioimage.io modelzoo library for ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2020 Center for Systems Biology Dresden
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imagej.modelzoo.consumer.model.tensorflow;
+
+import net.imagej.modelzoo.metrics.ModelZooMetrics;
+import org.tensorflow.DataType;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Direct buffers used to stage the data of input tensors, reused for all tensors of the same data type and shape.
+ * TensorFlow copies the buffer when creating a tensor, so a buffer can be released as soon as the tensor exists.
+ * Only the buffers of the most recently used shapes are kept.
+ */
+class TensorBufferPool {
+
+	static final int MAX_SHAPES = 4;
+	static final int MAX_IDLE_BUFFERS = 8;
+
+	private final Map<String, Deque<ByteBuffer>> idle = new LinkedHashMap<String, Deque<ByteBuffer>>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Deque<ByteBuffer>> eldest) {
+			return size() > MAX_SHAPES;
+		}
+	};
+
+	/**
+	 * @return a buffer in native byte order with room for exactly one tensor of the given data type and shape
+	 */
+	synchronized ByteBuffer acquire(DataType dataType, long[] shape, ModelZooMetrics metrics) {
+		Deque<ByteBuffer> buffers = idle.get(getKey(dataType, shape));
+		if(buffers != null && !buffers.isEmpty()) {
+			metrics.count(ModelZooMetrics.TENSOR_BUFFER_REUSES, 1);
+			return buffers.pop();
+		}
+		metrics.count(ModelZooMetrics.TENSOR_BUFFER_ALLOCATIONS, 1);
+		return ByteBuffer.allocateDirect(byteSize(dataType, shape)).order(ByteOrder.nativeOrder());
+	}
+
+	synchronized void release(DataType dataType, long[] shape, ByteBuffer buffer) {
+		Deque<ByteBuffer> buffers = idle.computeIfAbsent(getKey(dataType, shape), key -> new ArrayDeque<>());
+		if(buffers.size() >= MAX_IDLE_BUFFERS) return;
+		buffer.clear();
+		buffers.push(buffer);
+	}
+
+	synchronized int getIdleCount() {
+		return idle.values().stream().mapToInt(Deque::size).sum();
+	}
+
+	/**
+	 * Drops all idle buffers, their memory is freed once they are garbage collected.
+	 */
+	synchronized void clear() {
+		idle.clear();
+	}
+
+	static int byteSize(DataType dataType, long[] shape) {
+		long size = dataType.byteSize();
+		for (long dim : shape) size *= dim;
+		if(size > Integer.MAX_VALUE) throw new IllegalArgumentException("Tensor of shape " + Arrays.toString(shape) + " is too large for a single buffer");
+		return (int) size;
+	}
+
+	private static String getKey(DataType dataType, long[] shape) {
+		return dataType + Arrays.toString(shape);
+	}
+}
@@ -30,19 +30,39 @@
 package net.imagej.modelzoo.consumer.model.tensorflow;
 
 import net.imagej.modelzoo.consumer.converter.RealIntConverter;
+import net.imagej.modelzoo.consumer.preprocessing.PointwiseView;
+import net.imagej.modelzoo.metrics.ModelZooMetrics;
 import net.imagej.tensorflow.Tensors;
+import net.imglib2.Cursor;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.converter.Converters;
 import net.imglib2.converter.RealDoubleConverter;
 import net.imglib2.converter.RealFloatConverter;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.planar.PlanarImg;
 import net.imglib2.type.numeric.RealType;
 import net.imglib2.type.numeric.integer.AbstractIntegerType;
 import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.integer.LongType;
 import net.imglib2.type.numeric.real.DoubleType;
 import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Intervals;
+import net.imglib2.util.Util;
+import net.imglib2.view.Views;
 import org.tensorflow.DataType;
 import org.tensorflow.Tensor;
 
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 public class TensorFlowConverter {
 
 	public static <T extends RealType<T>>
@@ -50,6 +70,8 @@ public class TensorFlowConverter {
 		if (tensor.dataType().equals(DataType.DOUBLE)) {
 			return Tensors.imgDouble(tensor, mapping);
 		} else if (tensor.dataType().equals(DataType.FLOAT)) {
+			RandomAccessibleInterval<T> image = floatImageFromTensor(tensor, mapping);
+			if (image != null) return image;
 			return Tensors.imgFloat(tensor, mapping);
 		} else if (tensor.dataType().equals(DataType.INT64)) {
 			return Tensors.imgLong(tensor, mapping);
@@ -61,10 +83,31 @@ public class TensorFlowConverter {
 		return null;
 	}
 
+	/**
+	 * Copies a float tensor into a plain {@link ArrayImg} in case the tensor layout matches the pixel order
+	 * of the image, so that consumers can access the primitive array directly.
+	 *
+	 * @return the image or null if the layouts do not match
+	 */
+	private static <T extends RealType<T>> RandomAccessibleInterval<T> floatImageFromTensor(final Tensor<?> tensor, final int[] mapping) {
+		long[] shape = tensor.shape();
+		if (mapping.length != shape.length || tensor.numElements() == 0) return null;
+		long[] dims = new long[shape.length];
+		for (int d = 0; d < dims.length; d++) {
+			if (mapping[d] < 0 || mapping[d] >= shape.length) return null;
+			dims[d] = shape[mapping[d]];
+		}
+		if (tensorShape(dims, mapping) == null) return null;
+		float[] data = new float[tensor.numElements()];
+		tensor.writeTo(FloatBuffer.wrap(data));
+		return (RandomAccessibleInterval<T>) ArrayImgs.floats(data, dims);
+	}
+
 	public static <T extends RealType<T>> Tensor imageToTensor(
 			RandomAccessibleInterval<T> image, final int[] mapping) {
 
-		Tensor tensor;
+		Tensor tensor = tensorFromNativeStorage(image, mapping);
+		if (tensor != null) return tensor;
 		try {
 			tensor = Tensors.tensor(image, mapping);
 		} catch (IllegalArgumentException e) {
@@ -81,4 +124,237 @@ public class TensorFlowConverter {
 		}
 		return tensor;
 	}
+
+	/**
+	 * Same as {@link #imageToTensor(RandomAccessibleInterval, int[])}, but stages the data in a buffer of the given pool
+	 * instead of allocating new memory for each tensor. Images backed by a single array are still wrapped directly.
+	 */
+	static <T extends RealType<T>> Tensor imageToTensor(
+			RandomAccessibleInterval<T> image, final int[] mapping, TensorBufferPool pool, ModelZooMetrics metrics) {
+
+		List<Object> arrays = storageArrays(image);
+		if (arrays != null && arrays.size() == 1) {
+			Tensor tensor = tensorFromNativeStorage(image, mapping);
+			if (tensor != null) return tensor;
+		}
+		DataType dataType = nativeDataType(Util.getTypeFromInterval(image));
+		int[] order = tensorOrder(mapping);
+		if (dataType == null || order == null || mapping.length != image.numDimensions()) {
+			return imageToTensor(image, mapping);
+		}
+		long[] shape = new long[mapping.length];
+		for (int d = 0; d < mapping.length; d++) {
+			shape[mapping[d]] = image.dimension(d);
+		}
+		ByteBuffer buffer = pool.acquire(dataType, shape, metrics);
+		try {
+			boolean sameLayout = arrays != null && tensorShape(Intervals.dimensionsAsLongArray(image), mapping) != null;
+			if (!sameLayout || !copyArrays(arrays, buffer, dataType)) copyPixels(image, order, buffer, dataType);
+			return Tensor.create(tensorClass(dataType), shape, buffer);
+		} finally {
+			pool.release(dataType, shape, buffer);
+		}
+	}
+
+	private static boolean copyArrays(List<Object> arrays, ByteBuffer buffer, DataType dataType) {
+		Class<?> arrayClass = arrays.get(0).getClass();
+		if (dataType == DataType.FLOAT && arrayClass.equals(float[].class)) {
+			FloatBuffer target = buffer.asFloatBuffer();
+			arrays.forEach(array -> target.put((float[]) array));
+			return true;
+		}
+		if (dataType == DataType.DOUBLE && arrayClass.equals(double[].class)) {
+			DoubleBuffer target = buffer.asDoubleBuffer();
+			arrays.forEach(array -> target.put((double[]) array));
+			return true;
+		}
+		if (dataType == DataType.INT32 && arrayClass.equals(int[].class)) {
+			IntBuffer target = buffer.asIntBuffer();
+			arrays.forEach(array -> target.put((int[]) array));
+			return true;
+		}
+		if (dataType == DataType.INT64 && arrayClass.equals(long[].class)) {
+			LongBuffer target = buffer.asLongBuffer();
+			arrays.forEach(array -> target.put((long[]) array));
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Copies the pixels in tensor order by iterating over a view of the image
+	 * whose dimensions are sorted from the fastest to the slowest varying tensor dimension.
+	 * Preprocessed images ({@link PointwiseView}s) are transformed and written in a single pass.
+	 */
+	private static <T extends RealType<T>> void copyPixels(RandomAccessibleInterval<T> image, int[] order, ByteBuffer buffer, DataType dataType) {
+		RandomAccessibleInterval<T> view = PointwiseView.applyView(image, source -> inTensorOrder(source, order));
+		if (dataType == DataType.FLOAT && view instanceof PointwiseView) {
+			((PointwiseView<?>) view).writeTo(buffer.asFloatBuffer());
+			return;
+		}
+		Cursor<T> cursor = Views.flatIterable(view).cursor();
+		switch (dataType) {
+			case FLOAT:
+				FloatBuffer floats = buffer.asFloatBuffer();
+				while (cursor.hasNext()) floats.put(cursor.next().getRealFloat());
+				break;
+			case DOUBLE:
+				DoubleBuffer doubles = buffer.asDoubleBuffer();
+				while (cursor.hasNext()) doubles.put(cursor.next().getRealDouble());
+				break;
+			case INT32:
+				IntBuffer ints = buffer.asIntBuffer();
+				while (cursor.hasNext()) ints.put(((IntType) cursor.next()).get());
+				break;
+			case INT64:
+				LongBuffer longs = buffer.asLongBuffer();
+				while (cursor.hasNext()) longs.put(((LongType) cursor.next()).get());
+				break;
+			default:
+				throw new IllegalArgumentException("Unsupported data type: " + dataType);
+		}
+	}
+
+	private static <T> RandomAccessibleInterval<T> inTensorOrder(RandomAccessibleInterval<T> image, int[] order) {
+		RandomAccessibleInterval<T> view = image;
+		int[] current = new int[order.length];
+		for (int d = 0; d < current.length; d++) current[d] = d;
+		for (int d = 0; d < order.length; d++) {
+			int from = d;
+			while (current[from] != order[d]) from++;
+			if (from == d) continue;
+			view = Views.permute(view, from, d);
+			current[from] = current[d];
+			current[d] = order[d];
+		}
+		return view;
+	}
+
+	/**
+	 * @return for each tensor dimension, starting with the fastest varying one, the image dimension mapped to it,
+	 * or null if the mapping is not a permutation
+	 */
+	private static int[] tensorOrder(int[] mapping) {
+		int n = mapping.length;
+		int[] order = new int[n];
+		Arrays.fill(order, -1);
+		for (int d = 0; d < n; d++) {
+			int tensorDim = mapping[d];
+			if (tensorDim < 0 || tensorDim >= n || order[n - 1 - tensorDim] >= 0) return null;
+			order[n - 1 - tensorDim] = d;
+		}
+		return order;
+	}
+
+	private static DataType nativeDataType(Object type) {
+		if (type.getClass().equals(FloatType.class)) return DataType.FLOAT;
+		if (type.getClass().equals(DoubleType.class)) return DataType.DOUBLE;
+		if (type.getClass().equals(IntType.class)) return DataType.INT32;
+		if (type.getClass().equals(LongType.class)) return DataType.INT64;
+		return null;
+	}
+
+	private static Class<?> tensorClass(DataType dataType) {
+		switch (dataType) {
+			case DOUBLE:
+				return Double.class;
+			case INT32:
+				return Integer.class;
+			case INT64:
+				return Long.class;
+			default:
+				return Float.class;
+		}
+	}
+
+	/**
+	 * Creates a tensor by bulk copying the primitive arrays backing an {@link ArrayImg} or {@link PlanarImg},
+	 * in case the pixel order of the image already matches the memory layout of the tensor.
+	 *
+	 * @return the tensor or null if the image does not qualify
+	 */
+	static Tensor tensorFromNativeStorage(RandomAccessibleInterval<?> image, final int[] mapping) {
+		long[] shape = tensorShape(Intervals.dimensionsAsLongArray(image), mapping);
+		if (shape == null) return null;
+		List<Object> arrays = storageArrays(image);
+		if (arrays == null) return null;
+		long size = Intervals.numElements(image);
+		if (size > Integer.MAX_VALUE) return null;
+		Object type = Util.getTypeFromInterval(image);
+		Class<?> arrayClass = arrays.get(0).getClass();
+		if (type.getClass().equals(FloatType.class) && arrayClass.equals(float[].class)) {
+			if (arrays.size() == 1) return Tensor.create(shape, FloatBuffer.wrap((float[]) arrays.get(0), 0, (int) size));
+			FloatBuffer buffer = FloatBuffer.allocate((int) size);
+			arrays.forEach(array -> buffer.put((float[]) array));
+			buffer.flip();
+			return Tensor.create(shape, buffer);
+		}
+		if (type.getClass().equals(DoubleType.class) && arrayClass.equals(double[].class)) {
+			if (arrays.size() == 1) return Tensor.create(shape, DoubleBuffer.wrap((double[]) arrays.get(0), 0, (int) size));
+			DoubleBuffer buffer = DoubleBuffer.allocate((int) size);
+			arrays.forEach(array -> buffer.put((double[]) array));
+			buffer.flip();
+			return Tensor.create(shape, buffer);
+		}
+		if (type.getClass().equals(IntType.class) && arrayClass.equals(int[].class)) {
+			if (arrays.size() == 1) return Tensor.create(shape, IntBuffer.wrap((int[]) arrays.get(0), 0, (int) size));
+			IntBuffer buffer = IntBuffer.allocate((int) size);
+			arrays.forEach(array -> buffer.put((int[]) array));
+			buffer.flip();
+			return Tensor.create(shape, buffer);
+		}
+		if (type.getClass().equals(LongType.class) && arrayClass.equals(long[].class)) {
+			if (arrays.size() == 1) return Tensor.create(shape, LongBuffer.wrap((long[]) arrays.get(0), 0, (int) size));
+			LongBuffer buffer = LongBuffer.allocate((int) size);
+			arrays.forEach(array -> buffer.put((long[]) array));
+			buffer.flip();
+			return Tensor.create(shape, buffer);
+		}
+		return null;
+	}
+
+	/**
+	 * The mapping assigns each image dimension to a tensor dimension. Tensors are stored row-major,
+	 * images column-major, so the memory layouts match if all non-singleton image dimensions are
+	 * mapped to tensor dimensions in reverse order.
+	 *
+	 * @return the shape of the tensor or null if the memory layout of the image does not match the tensor
+	 */
+	private static long[] tensorShape(long[] imageDims, int[] mapping) {
+		int n = imageDims.length;
+		if (mapping.length != n) return null;
+		long[] shape = new long[n];
+		boolean[] assigned = new boolean[n];
+		int lastTensorDim = n;
+		for (int d = 0; d < n; d++) {
+			int tensorDim = mapping[d];
+			if (tensorDim < 0 || tensorDim >= n || assigned[tensorDim]) return null;
+			assigned[tensorDim] = true;
+			shape[tensorDim] = imageDims[d];
+			if (imageDims[d] == 1) continue;
+			if (tensorDim >= lastTensorDim) return null;
+			lastTensorDim = tensorDim;
+		}
+		return shape;
+	}
+
+	private static List<Object> storageArrays(RandomAccessibleInterval<?> image) {
+		List<Object> res = new ArrayList<>();
+		if (image instanceof ArrayImg) {
+			Object access = ((ArrayImg<?, ?>) image).update(null);
+			if (!(access instanceof ArrayDataAccess)) return null;
+			res.add(((ArrayDataAccess<?>) access).getCurrentStorageArray());
+			return res;
+		}
+		if (image instanceof PlanarImg) {
+			PlanarImg<?, ?> planarImg = (PlanarImg<?, ?>) image;
+			for (int i = 0; i < planarImg.numSlices(); i++) {
+				Object access = planarImg.getPlane(i);
+				if (!(access instanceof ArrayDataAccess)) return null;
+				res.add(((ArrayDataAccess<?>) access).getCurrentStorageArray());
+			}
+			return res;
+		}
+		return null;
+	}
 }
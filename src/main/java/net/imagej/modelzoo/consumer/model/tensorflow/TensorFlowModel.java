@@ -36,13 +36,19 @@ import io.bioimage.specification.OutputNodeSpecification;
 import io.bioimage.specification.weights.TensorFlowSavedModelBundleSpecification;
 import io.scif.MissingLibraryException;
 import net.imagej.DatasetService;
+import net.imagej.axis.AxisType;
+import net.imagej.modelzoo.ModelZooService;
 import net.imagej.modelzoo.consumer.DefaultSpecificationLoader;
 import net.imagej.modelzoo.consumer.model.DefaultModelZooModel;
 import net.imagej.modelzoo.consumer.model.ModelZooModel;
+import net.imagej.modelzoo.consumer.model.SessionConfiguration;
 import net.imagej.modelzoo.consumer.model.node.DefaultImageDataReference;
+import net.imagej.modelzoo.consumer.model.node.ImageDataReference;
 import net.imagej.modelzoo.consumer.model.node.InputImageNode;
 import net.imagej.modelzoo.consumer.model.node.ModelZooNode;
+import net.imagej.modelzoo.consumer.model.node.ModelZooAxis;
 import net.imagej.modelzoo.consumer.model.node.OutputImageNode;
+import net.imagej.modelzoo.metrics.ModelZooMetrics;
 import net.imagej.tensorflow.CachedModelBundle;
 import net.imagej.tensorflow.TensorFlowService;
 import net.imagej.tensorflow.ui.TensorFlowLibraryManagementCommand;
@@ -57,16 +63,28 @@ import org.scijava.log.LogService;
 import org.scijava.plugin.Attr;
 import org.scijava.plugin.Parameter;
 import org.scijava.plugin.Plugin;
+import org.tensorflow.Session;
 import org.tensorflow.Tensor;
+import org.tensorflow.framework.DataType;
 import org.tensorflow.framework.MetaGraphDef;
 import org.tensorflow.framework.SignatureDef;
+import org.tensorflow.framework.TensorInfo;
+import org.tensorflow.types.UInt8;
 
 import javax.swing.JOptionPane;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
 import java.util.stream.Collectors;
 
 @Plugin(type= ModelZooModel.class, attrs = { @Attr(name = "supports",
@@ -87,8 +105,20 @@ public class TensorFlowModel extends DefaultModelZooModel {
 	@Parameter
 	private Context context;
 
+	@Parameter(required = false)
+	private ModelZooService modelZooService;
+
 	private CachedModelBundle model;
+	// sessions configured via setParallelism, null = the session of the model is used
+	private TensorFlowSessionPool sessionPool;
+
+	private final TensorBufferPool bufferPool = new TensorBufferPool();
+	// session settings provided by the model archive
+	private SessionConfiguration defaultSessionConfiguration = new SessionConfiguration();
+	// tile shape the current sessions were warmed up with, null = not warmed up
+	private Map<AxisType, Long> warmUpTileShape;
 	private SignatureDef sig;
+	private ModelSpecification specification;
 	private boolean tensorFlowLoaded = false;
 	// Same as
 	// tf.saved_model.signature_constants.DEFAULT_SERVING_SIGNATURE_DEF_KEY
@@ -154,8 +184,19 @@ public class TensorFlowModel extends DefaultModelZooModel {
 		loadSignature();
 		inputNodes.clear();
 		if(!verifyOrFixSpecification(specification)) return;
+		this.specification = specification;
 		DefaultSpecificationLoader loader = new DefaultSpecificationLoader(context, specification, this);
 		loader.process();
+		defaultSessionConfiguration = SessionConfiguration.fromSpecification(specification);
+		setParallelism(1, new SessionConfiguration());
+	}
+
+	@Override
+	public boolean reset() {
+		if(model == null || specification == null) return false;
+		// the session and signature stay loaded, only the nodes are rebuilt
+		new DefaultSpecificationLoader(context, specification, this).process();
+		return true;
 	}
 
 	private void loadSignature() throws InvalidProtocolBufferException {
@@ -167,8 +208,11 @@ public class TensorFlowModel extends DefaultModelZooModel {
 
 	private void loadModelFile(Location source, String modelName) throws IOException {
 		if (model != null) {
+			closeSessionPool();
+			bufferPool.clear();
 			model.close();
 		}
+		warmUpTileShape = null;
 		model = tensorFlowService.loadCachedModel(source, modelName, MODEL_TAG);
 	}
 
@@ -204,27 +248,184 @@ public class TensorFlowModel extends DefaultModelZooModel {
 
 	@Override
 	public void predict() throws IllegalArgumentException, OutOfMemoryError {
-		List<Tensor<?>> inputTensors = getInputTensors();
-		List<String> outputNames = getOutputNames();
-		List<Tensor<?>> outputTensors = TensorFlowRunner.executeGraph(
-				model.model(),
-				inputTensors,
-				getInputNames(),
-				outputNames);
-
-		setOutputTensors(outputTensors);
-		inputTensors.forEach(Tensor::close);
-		outputTensors.forEach(Tensor::close);
+		List<ImageDataReference<?>> inputs = new ArrayList<>();
+		for (ModelZooNode<?> node : getInputNodes()) {
+			//TODO currently, we assume all inputs are images
+			inputs.add(((InputImageNode) node).getData());
+		}
+		List<Tensor<?>> inputTensors = getInputTensors(inputs);
+		try {
+			List<Tensor<?>> outputTensors = run(inputTensors);
+			try {
+				setOutputTensors(outputTensors);
+			} finally {
+				outputTensors.stream().filter(Objects::nonNull).forEach(Tensor::close);
+			}
+		} finally {
+			inputTensors.stream().filter(Objects::nonNull).forEach(Tensor::close);
+		}
 	}
 
-	private List<Tensor<?>> getInputTensors() {
-		List<Tensor<?>> res = new ArrayList<>();
+	@Override
+	public boolean supportsConcurrentPrediction() {
+		return model != null;
+	}
+
+	@Override
+	public List<ImageDataReference<?>> predict(List<ImageDataReference<?>> inputs) throws IllegalArgumentException, OutOfMemoryError {
+		List<Tensor<?>> inputTensors = getInputTensors(inputs);
+		try {
+			List<Tensor<?>> outputTensors = run(inputTensors);
+			try {
+				List<ImageDataReference<?>> outputs = new ArrayList<>();
+				for (int i = 0; i < outputTensors.size(); i++) {
+					OutputImageNode node = (OutputImageNode) getOutputNodes().get(i);
+					RandomAccessibleInterval output = TensorFlowConverter.tensorToImage(outputTensors.get(i), node.getMappingIndices());
+					if (output == null) {
+						throw new IllegalStateException("Cannot convert tensor of output " + node.getName());
+					}
+					outputs.add(new DefaultImageDataReference(output, node.getData().getDataType()));
+				}
+				return outputs;
+			} finally {
+				outputTensors.stream().filter(Objects::nonNull).forEach(Tensor::close);
+			}
+		} finally {
+			inputTensors.stream().filter(Objects::nonNull).forEach(Tensor::close);
+		}
+	}
+
+	/**
+	 * @param sessions number of sessions concurrent predictions are distributed to, each with its own thread pools
+	 *                 (1 = all predictions share one session)
+	 * @param configuration session settings, the session loaded with the model is used if neither the configuration
+	 *                      nor the model archive set any value. Otherwise, each session of the pool holds another copy
+	 *                      of the model variables, see {@link TensorFlowSessionPool}.
+	 */
+	@Override
+	public void setParallelism(int sessions, SessionConfiguration configuration) {
+		configuration = configuration.withDefaults(defaultSessionConfiguration);
+		if(sessionPool != null && sessionPool.matches(sessions, configuration)) return;
+		closeSessionPool();
+		if(model == null || (sessions <= 1 && configuration.isEmpty())) return;
+		try {
+			sessionPool = new TensorFlowSessionPool(model.model(), sessions, configuration);
+			log.info("Created " + Math.max(1, sessions) + " TensorFlow session(s) with configuration " + configuration);
+		} catch (IOException | RuntimeException e) {
+			log.warn("Could not create TensorFlow sessions, using the session of the model instead: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Runs zero tensors through each session, so that kernels are selected and memory is allocated before the first tile.
+	 * The time is recorded as {@link ModelZooMetrics#WARM_UP} instead of {@link ModelZooMetrics#EXECUTE_GRAPH}.
+	 */
+	@Override
+	public void warmUp(Map<AxisType, Long> tileShape) {
+		if(model == null || Objects.equals(warmUpTileShape, tileShape)) return;
+		ModelZooMetrics metrics = modelZooService != null ? modelZooService.metrics() : ModelZooMetrics.disabled();
+		List<Session> sessions = sessionPool == null ? Collections.singletonList(model.model().session()) : sessionPool.getSessions();
+		try (ModelZooMetrics.Timer ignored = metrics.start(ModelZooMetrics.WARM_UP)) {
+			for (Session session : sessions) {
+				List<Tensor<?>> inputs = createWarmUpTensors(tileShape);
+				try {
+					TensorFlowRunner.executeGraph(session, inputs, getInputNames(), getOutputNames(), ModelZooMetrics.disabled()).forEach(Tensor::close);
+				} finally {
+					inputs.forEach(Tensor::close);
+				}
+			}
+		}
+		warmUpTileShape = new HashMap<>(tileShape);
+		log.info("Warmed up " + sessions.size() + " TensorFlow session(s) with tile shape " + tileShape);
+	}
+
+	private List<Tensor<?>> createWarmUpTensors(Map<AxisType, Long> tileShape) {
+		List<Tensor<?>> tensors = new ArrayList<>();
 		for (ModelZooNode<?> _node : getInputNodes()) {
-			//TODO currently, we assume all inputs are images
 			InputImageNode node = (InputImageNode) _node;
-			final Tensor<?> tensor = TensorFlowConverter.imageToTensor(node.getData().getData(), node.getMappingIndices());
+			List<ModelZooAxis> axes = node.getAxes();
+			long[] shape = new long[axes.size()];
+			for (int i = 0; i < shape.length; i++) {
+				ModelZooAxis axis = axes.get(i);
+				shape[i] = axis.getValidSize(tileShape.getOrDefault(axis.getType(), 1L));
+			}
+			tensors.add(createZeroTensor(getInputDataType(node.getName()), shape));
+		}
+		return tensors;
+	}
+
+	private DataType getInputDataType(String name) {
+		TensorInfo info = sig.getInputsMap().get(name);
+		if(info == null) {
+			String tensorName = tensorInRenamings.get(name);
+			info = sig.getInputsMap().values().stream().filter(tensorInfo -> tensorInfo.getName().equals(tensorName)).findFirst().orElse(null);
+		}
+		return info == null ? DataType.DT_FLOAT : info.getDtype();
+	}
+
+	private static Tensor<?> createZeroTensor(DataType dataType, long[] shape) {
+		int size = 1;
+		for (long dim : shape) {
+			size *= dim;
+		}
+		switch (dataType) {
+			case DT_DOUBLE:
+				return Tensor.create(shape, DoubleBuffer.allocate(size));
+			case DT_INT32:
+				return Tensor.create(shape, IntBuffer.allocate(size));
+			case DT_INT64:
+				return Tensor.create(shape, LongBuffer.allocate(size));
+			case DT_UINT8:
+				return Tensor.create(UInt8.class, shape, ByteBuffer.allocate(size));
+			default:
+				return Tensor.create(shape, FloatBuffer.allocate(size));
+		}
+	}
+
+	private void closeSessionPool() {
+		if(sessionPool == null) return;
+		warmUpTileShape = null;
+		sessionPool.close();
+		sessionPool = null;
+	}
+
+	private List<Tensor<?>> run(List<Tensor<?>> inputTensors) {
+		ModelZooMetrics metrics = modelZooService != null ? modelZooService.metrics() : ModelZooMetrics.disabled();
+		inputTensors.stream().filter(Objects::nonNull).forEach(tensor -> metrics.count(ModelZooMetrics.BYTES_TO_TENSOR, tensor.numBytes()));
+		TensorFlowSessionPool pool = sessionPool;
+		Session session = pool == null ? model.model().session() : acquireSession(pool);
+		List<Tensor<?>> outputTensors;
+		try {
+			outputTensors = TensorFlowRunner.executeGraph(
+					session,
+					inputTensors,
+					getInputNames(),
+					getOutputNames(),
+					metrics);
+		} finally {
+			if(pool != null) pool.release(session);
+		}
+		outputTensors.forEach(tensor -> metrics.count(ModelZooMetrics.BYTES_FROM_TENSOR, tensor.numBytes()));
+		return outputTensors;
+	}
+
+	private static Session acquireSession(TensorFlowSessionPool pool) {
+		try {
+			return pool.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CancellationException("Interrupted while waiting for a TensorFlow session");
+		}
+	}
+
+	private List<Tensor<?>> getInputTensors(List<ImageDataReference<?>> inputs) {
+		ModelZooMetrics metrics = modelZooService != null ? modelZooService.metrics() : ModelZooMetrics.disabled();
+		List<Tensor<?>> res = new ArrayList<>();
+		for (int i = 0; i < inputs.size(); i++) {
+			InputImageNode node = (InputImageNode) getInputNodes().get(i);
+			final Tensor<?> tensor = TensorFlowConverter.imageToTensor(inputs.get(i).getData(), node.getMappingIndices(), bufferPool, metrics);
 			if (tensor == null) {
-				log.error("Cannot convert to tensor: " + node.getData());
+				log.error("Cannot convert to tensor: " + inputs.get(i));
 			}
 			res.add(tensor);
 		}
@@ -272,8 +473,12 @@ public class TensorFlowModel extends DefaultModelZooModel {
 	@Override
 	public void dispose() {
 		super.dispose();
+		closeSessionPool();
+		bufferPool.clear();
+		defaultSessionConfiguration = new SessionConfiguration();
 		tensorFlowLoaded = false;
 		sig = null;
+		specification = null;
 		model = null;
 	}
 }
@@ -29,6 +29,7 @@
 
 package net.imagej.modelzoo.consumer.model.tensorflow;
 
+import net.imagej.modelzoo.metrics.ModelZooMetrics;
 import org.tensorflow.SavedModelBundle;
 import org.tensorflow.Session;
 import org.tensorflow.Tensor;
@@ -44,18 +45,40 @@ class TensorFlowRunner {
 	static List<Tensor<?>> executeGraph(final SavedModelBundle model,
 	                                    final List<Tensor<?>> inputs, final List<String> inputNames,
 	                                    final List<String> outputNames) throws IllegalArgumentException {
+		return executeGraph(model, inputs, inputNames, outputNames, ModelZooMetrics.disabled());
+	}
+
+	/*
+	 * runs graph on multiple input / output tensors, recording the session run time
+	 *
+	 */
+	static List<Tensor<?>> executeGraph(final SavedModelBundle model,
+	                                    final List<Tensor<?>> inputs, final List<String> inputNames,
+	                                    final List<String> outputNames, final ModelZooMetrics metrics) throws IllegalArgumentException {
+		return executeGraph(model.session(), inputs, inputNames, outputNames, metrics);
+	}
+
+	/*
+	 * runs graph on multiple input / output tensors using the given session of the model
+	 *
+	 */
+	static List<Tensor<?>> executeGraph(final Session session,
+	                                    final List<Tensor<?>> inputs, final List<String> inputNames,
+	                                    final List<String> outputNames, final ModelZooMetrics metrics) throws IllegalArgumentException {
 
 //		System.out.println("input operation: " + opName(inputTensorInfo));
 //		System.out.println("output operation: " + opName(outputTensorInfo));
 
-		Session.Runner runner = model.session().runner();
+		Session.Runner runner = session.runner();
 		for (int i = 0; i < inputs.size(); i++) {
 			runner.feed(inputNames.get(i), inputs.get(i));
 		}
 		for (String outputName : outputNames) {
 			runner.fetch(outputName);
 		}
-		return runner.run();
+		try (ModelZooMetrics.Timer ignored = metrics.start(ModelZooMetrics.EXECUTE_GRAPH)) {
+			return runner.run();
+		}
 	}
 
 }
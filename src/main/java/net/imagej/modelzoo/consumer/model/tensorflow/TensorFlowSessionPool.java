@@ -0,0 +1,175 @@
+/*-
+ * #%L
+ * This is the bioimage.io modelzoo library for ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2020 Center for Systems Biology Dresden
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imagej.modelzoo.consumer.model.tensorflow;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import net.imagej.modelzoo.consumer.model.SessionConfiguration;
+import org.tensorflow.SavedModelBundle;
+import org.tensorflow.Session;
+import org.tensorflow.Tensor;
+import org.tensorflow.Tensors;
+import org.tensorflow.framework.ConfigProto;
+import org.tensorflow.framework.GraphOptions;
+import org.tensorflow.framework.MetaGraphDef;
+import org.tensorflow.framework.OptimizerOptions;
+import org.tensorflow.framework.RewriterConfig;
+import org.tensorflow.util.SaverDef;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Sessions running the graph of a loaded model. The sessions share the graph, the variables of the model are
+ * copied into each session by saving them from the session of the model and restoring them in the new session.
+ * If the pool is shared, all threads use the same session at once, otherwise each thread borrows a session exclusively.
+ * <p>
+ * Each session holds its own copy of the variables and the session of the model stays open next to them, so a pool
+ * of N sessions keeps N + 1 copies of the weights in memory. Creating a pool writes the weights to a temporary
+ * checkpoint, which is deleted once all sessions restored it.
+ * </p>
+ */
+class TensorFlowSessionPool implements AutoCloseable {
+
+	private final List<Session> sessions = new ArrayList<>();
+	private final BlockingQueue<Session> idle;
+	private final boolean shared;
+	private final SessionConfiguration configuration;
+
+	/**
+	 * @param size number of sessions, a single session is shared by all threads
+	 * @param configuration settings applied to each session
+	 */
+	TensorFlowSessionPool(SavedModelBundle model, int size, SessionConfiguration configuration) throws IOException {
+		this.shared = size <= 1;
+		this.configuration = configuration;
+		idle = new ArrayBlockingQueue<>(Math.max(1, size));
+		ConfigProto config = createConfigProto(configuration);
+		SaverDef saver = getSaver(model);
+		Path checkpointDir = Files.createTempDirectory("modelzoo-sessions");
+		try (Tensor<String> checkpoint = Tensors.create(checkpointDir.resolve("variables").toString())) {
+			if(saver != null) {
+				model.session().runner()
+						.feed(saver.getFilenameTensorName(), checkpoint)
+						.fetch(saver.getSaveTensorName())
+						.run().forEach(Tensor::close);
+			}
+			for (int i = 0; i < Math.max(1, size); i++) {
+				Session session = new Session(model.graph(), config.toByteArray());
+				sessions.add(session);
+				if(saver != null) {
+					session.runner()
+							.feed(saver.getFilenameTensorName(), checkpoint)
+							.addTarget(saver.getRestoreOpName())
+							.run();
+				}
+				idle.add(session);
+			}
+		} catch (RuntimeException e) {
+			close();
+			throw e;
+		} finally {
+			deleteDirectory(checkpointDir.toFile());
+		}
+	}
+
+	private static SaverDef getSaver(SavedModelBundle model) throws InvalidProtocolBufferException {
+		MetaGraphDef metaGraph = MetaGraphDef.parseFrom(model.metaGraphDef());
+		return metaGraph.hasSaverDef() ? metaGraph.getSaverDef() : null;
+	}
+
+	/**
+	 * @return the session options matching the given configuration, unset values keep the TensorFlow defaults
+	 */
+	static ConfigProto createConfigProto(SessionConfiguration configuration) {
+		ConfigProto.Builder config = ConfigProto.newBuilder();
+		if(configuration.getIntraOpThreads() != null) config.setIntraOpParallelismThreads(configuration.getIntraOpThreads());
+		if(configuration.getInterOpThreads() != null) config.setInterOpParallelismThreads(configuration.getInterOpThreads());
+		if(configuration.getUsePerSessionThreads() != null) config.setUsePerSessionThreads(configuration.getUsePerSessionThreads());
+		GraphOptions.Builder graphOptions = GraphOptions.newBuilder();
+		if(configuration.getConstantFolding() != null) {
+			graphOptions.setRewriteOptions(RewriterConfig.newBuilder().setConstantFolding(
+					configuration.getConstantFolding() ? RewriterConfig.Toggle.ON : RewriterConfig.Toggle.OFF));
+		}
+		if(configuration.getXlaJit() != null) {
+			graphOptions.setOptimizerOptions(OptimizerOptions.newBuilder().setGlobalJitLevel(
+					configuration.getXlaJit() ? OptimizerOptions.GlobalJitLevel.ON_1 : OptimizerOptions.GlobalJitLevel.OFF));
+		}
+		config.setGraphOptions(graphOptions);
+		return config.build();
+	}
+
+	boolean matches(int size, SessionConfiguration configuration) {
+		return Math.max(1, size) == sessions.size() && this.configuration.equals(configuration);
+	}
+
+	/**
+	 * @return a session, waits for a session to be released if none is idle and the pool is not shared
+	 */
+	Session acquire() throws InterruptedException {
+		if(shared) return sessions.get(0);
+		return idle.take();
+	}
+
+	void release(Session session) {
+		if(!shared) idle.add(session);
+	}
+
+	/**
+	 * @return all sessions of the pool, including the ones which are currently borrowed
+	 */
+	List<Session> getSessions() {
+		return Collections.unmodifiableList(sessions);
+	}
+
+	@Override
+	public void close() {
+		sessions.forEach(Session::close);
+		sessions.clear();
+		idle.clear();
+	}
+
+	private static void deleteDirectory(File dir) {
+		File[] files = dir.listFiles();
+		if(files != null) {
+			for (File file : files) {
+				if(file.isDirectory()) deleteDirectory(file);
+				else file.delete();
+			}
+		}
+		dir.delete();
+	}
+}
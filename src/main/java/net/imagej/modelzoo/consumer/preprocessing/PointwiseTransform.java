@@ -0,0 +1,127 @@
+/*-
+ * #%L
+ * This is the bioimage.io modelzoo library for ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2020 Center for Systems Biology Dresden
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imagej.modelzoo.consumer.preprocessing;
+
+import java.util.Objects;
+
+/**
+ * Transformation {@code clamp(x * scale + offset, lower, upper)} applied to each pixel independently.
+ * A chain of such transformations is combined into a single one via {@link #andThen(PointwiseTransform)}.
+ */
+public final class PointwiseTransform {
+
+	public static final PointwiseTransform IDENTITY = new PointwiseTransform(1, 0, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+
+	private final double scale;
+	private final double offset;
+	private final double lower;
+	private final double upper;
+
+	private PointwiseTransform(double scale, double offset, double lower, double upper) {
+		this.scale = scale;
+		this.offset = offset;
+		this.lower = lower;
+		this.upper = upper;
+	}
+
+	public static PointwiseTransform affine(double scale, double offset) {
+		return new PointwiseTransform(scale, offset, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+	}
+
+	public static PointwiseTransform clamp(double lower, double upper) {
+		return new PointwiseTransform(1, 0, lower, upper);
+	}
+
+	/**
+	 * @return the transformation equivalent to applying this transformation and then the given one (for finite values and NaN)
+	 */
+	public PointwiseTransform andThen(PointwiseTransform next) {
+		if(next.scale == 0) {
+			double value = next.apply(0);
+			return new PointwiseTransform(0, value, value, value);
+		}
+		double newScale = scale * next.scale;
+		double newOffset = offset * next.scale + next.offset;
+		// moving the clamping of this transformation behind the affine part of the next one
+		double newLower = lower * next.scale + next.offset;
+		double newUpper = upper * next.scale + next.offset;
+		if(next.scale < 0) {
+			double swap = newLower;
+			newLower = newUpper;
+			newUpper = swap;
+		}
+		return new PointwiseTransform(newScale, newOffset,
+				next.apply(newLower, 1, 0), next.apply(newUpper, 1, 0));
+	}
+
+	public double apply(double value) {
+		return apply(value, scale, offset);
+	}
+
+	private double apply(double value, double scale, double offset) {
+		return Math.max(lower, Math.min(value * scale + offset, upper));
+	}
+
+	public double getScale() {
+		return scale;
+	}
+
+	public double getOffset() {
+		return offset;
+	}
+
+	public double getLower() {
+		return lower;
+	}
+
+	public double getUpper() {
+		return upper;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (o == null || getClass() != o.getClass()) return false;
+		PointwiseTransform that = (PointwiseTransform) o;
+		return Double.compare(that.scale, scale) == 0 &&
+				Double.compare(that.offset, offset) == 0 &&
+				Double.compare(that.lower, lower) == 0 &&
+				Double.compare(that.upper, upper) == 0;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(scale, offset, lower, upper);
+	}
+
+	@Override
+	public String toString() {
+		return "clamp(x * " + scale + " + " + offset + ", " + lower + ", " + upper + ")";
+	}
+}
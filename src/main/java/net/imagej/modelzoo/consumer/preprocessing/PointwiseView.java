@@ -0,0 +1,184 @@
+/*-
+ * #%L
+ * This is the bioimage.io modelzoo library for ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2020 Center for Systems Biology Dresden
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imagej.modelzoo.consumer.preprocessing;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.converter.Converter;
+import net.imglib2.converter.read.ConvertedRandomAccessibleInterval;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.ByteType;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.integer.ShortType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Intervals;
+import net.imglib2.util.Util;
+import net.imglib2.view.Views;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+/**
+ * Lazily transforms each pixel of the source with a {@link PointwiseTransform}.
+ * Creating a view on top of another one fuses both transformations, so that each pixel
+ * is read from the original source once instead of walking through a chain of converters.
+ */
+public class PointwiseView<I extends RealType<I>> extends ConvertedRandomAccessibleInterval<I, FloatType> {
+
+	private final PointwiseTransform transform;
+
+	private PointwiseView(RandomAccessibleInterval<I> source, PointwiseTransform transform) {
+		super(source, (Converter<I, FloatType>) (input, output) -> output.setReal(transform.apply(input.getRealDouble())), new FloatType());
+		this.transform = transform;
+	}
+
+	/**
+	 * @return a view of the image transformed by the given transformation,
+	 * fused with the transformation of the image in case it is a {@link PointwiseView} itself
+	 */
+	public static <I extends RealType<I>> PointwiseView<?> create(RandomAccessibleInterval<I> image, PointwiseTransform transform) {
+		if(image instanceof PointwiseView) {
+			PointwiseView<?> view = (PointwiseView<?>) image;
+			return of(view.getSource(), view.transform.andThen(transform));
+		}
+		return new PointwiseView<>(image, transform);
+	}
+
+	/**
+	 * Applies a view which only rearranges pixels (e.g. cropping or mirroring at the border) to the image.
+	 * In case the image is a {@link PointwiseView}, the view is applied to its source instead
+	 * so that the transformation stays on top and can be fused with subsequent ones.
+	 */
+	public static <T> RandomAccessibleInterval<T> applyView(RandomAccessibleInterval<T> image, UnaryOperator<RandomAccessibleInterval<?>> view) {
+		if(image instanceof PointwiseView) {
+			PointwiseView<?> pointwise = (PointwiseView<?>) image;
+			return (RandomAccessibleInterval<T>) of(view.apply(pointwise.getSource()), pointwise.transform);
+		}
+		return (RandomAccessibleInterval<T>) view.apply(image);
+	}
+
+	private static <S extends RealType<S>> PointwiseView<S> of(RandomAccessibleInterval<?> source, PointwiseTransform transform) {
+		return new PointwiseView<>((RandomAccessibleInterval<S>) source, transform);
+	}
+
+	public PointwiseTransform getTransform() {
+		return transform;
+	}
+
+	/**
+	 * Writes all transformed pixels into the buffer in flat iteration order. Sources backed by primitive arrays
+	 * are transformed with a loop specialized for the type of the array, other sources are read with a cursor.
+	 */
+	public void writeTo(FloatBuffer target) {
+		RandomAccessibleInterval<I> source = getSource();
+		if(writeStorageArrays(source, target)) return;
+		Cursor<I> cursor = Views.flatIterable(source).cursor();
+		while(cursor.hasNext()) {
+			target.put((float) transform.apply(cursor.next().getRealDouble()));
+		}
+	}
+
+	private boolean writeStorageArrays(RandomAccessibleInterval<I> source, FloatBuffer target) {
+		List<Object> arrays = storageArrays(source);
+		if(arrays == null || arrays.isEmpty()) return false;
+		Object type = Util.getTypeFromInterval(source);
+		if(!isSupported(type, arrays.get(0))) return false;
+		int length = (int) (Intervals.numElements(source) / arrays.size());
+		for (Object array : arrays) {
+			writeArray(type, array, length, target);
+		}
+		return true;
+	}
+
+	private static boolean isSupported(Object type, Object array) {
+		Class<?> typeClass = type.getClass();
+		if(typeClass.equals(FloatType.class)) return array instanceof float[];
+		if(typeClass.equals(DoubleType.class)) return array instanceof double[];
+		if(typeClass.equals(UnsignedByteType.class) || typeClass.equals(ByteType.class)) return array instanceof byte[];
+		if(typeClass.equals(UnsignedShortType.class) || typeClass.equals(ShortType.class)) return array instanceof short[];
+		if(typeClass.equals(IntType.class)) return array instanceof int[];
+		return false;
+	}
+
+	private void writeArray(Object type, Object array, int length, FloatBuffer target) {
+		PointwiseTransform transform = this.transform;
+		if(array instanceof float[]) {
+			float[] values = (float[]) array;
+			for (int i = 0; i < length; i++) target.put((float) transform.apply(values[i]));
+		} else if(array instanceof double[]) {
+			double[] values = (double[]) array;
+			for (int i = 0; i < length; i++) target.put((float) transform.apply(values[i]));
+		} else if(array instanceof byte[]) {
+			byte[] values = (byte[]) array;
+			if(type instanceof UnsignedByteType) {
+				for (int i = 0; i < length; i++) target.put((float) transform.apply(values[i] & 0xff));
+			} else {
+				for (int i = 0; i < length; i++) target.put((float) transform.apply(values[i]));
+			}
+		} else if(array instanceof short[]) {
+			short[] values = (short[]) array;
+			if(type instanceof UnsignedShortType) {
+				for (int i = 0; i < length; i++) target.put((float) transform.apply(values[i] & 0xffff));
+			} else {
+				for (int i = 0; i < length; i++) target.put((float) transform.apply(values[i]));
+			}
+		} else if(array instanceof int[]) {
+			int[] values = (int[]) array;
+			for (int i = 0; i < length; i++) target.put((float) transform.apply(values[i]));
+		}
+	}
+
+	private static List<Object> storageArrays(RandomAccessibleInterval<?> image) {
+		List<Object> res = new ArrayList<>();
+		if (image instanceof ArrayImg) {
+			Object access = ((ArrayImg<?, ?>) image).update(null);
+			if (!(access instanceof ArrayDataAccess)) return null;
+			res.add(((ArrayDataAccess<?>) access).getCurrentStorageArray());
+			return res;
+		}
+		if (image instanceof PlanarImg) {
+			PlanarImg<?, ?> planarImg = (PlanarImg<?, ?>) image;
+			for (int i = 0; i < planarImg.numSlices(); i++) {
+				Object access = planarImg.getPlane(i);
+				if (!(access instanceof ArrayDataAccess)) return null;
+				res.add(((ArrayDataAccess<?>) access).getCurrentStorageArray());
+			}
+			return res;
+		}
+		return null;
+	}
+}
@@ -93,7 +93,9 @@ public class ResizePreprocessor implements NodeProcessor<TransformationSpecifica
 					}
 				}
 			}
-			img = expandDimToSize(img, i, newsize);
+			final int d = i;
+			final long targetSize = newsize;
+			img = PointwiseView.applyView(img, source -> expandDimToSize(source, d, targetSize));
 			axis.setActual(size);
 		}
 		node.setData(new DefaultImageDataReference<>(img, dataReference.getDataType()));
@@ -102,12 +104,12 @@ public class ResizePreprocessor implements NodeProcessor<TransformationSpecifica
 	private <T extends RealType<T> & NativeType<T>> RandomAccessibleInterval<T> addAxesIfNeeded(RandomAccessibleInterval<T> img) {
 		AxisType[] axes = node.getAxesArray();
 		while (img.numDimensions() < axes.length) {
-			img = Views.addDimension(img, 0, 0);
+			img = PointwiseView.applyView(img, source -> Views.addDimension(source, 0, 0));
 		}
 		return img;
 	}
 
-	private <T extends RealType<T> & NativeType<T>> RandomAccessibleInterval<T> expandDimToSize(
+	private static <T> RandomAccessibleInterval<T> expandDimToSize(
 			final RandomAccessibleInterval<T> im, final int d, final long size) {
 		final int n = im.numDimensions();
 		final long[] min = new long[n];
@@ -32,25 +32,35 @@ package net.imagej.modelzoo.consumer.tiling;
 import net.imagej.modelzoo.consumer.model.node.ImageDataReference;
 import net.imagej.modelzoo.consumer.model.node.InputImageNode;
 import net.imagej.modelzoo.consumer.model.node.OutputImageNode;
+import net.imagej.modelzoo.consumer.model.prediction.ChunkedImageSink;
 import net.imglib2.util.Intervals;
+import org.scijava.log.Logger;
+import org.scijava.log.StderrLogService;
 
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Function;
 
 public class DefaultTiling {
 
 	private final InputImageNode inputNode;
 	private final List<OutputImageNode> outputNodes;
-	private final int defaultHalo = 32;
+	static final int defaultHalo = 32;
 	private Path cacheDir;
 	private int tilesNum = 1;
 	private int batchSize = 10;
+	private int tilesPerBatch = 1;
 
 	private final ImageDataReference<?> originalData;
 	private TiledImageDataReference<?> tiledDataReference;
-	private int doneTileCount = 0;
+	private volatile int doneTileCount = 0;
+	private Function<OutputImageNode, ChunkedImageSink<?>> outputSinks;
+	private TilingStrategy tilingStrategy = new GreedyTilingStrategy();
+	private TileBlending blending = TileBlending.NONE;
+	private double haloScale = 1;
+	private Logger log = new StderrLogService();
 
 	public DefaultTiling(OutputImageNode tilingOutput) {
 		this(tilingOutput.getReference(), Collections.singletonList(tilingOutput));
@@ -69,8 +79,7 @@ public class DefaultTiling {
 	}
 
 	public boolean hasTilesLeft() {
-//		return arrayProduct(Intervals.dimensionsAsLongArray(tiledInputView)) > doneTileCount;
-		return tiledDataReference.getTiledOutputs().get(0).tiledOutputViewCursor.hasNext();
+		return tiledDataReference.hasInputTilesLeft();
 	}
 
 	public void resolveCurrentTile() {
@@ -78,7 +87,11 @@ public class DefaultTiling {
 		tiledDataReference.resolveCurrentTile(newData);
 	}
 
-	private List<ImageDataReference<?>> getCurrentOutputData() {
+	public void resolveTile(List<ImageDataReference<?>> outputData) {
+		tiledDataReference.resolveCurrentTile(outputData);
+	}
+
+	public List<ImageDataReference<?>> getCurrentOutputData() {
 		List<ImageDataReference<?>> newData = new ArrayList<>();
 		for (OutputImageNode outputNode : outputNodes) {
 			newData.add(outputNode.getData());
@@ -86,6 +99,13 @@ public class DefaultTiling {
 		return newData;
 	}
 
+	/**
+	 * @param log receives the messages about the tiling, instead of the standard error stream
+	 */
+	public void setLogger(Logger log) {
+		this.log = log;
+	}
+
 	public void setNumberOfTiles(int nTiles) {
 		tilesNum = nTiles;
 	}
@@ -94,12 +114,52 @@ public class DefaultTiling {
 		this.batchSize = batchSize;
 	}
 
+	/**
+	 * @param tilesPerBatch How many tiles are stacked along the batch axis of the input and predicted at once
+	 */
+	public void setTilesPerBatch(int tilesPerBatch) {
+		this.tilesPerBatch = tilesPerBatch;
+	}
+
+	/**
+	 * @param outputSinks creates the sink each output gets written to, tile by tile, instead of caching the whole output
+	 */
+	public void setOutputSinks(Function<OutputImageNode, ChunkedImageSink<?>> outputSinks) {
+		this.outputSinks = outputSinks;
+	}
+
+	/**
+	 * @param tilingStrategy decides how the input gets split into tiles
+	 */
+	public void setTilingStrategy(TilingStrategy tilingStrategy) {
+		this.tilingStrategy = tilingStrategy;
+	}
+
+	/**
+	 * @param blending how the predictions of overlapping tiles are combined
+	 */
+	public void setBlending(TileBlending blending) {
+		this.blending = blending;
+	}
+
+	/**
+	 * @param haloScale fraction of the halo of the model used to pad the tiles
+	 */
+	public void setHaloScale(double haloScale) {
+		this.haloScale = haloScale;
+	}
+
 	public void init() {
 		//TODO check if tilesNum / batchSize works?!
 		resetTileCount();
 		inputNode.setData(originalData);
 		tiledDataReference = new TiledImageDataReference<>(inputNode, outputNodes, inputNode.getData(), getCurrentOutputData(), cacheDir);
-		tiledDataReference.createTiledInputView(batchSize, defaultHalo, tilesNum);
+		tiledDataReference.setLogger(log);
+		tiledDataReference.setOutputSinks(outputSinks);
+		tiledDataReference.setBlending(blending);
+		tiledDataReference.setHaloScale(haloScale);
+		tiledDataReference.createTiledInputView(batchSize, tilingStrategy, tilesNum);
+		tiledDataReference.setTilesPerBatch(tilesPerBatch);
 		long[] tiles = Intervals.dimensionsAsLongArray(tiledDataReference.getTiledInputView());
 		tilesNum = (int) arrayProduct(tiles);
 		tiledDataReference.createTiledOutputView();
@@ -122,8 +182,43 @@ public class DefaultTiling {
 	}
 
 	public void assignNextTile() {
-		tiledDataReference.assignNextTile();
-		doneTileCount++;
+		doneTileCount += tiledDataReference.assignNextTile();
+	}
+
+	public boolean hasInputTilesLeft() {
+		return tiledDataReference.hasInputTilesLeft();
+	}
+
+	public ImageDataReference<?> prepareNextTile() {
+		return tiledDataReference.prepareNextTile();
+	}
+
+	/**
+	 * @return the tiles which are not resolved yet, they can be prepared and resolved in any order
+	 * via {@link #prepareTile(TilePlan.Entry)} and {@link #resolveTile(TilePlan.Entry, List)}
+	 */
+	public TilePlan getTilePlan() {
+		return tiledDataReference.getTilePlan();
+	}
+
+	/**
+	 * @return a copy of the input of the given tile, including its padding
+	 */
+	public ImageDataReference<?> prepareTile(TilePlan.Entry tile) {
+		return tiledDataReference.prepareTile(tile);
+	}
+
+	/**
+	 * Writes the output of the given tile, the output data has to include the padding of the tile
+	 */
+	public void resolveTile(TilePlan.Entry tile, List<ImageDataReference<?>> outputData) {
+		tiledDataReference.resolveTile(tile, outputData);
+		doneTileCount = (int) tiledDataReference.getResolvedTileCount();
+	}
+
+	public void assignTile(ImageDataReference<?> tile) {
+		inputNode.setData(tile);
+		doneTileCount += TiledImageDataReference.getTileCount(tile);
 	}
 
 	public int getTilesNum() {
@@ -134,6 +229,45 @@ public class DefaultTiling {
 		return batchSize;
 	}
 
+	public int getTilesPerBatch() {
+		return tilesPerBatch;
+	}
+
+	public TilingOverhead getTilingOverhead() {
+		return tiledDataReference.getTilingOverhead();
+	}
+
+	/**
+	 * Continues with the tiles which are not resolved yet, e.g. after the prediction of a tile failed.
+	 * The output of the resolved tiles is kept.
+	 */
+	public void resume(int tilesPerBatch) {
+		this.tilesPerBatch = tilesPerBatch;
+		tiledDataReference.setTilesPerBatch(tilesPerBatch);
+		tiledDataReference.requeueRemainingTiles();
+		doneTileCount = (int) tiledDataReference.getResolvedTileCount();
+	}
+
+	/**
+	 * Splits the tiles which are not resolved yet into smaller tiles, the output of the resolved tiles is kept.
+	 * Afterwards, {@link #getTilesNum()} and {@link #getBatchSize()} describe the finer tiling.
+	 * @return false if the tiles cannot be split any further
+	 */
+	public boolean splitRemainingTiles() {
+		if(tiledDataReference == null || !tiledDataReference.splitRemainingTiles()) return false;
+		doneTileCount = (int) tiledDataReference.getResolvedTileCount();
+		long[] tileSize = tiledDataReference.getRemainingTileSize();
+		long[] dims = Intervals.dimensionsAsLongArray(tiledDataReference.getTiledInputView().getSource());
+		long tiles = 1;
+		for (int i = 0; i < tileSize.length; i++) {
+			TilingAction tiling = inputNode.getDataAxis(i).getTiling();
+			if(tiling == TilingAction.TILE_WITH_PADDING) tiles *= (dims[i] + tileSize[i] - 1) / tileSize[i];
+			if(tiling == TilingAction.TILE_WITHOUT_PADDING) batchSize = (int) tileSize[i];
+		}
+		tilesNum = (int) tiles;
+		return true;
+	}
+
 	public void resetInputData() {
 		inputNode.setData(originalData);
 	}
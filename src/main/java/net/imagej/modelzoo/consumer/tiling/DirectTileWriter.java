@@ -0,0 +1,144 @@
+/*-
+ * #%L
+ * This is the bioimage.io modelzoo library for ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2020 Center for Systems Biology Dresden
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imagej.modelzoo.consumer.tiling;
+
+import net.imglib2.Dirty;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.cell.AbstractCellImg;
+import net.imglib2.img.cell.Cell;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Util;
+
+/**
+ * Copies a region of a float {@link ArrayImg} into a float {@link AbstractCellImg} (e.g. the disk cached output
+ * of a tiled prediction) line by line, writing into the primitive arrays of the cells directly.
+ */
+class DirectTileWriter {
+
+	/**
+	 * @param source the predicted tile
+	 * @param sourceMin the first pixel of the region to copy in the source (e.g. skipping the halo)
+	 * @param target the output image
+	 * @param targetMin the position of the region in the output image
+	 * @param size the size of the region
+	 * @return false if source or target are not backed by float arrays, nothing was copied in this case
+	 */
+	static boolean copy(RandomAccessibleInterval<?> source, long[] sourceMin, RandomAccessibleInterval<?> target, long[] targetMin, long[] size) {
+		if (!(source instanceof ArrayImg) || !(target instanceof AbstractCellImg)) return false;
+		int n = size.length;
+		if (source.numDimensions() != n || target.numDimensions() != n) return false;
+		if (!(Util.getTypeFromInterval(source) instanceof FloatType)) return false;
+		if (!(Util.getTypeFromInterval(target) instanceof FloatType)) return false;
+		float[] sourceArray = floatStorage(((ArrayImg<?, ?>) source).update(null));
+		if (sourceArray == null) return false;
+		for (int d = 0; d < n; d++) {
+			if (sourceMin[d] < 0 || sourceMin[d] + size[d] > source.dimension(d)) return false;
+			if (targetMin[d] < 0 || targetMin[d] + size[d] > target.dimension(d)) return false;
+		}
+		long[] sourceSteps = steps(source);
+
+		AbstractCellImg<?, ?, ?, ?> cellImg = (AbstractCellImg<?, ?, ?, ?>) target;
+		CellGrid grid = cellImg.getCellGrid();
+		long[] gridMin = new long[n];
+		long[] gridMax = new long[n];
+		for (int d = 0; d < n; d++) {
+			gridMin[d] = targetMin[d] / grid.cellDimension(d);
+			gridMax[d] = (targetMin[d] + size[d] - 1) / grid.cellDimension(d);
+		}
+		RandomAccess<? extends Cell<?>> cells = cellImg.getCells().randomAccess();
+		long[] gridPosition = gridMin.clone();
+		long[] lo = new long[n];
+		long[] hi = new long[n];
+		long[] position = new long[n];
+		while (true) {
+			cells.setPosition(gridPosition);
+			Cell<?> cell = cells.get();
+			Object access = cell.getData();
+			float[] cellArray = floatStorage(access);
+			if (cellArray == null) return false;
+			for (int d = 0; d < n; d++) {
+				lo[d] = Math.max(cell.min(d), targetMin[d]);
+				hi[d] = Math.min(cell.max(d), targetMin[d] + size[d] - 1);
+			}
+			// copy the intersection of cell and target region line by line
+			System.arraycopy(lo, 0, position, 0, n);
+			int length = (int) (hi[0] - lo[0] + 1);
+			while (true) {
+				long sourceIndex = 0;
+				long cellIndex = 0;
+				long cellStep = 1;
+				for (int d = 0; d < n; d++) {
+					sourceIndex += (position[d] - targetMin[d] + sourceMin[d]) * sourceSteps[d];
+					cellIndex += (position[d] - cell.min(d)) * cellStep;
+					cellStep *= cell.dimension(d);
+				}
+				System.arraycopy(sourceArray, (int) sourceIndex, cellArray, (int) cellIndex, length);
+				if (!increment(position, lo, hi, 1)) break;
+			}
+			if (access instanceof Dirty) ((Dirty) access).setDirty();
+			if (!increment(gridPosition, gridMin, gridMax, 0)) break;
+		}
+		return true;
+	}
+
+	private static float[] floatStorage(Object access) {
+		if (!(access instanceof ArrayDataAccess)) return null;
+		Object storage = ((ArrayDataAccess<?>) access).getCurrentStorageArray();
+		return storage instanceof float[] ? (float[]) storage : null;
+	}
+
+	private static long[] steps(RandomAccessibleInterval<?> img) {
+		long[] steps = new long[img.numDimensions()];
+		long step = 1;
+		for (int d = 0; d < steps.length; d++) {
+			steps[d] = step;
+			step *= img.dimension(d);
+		}
+		return steps;
+	}
+
+	/**
+	 * Moves the position to the next one within [min, max], starting with dimension {@code from}.
+	 * @return false if the position was the last one
+	 */
+	private static boolean increment(long[] position, long[] min, long[] max, int from) {
+		for (int d = from; d < position.length; d++) {
+			if (position[d] < max[d]) {
+				position[d]++;
+				return true;
+			}
+			position[d] = min[d];
+		}
+		return false;
+	}
+}
@@ -0,0 +1,80 @@
+/*-
+ * #%L
+ * This is the bioimage.io modelzoo library for ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2020 Center for Systems Biology Dresden
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imagej.modelzoo.consumer.tiling;
+
+import net.imagej.modelzoo.consumer.ModelZooPredictionOptions;
+import net.imagej.modelzoo.consumer.model.node.InputImageNode;
+import net.imagej.modelzoo.consumer.model.node.ModelZooAxis;
+import net.imagej.modelzoo.consumer.model.node.OutputImageNode;
+import org.scijava.plugin.Plugin;
+
+import java.util.List;
+
+/**
+ * Splits padded axes into tiles of a fixed size (see {@link ModelZooPredictionOptions#tileSize(int)}),
+ * rounded down to a multiple of the step of the axis. If more tiles are requested, the tiles are split further.
+ */
+@Plugin(type = TilingStrategy.class, name = FixedShapeTilingStrategy.name)
+public class FixedShapeTilingStrategy implements TilingStrategy {
+
+	public static final String name = "fixed";
+
+	private int tileSize = 256;
+
+	@Override
+	public void setup(ModelZooPredictionOptions.Values options) {
+		tileSize = options.tileSize();
+	}
+
+	public void setTileSize(int tileSize) {
+		this.tileSize = tileSize;
+	}
+
+	@Override
+	public long[] computeTiling(InputImageNode input, List<OutputImageNode> outputs, long[] dims, int tilesMin) {
+		long[] tiling = new long[dims.length];
+		for (int i = 0; i < dims.length; i++) {
+			ModelZooAxis axis = input.getDataAxis(i);
+			if (axis.getTiling() == TilingAction.TILE_WITH_PADDING) {
+				long size = getAlignedSize(axis, tileSize);
+				tiling[i] = Math.max(1, (dims[i] + size - 1) / size);
+			} else {
+				tiling[i] = 1;
+			}
+		}
+		return TiledImageDataReference.computeTiling(input, dims, tiling, tilesMin);
+	}
+
+	static long getAlignedSize(ModelZooAxis axis, long size) {
+		long step = axis.getStep() == null ? 1 : axis.getStep();
+		long min = axis.getMin() == null ? 1 : axis.getMin();
+		return Math.max(min, Math.max(step, size / step * step));
+	}
+}
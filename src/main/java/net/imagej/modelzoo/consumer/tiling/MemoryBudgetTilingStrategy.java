@@ -0,0 +1,86 @@
+/*-
+ * #%L
+ * This is the bioimage.io modelzoo library for ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2020 Center for Systems Biology Dresden
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imagej.modelzoo.consumer.tiling;
+
+import net.imagej.modelzoo.consumer.ModelZooPredictionOptions;
+import net.imagej.modelzoo.consumer.model.node.InputImageNode;
+import net.imagej.modelzoo.consumer.model.node.OutputImageNode;
+import org.scijava.log.LogService;
+import org.scijava.plugin.Parameter;
+import org.scijava.plugin.Plugin;
+
+import java.util.List;
+
+/**
+ * Uses the fewest tiles whose estimated memory (see {@link TilingPlanner}) fits the memory budget
+ * of the prediction options, or half of the currently free heap if no budget is set.
+ */
+@Plugin(type = TilingStrategy.class, name = MemoryBudgetTilingStrategy.name)
+public class MemoryBudgetTilingStrategy implements TilingStrategy {
+
+	public static final String name = "memory";
+
+	@Parameter
+	private LogService log;
+
+	private final TilingPlanner planner = new TilingPlanner();
+	private final GreedyTilingStrategy greedy = new GreedyTilingStrategy();
+	private long memoryBudget = 0;
+	private int batchSize = 1;
+	private int tilesPerBatch = 1;
+
+	@Override
+	public void setup(ModelZooPredictionOptions.Values options) {
+		memoryBudget = options.memoryBudget();
+		batchSize = options.batchSize();
+		tilesPerBatch = options.tilesPerBatch();
+	}
+
+	public void setMemoryBudget(long memoryBudget) {
+		this.memoryBudget = memoryBudget;
+	}
+
+	@Override
+	public long[] computeTiling(InputImageNode input, List<OutputImageNode> outputs, long[] dims, int tilesMin) {
+		long budget = memoryBudget > 0 ? memoryBudget : getFreeMemory() / 2;
+		TilingPlanner.Plan plan = planner.plan(input, outputs, budget, batchSize, tilesPerBatch);
+		if (plan.getEstimatedBytes() > budget) {
+			log.warn("No tiling fits into the memory budget of " + budget / (1024 * 1024) + " MB, using " + plan);
+		} else {
+			log.info("Tiling for a memory budget of " + budget / (1024 * 1024) + " MB: " + plan);
+		}
+		return greedy.computeTiling(input, outputs, dims, Math.max(tilesMin, plan.getNumberOfTiles()));
+	}
+
+	private static long getFreeMemory() {
+		Runtime runtime = Runtime.getRuntime();
+		return runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+	}
+}
@@ -0,0 +1,124 @@
+/*-
+ * #%L
+ * This is the bioimage.io modelzoo library for ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2020 Center for Systems Biology Dresden
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imagej.modelzoo.consumer.tiling;
+
+import net.imagej.modelzoo.consumer.model.node.InputImageNode;
+import net.imagej.modelzoo.consumer.model.node.ModelZooAxis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Finds the tiling with at least a given number of tiles which passes the fewest voxels to the model,
+ * counting the padding of each tile (axes with a single tile are not padded) and the expansion of each
+ * axis to a valid tile size of the model.
+ */
+public class MinimalOverlapPlanner {
+
+	private final InputImageNode input;
+	private final long[] dims;
+	private final List<Integer> axes = new ArrayList<>();
+	private int tilesMin;
+	private TilingOverhead best;
+	private long bestTiles;
+	private long[] largest;
+	private long largestTiles;
+
+	public MinimalOverlapPlanner(InputImageNode input, long[] dims) {
+		this.input = input;
+		this.dims = dims;
+		for (int i = 0; i < dims.length; i++) {
+			if (input.getDataAxis(i).getTiling() == TilingAction.TILE_WITH_PADDING) axes.add(i);
+		}
+	}
+
+	/**
+	 * @return the tiling with the least inference volume consisting of at least tilesMin tiles,
+	 * or of as many tiles as possible in case the axes cannot be split into tilesMin tiles
+	 */
+	public TilingOverhead plan(int tilesMin) {
+		this.tilesMin = tilesMin;
+		best = null;
+		largest = null;
+		long[] tiling = new long[dims.length];
+		Arrays.fill(tiling, 1);
+		if (axes.isEmpty()) return estimate(tiling);
+		search(0, tiling, 1);
+		return best != null ? best : estimate(largest);
+	}
+
+	/**
+	 * @return the overhead of the given tiling
+	 */
+	public TilingOverhead estimate(long[] tiling) {
+		long[] padding = TiledImageDataReference.getPadding(input, tiling, DefaultTiling.defaultHalo);
+		return TilingOverhead.estimate(input, dims, tiling, padding);
+	}
+
+	private void search(int index, long[] tiling, long tiles) {
+		int dim = axes.get(index);
+		long maxTiles = maxTiles(dim);
+		long needed = (tilesMin + tiles - 1) / tiles;
+		if (index == axes.size() - 1) {
+			tiling[dim] = Math.max(1, Math.min(needed, maxTiles));
+			evaluate(tiling, tiles * tiling[dim]);
+			return;
+		}
+		for (long t = 1; t <= Math.max(1, Math.min(needed, maxTiles)); t++) {
+			tiling[dim] = t;
+			search(index + 1, tiling, tiles * t);
+		}
+		tiling[dim] = 1;
+	}
+
+	private void evaluate(long[] tiling, long tiles) {
+		if (tiles < tilesMin) {
+			if (largest == null || tiles > largestTiles) {
+				largest = tiling.clone();
+				largestTiles = tiles;
+			}
+			return;
+		}
+		TilingOverhead overhead = estimate(tiling);
+		if (best == null || overhead.getInferenceVoxels() < best.getInferenceVoxels()
+				|| (overhead.getInferenceVoxels() == best.getInferenceVoxels() && tiles < bestTiles)) {
+			best = overhead;
+			bestTiles = tiles;
+		}
+	}
+
+	// more tiles than this would not make the tiles any smaller
+	private long maxTiles(int dim) {
+		ModelZooAxis axis = input.getDataAxis(dim);
+		long min = axis.getMin() == null ? 1 : axis.getMin();
+		return Math.max(1, dims[dim] / Math.max(1, min));
+	}
+}
@@ -0,0 +1,62 @@
+/*-
+ * #%L
+ * This is the bioimage.io modelzoo library for ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2020 Center for Systems Biology Dresden
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imagej.modelzoo.consumer.tiling;
+
+/**
+ * How the predictions of overlapping tiles are combined into the output.
+ */
+public enum TileBlending {
+		NONE, // the padding of each tile is cropped, tiles do not overlap in the output
+		LINEAR, // overlapping tiles are averaged, weights ramp down linearly towards the tile borders
+		GAUSSIAN; // overlapping tiles are averaged, weights decay from the tile center with a Gaussian
+
+	/**
+	 * @param size size of the tile including the margin on both sides
+	 * @param margin how far the tile overlaps with each neighbor
+	 * @return the weight of each position of the tile along one axis
+	 */
+	double[] createWeights(int size, long margin) {
+		double[] weights = new double[size];
+		for (int i = 0; i < size; i++) {
+			if (margin == 0 || this == NONE) {
+				weights[i] = 1;
+			} else if (this == LINEAR) {
+				// neighboring ramps add up to one across the 2 * margin voxels both tiles cover
+				double distance = Math.min(i, size - 1 - i) + 0.5;
+				weights[i] = Math.min(1, distance / (2 * margin));
+			} else {
+				double sigma = size / 8.;
+				double x = i - (size - 1) / 2.;
+				weights[i] = Math.max(1e-6, Math.exp(-x * x / (2 * sigma * sigma)));
+			}
+		}
+		return weights;
+	}
+}
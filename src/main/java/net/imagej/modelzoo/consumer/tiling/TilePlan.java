@@ -0,0 +1,182 @@
+/*-
+ * #%L
+ * This is the bioimage.io modelzoo library for ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2020 Center for Systems Biology Dresden
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imagej.modelzoo.consumer.tiling;
+
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable list of the tiles of a tiled prediction. Each tile knows its region of the input, the region including
+ * its padding and the region it covers in each output. Tiles can be processed in any order, a plan can be split into
+ * disjoint parts for multiple workers.
+ */
+public final class TilePlan implements Iterable<TilePlan.Entry>, Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * A single tile of a {@link TilePlan}
+	 */
+	public static final class Entry implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int index;
+		private final long[] min;
+		private final long[] size;
+		private final long[] padding;
+		private final Map<String, long[][]> outputs;
+
+		Entry(int index, long[] min, long[] size, long[] padding, Map<String, long[][]> outputs) {
+			this.index = index;
+			this.min = min.clone();
+			this.size = size.clone();
+			this.padding = padding.clone();
+			this.outputs = Collections.unmodifiableMap(new LinkedHashMap<>(outputs));
+		}
+
+		/**
+		 * @return the index of the tile in the plan it was created in
+		 */
+		public int getIndex() {
+			return index;
+		}
+
+		/**
+		 * @return the region of the input predicted by this tile
+		 */
+		public Interval getSourceInterval() {
+			return FinalInterval.createMinSize(min, size);
+		}
+
+		/**
+		 * @return the region of the input passed to the model, including the padding
+		 */
+		public Interval getPaddedInterval() {
+			long[] paddedMin = new long[min.length];
+			long[] paddedMax = new long[min.length];
+			for (int d = 0; d < min.length; d++) {
+				paddedMin[d] = min[d] - padding[d];
+				paddedMax[d] = min[d] + size[d] - 1 + padding[d];
+			}
+			return new FinalInterval(paddedMin, paddedMax);
+		}
+
+		public long[] getPadding() {
+			return padding.clone();
+		}
+
+		/**
+		 * @return the region of the output with the given name covered by this tile, or null if there is no such output
+		 */
+		public Interval getOutputInterval(String outputName) {
+			long[][] interval = outputs.get(outputName);
+			return interval == null ? null : FinalInterval.createMinSize(interval[0], interval[1]);
+		}
+
+		long[] getMin() {
+			return min.clone();
+		}
+
+		long[] getSize() {
+			return size.clone();
+		}
+	}
+
+	private final List<String> outputNames;
+	private final List<Entry> entries;
+
+	TilePlan(List<String> outputNames, List<Entry> entries) {
+		this.outputNames = Collections.unmodifiableList(new ArrayList<>(outputNames));
+		this.entries = Collections.unmodifiableList(new ArrayList<>(entries));
+	}
+
+	/**
+	 * @return the names of the output nodes the tiles have output intervals for
+	 */
+	public List<String> getOutputNames() {
+		return outputNames;
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	public boolean isEmpty() {
+		return entries.isEmpty();
+	}
+
+	public Entry get(int i) {
+		return entries.get(i);
+	}
+
+	public List<Entry> getEntries() {
+		return entries;
+	}
+
+	@Override
+	public Iterator<Entry> iterator() {
+		return entries.iterator();
+	}
+
+	/**
+	 * @return a plan with the tiles from (inclusive) to (exclusive) of this plan
+	 */
+	public TilePlan subPlan(int from, int to) {
+		return new TilePlan(outputNames, entries.subList(from, to));
+	}
+
+	/**
+	 * Splits the plan into at most the given number of disjoint, consecutive parts of (almost) equal size.
+	 */
+	public List<TilePlan> split(int parts) {
+		List<TilePlan> res = new ArrayList<>();
+		int n = Math.max(1, Math.min(parts, entries.size()));
+		for (int i = 0; i < n; i++) {
+			int from = (int) ((long) entries.size() * i / n);
+			int to = (int) ((long) entries.size() * (i + 1) / n);
+			res.add(subPlan(from, to));
+		}
+		return res;
+	}
+
+	@Override
+	public String toString() {
+		return "TilePlan with " + entries.size() + " tile(s)";
+	}
+}
@@ -34,33 +34,67 @@ import net.imagej.modelzoo.consumer.model.node.ImageDataReference;
 import net.imagej.modelzoo.consumer.model.node.InputImageNode;
 import net.imagej.modelzoo.consumer.model.node.ModelZooAxis;
 import net.imagej.modelzoo.consumer.model.node.OutputImageNode;
+import net.imagej.modelzoo.consumer.model.prediction.ChunkedImageSink;
+import net.imagej.modelzoo.consumer.preprocessing.PointwiseView;
 import net.imglib2.Cursor;
 import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccess;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.TiledView;
 import net.imglib2.cache.img.DiskCachedCellImg;
 import net.imglib2.cache.img.DiskCachedCellImgFactory;
 import net.imglib2.cache.img.DiskCachedCellImgOptions;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.iterator.LocalizingIntervalIterator;
 import net.imglib2.loops.LoopBuilder;
 import net.imglib2.type.NativeType;
 import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.real.FloatType;
 import net.imglib2.util.Intervals;
+import net.imglib2.util.Util;
 import net.imglib2.view.IntervalView;
 import net.imglib2.view.Views;
+import org.scijava.log.Logger;
+import org.scijava.log.StderrLogService;
 
-import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.FloatBuffer;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 
 class TiledImageDataReference<TI extends RealType<TI> & NativeType<TI>> extends DefaultImageDataReference<TI> {
 
 	class TiledOutput<TO extends RealType<TO> & NativeType<TO>> {
 		OutputImageNode outputNode;
 		ImageDataReference<TO> outputReference;
-		Cursor<RandomAccessibleInterval<TO>> tiledOutputViewCursor;
+		TiledView<TO> tiledOutputView;
 		DiskCachedCellImg<TO, ?> outputData;
+		// if set, tiles are written to the sink instead of outputData
+		ChunkedImageSink<TO> sink;
+		long[] dimensions;
+		long[] blockSize;
+		int batchDimension = -1;
+		// for each output dimension the matching input dimension, -1 if the input has no such axis
+		int[] inputDimensions;
+		// if set, tiles are blended: weighted predictions and the sum of weights are accumulated and normalized in the end
+		DiskCachedCellImg<FloatType, ?> accumulated;
+		DiskCachedCellImg<FloatType, ?> weights;
 
 		public TiledOutput(OutputImageNode outputImageNode, ImageDataReference<TO> imageDataReference) {
 			outputNode = outputImageNode;
@@ -74,9 +108,55 @@ class TiledImageDataReference<TI extends RealType<TI> & NativeType<TI>> extends
 
 	private final InputImageNode inputNode;
 	private TiledView<TI> tiledInputView;
-	private Cursor<RandomAccessibleInterval<TI>> tiledInputViewCursor;
 	private Path cacheDir;
 	private List<TiledOutput<?>> tiledOutputs;
+	private int tilesPerBatch = 1;
+	private int batchDimension = -1;
+	// number of tiles stacked into each prepared input, in the order the outputs get resolved
+	private final Queue<Integer> stackedTileCounts = new ConcurrentLinkedQueue<>();
+	// tiles from nextTile on are not assigned yet, assigned tiles wait in assignedTiles for their output being resolved
+	private List<Tile> tiles = new ArrayList<>();
+	private volatile int nextTile = 0;
+	private final Queue<Tile> assignedTiles = new ConcurrentLinkedQueue<>();
+	private final AtomicLong resolvedTileCount = new AtomicLong();
+	// tiles resolved via a TilePlan, in any order, they are skipped when requeuing the remaining tiles
+	private final Set<String> resolvedPlanTiles = ConcurrentHashMap.newKeySet();
+	private long tilesResolvedBeforeSplit = 0;
+	private Function<OutputImageNode, ChunkedImageSink<?>> outputSinks;
+	private TilingStrategy tilingStrategy;
+	private long[] tiling;
+	// padding of the tiles, axes with a single tile are not padded
+	private volatile long[] overlap;
+	private TilingOverhead tilingOverhead;
+	private TileBlending blending = TileBlending.NONE;
+	private double haloScale = 1;
+	private Logger log = new StderrLogService();
+
+	/**
+	 * Region of the input (without halo) which is predicted at once. Initially each tile is one block of the tiled input view,
+	 * after running out of memory the tiles which are not resolved yet get split into smaller ones.
+	 */
+	static class Tile {
+		final long[] min;
+		final long[] size;
+
+		Tile(long[] min, long[] size) {
+			this.min = min;
+			this.size = size;
+		}
+	}
+
+	/**
+	 * Input data consisting of multiple tiles stacked along the batch axis
+	 */
+	static class TileStack<T extends RealType<T> & NativeType<T>> extends DefaultImageDataReference<T> {
+		private final int tileCount;
+
+		TileStack(RandomAccessibleInterval<T> data, T dataType, int tileCount) {
+			super(data, dataType);
+			this.tileCount = tileCount;
+		}
+	}
 
 	TiledImageDataReference(InputImageNode inputNode, List<OutputImageNode> outputNodes, ImageDataReference<TI> inputReference, List<ImageDataReference<?>> outputReferences, Path cacheDir) {
 		super(inputReference.getData(), inputReference.getDataType());
@@ -88,6 +168,35 @@ class TiledImageDataReference<TI extends RealType<TI> & NativeType<TI>> extends
 		this.cacheDir = cacheDir;
 	}
 
+	/**
+	 * @param blending how overlapping tiles are combined, tiles are cropped to their block if {@link TileBlending#NONE}
+	 */
+	void setBlending(TileBlending blending) {
+		this.blending = blending;
+	}
+
+	/**
+	 * @param haloScale fraction of the padding computed by the tiling strategy which is used, e.g. smaller with blending
+	 */
+	void setHaloScale(double haloScale) {
+		this.haloScale = haloScale;
+	}
+
+	private List<OutputImageNode> outputNodes() {
+		List<OutputImageNode> nodes = new ArrayList<>();
+		for (TiledOutput<?> tiledOutput : tiledOutputs) {
+			nodes.add(tiledOutput.outputNode);
+		}
+		return nodes;
+	}
+
+	/**
+	 * @param outputSinks creates the sink each output gets written to, tile by tile (null = outputs are cached)
+	 */
+	void setOutputSinks(Function<OutputImageNode, ChunkedImageSink<?>> outputSinks) {
+		this.outputSinks = outputSinks;
+	}
+
 	List<TiledOutput<?>> getTiledOutputs() {
 		return tiledOutputs;
 	}
@@ -97,7 +206,11 @@ class TiledImageDataReference<TI extends RealType<TI> & NativeType<TI>> extends
 	}
 
 	long getTilesTotalCount() {
-		return arrayProduct(Intervals.dimensionsAsLongArray(tiledInputView));
+		return tilesResolvedBeforeSplit + tiles.size();
+	}
+
+	long getResolvedTileCount() {
+		return resolvedTileCount.get();
 	}
 
 	private static long arrayProduct(long[] array) {
@@ -109,30 +222,352 @@ class TiledImageDataReference<TI extends RealType<TI> & NativeType<TI>> extends
 	}
 
 
+	static int getTileCount(ImageDataReference<?> tile) {
+		return tile instanceof TileStack ? ((TileStack<?>) tile).tileCount : 1;
+	}
+
 	void resolveCurrentTile(List<ImageDataReference<?>> data) {
+		Integer tileCount = stackedTileCounts.poll();
+		if(tileCount == null) tileCount = 1;
+		// tiles are only removed from the queue once their output is written, so that they can be requeued after a failure
+		List<Tile> resolvedTiles = new ArrayList<>();
+		Iterator<Tile> assigned = assignedTiles.iterator();
+		for (int i = 0; i < tileCount; i++) {
+			resolvedTiles.add(assigned.next());
+		}
 		for (int i = 0; i < tiledOutputs.size(); i++) {
 			tiledOutputs.get(i).setOutputReference(data.get(i));
 		}
-		long[] padding = tiledInputView.getOverlap();
-		for (int i = 0; i < padding.length; i++) {
-			padding[i] = -padding[i];
+		long[] overlap = this.overlap;
+		for (int d = 0; d < data.size(); d++) {
+			TiledOutput<?> tiledOutput = tiledOutputs.get(d);
+			for (int i = 0; i < tileCount; i++) {
+				Interval targetInterval = getOutputInterval(tiledOutput, resolvedTiles.get(i));
+				RandomAccessibleInterval<? extends RealType<?>> outputData = tiledOutput.outputReference.getData();
+				RandomAccessibleInterval<? extends RealType<?>> tileData = outputData;
+				if(tileCount > 1) tileData = getStackedTile(outputData, tiledOutput.batchDimension, i, tileCount);
+				writeTile(tiledOutput, outputData, tileData, overlap, targetInterval);
+			}
+		}
+		for (int i = 0; i < tileCount; i++) {
+			assignedTiles.poll();
 		}
+		resolvedTileCount.addAndGet(tileCount);
+	}
+
+	/**
+	 * Writes the prediction of a single tile of the given plan, independent of the order the tiles are processed in.
+	 * Tiles of a plan can be resolved concurrently, each tile is written into its own region of the output.
+	 * @param data the output of the model for each output node, including the padding of the tile
+	 */
+	void resolveTile(TilePlan.Entry tile, List<ImageDataReference<?>> data) {
+		Tile block = new Tile(tile.getMin(), tile.getSize());
 		for (int d = 0; d < data.size(); d++) {
 			TiledOutput<?> tiledOutput = tiledOutputs.get(d);
-			RandomAccessibleInterval<? extends RealType<?>> currentTile = tiledOutput.tiledOutputViewCursor.next();
-			IntervalView<? extends RealType<?>> dataWithoutPadding = Views.expandBorder(tiledOutput.outputReference.getData(), padding);
-			LoopBuilder.setImages(dataWithoutPadding, currentTile).multiThreaded().forEachPixel((in, out) -> {
-				out.setReal(in.getRealDouble());
-			});
+			RandomAccessibleInterval<? extends RealType<?>> outputData = (RandomAccessibleInterval<? extends RealType<?>>) data.get(d).getData();
+			writeTile(tiledOutput, outputData, outputData, tile.getPadding(), getOutputInterval(tiledOutput, block));
+		}
+		resolvedPlanTiles.add(getKey(block));
+		resolvedTileCount.incrementAndGet();
+	}
+
+	private static String getKey(Tile tile) {
+		return Arrays.toString(tile.min) + Arrays.toString(tile.size);
+	}
+
+	private void writeTile(TiledOutput<?> tiledOutput, RandomAccessibleInterval<? extends RealType<?>> outputData,
+	                       RandomAccessibleInterval<? extends RealType<?>> tileData, long[] overlap, Interval targetInterval) {
+		if(tiledOutput.accumulated != null) {
+			blendTile(tiledOutput, tileData, overlap, targetInterval);
+			return;
+		}
+		long[] padding = new long[overlap.length];
+		for (int i = 0; i < padding.length; i++) {
+			padding[i] = -overlap[i];
 		}
+		if(tiledOutput.sink != null) {
+			writeTileToSink(tiledOutput, Views.expandBorder(tileData, padding), targetInterval);
+			return;
+		}
+		if(writeTileDirectly(tiledOutput, outputData, tileData, padding, targetInterval)) return;
+		RandomAccessibleInterval<? extends RealType<?>> currentTile = Views.zeroMin(Views.interval(tiledOutput.outputData, targetInterval));
+		IntervalView<? extends RealType<?>> dataWithoutPadding = Views.expandBorder(tileData, padding);
+		LoopBuilder.setImages(dataWithoutPadding, currentTile).multiThreaded().forEachPixel((in, out) -> {
+			out.setReal(in.getRealDouble());
+		});
 	}
 
-	void createTiledInputView(int batchSize, int defaultHalo, int tilesMin) {
+	/**
+	 * Adds the weighted tile including its padding to the accumulated output, neighboring tiles overlap by their padding.
+	 */
+	private void blendTile(TiledOutput<?> tiledOutput, RandomAccessibleInterval<? extends RealType<?>> tileData, long[] overlap, Interval target) {
+		int n = target.numDimensions();
+		long[] tileMin = new long[n];
+		long[] min = new long[n];
+		long[] max = new long[n];
+		double[][] axisWeights = new double[n][];
+		for (int i = 0; i < n; i++) {
+			int j = tiledOutput.inputDimensions[i];
+			long margin = j < 0 ? 0 : overlap[j] * tiledOutput.blockSize[i] / tiledInputView.getBlockSize()[j];
+			tileMin[i] = target.min(i) - margin;
+			axisWeights[i] = blending.createWeights((int) (target.dimension(i) + 2 * margin), margin);
+			min[i] = Math.max(0, tileMin[i]);
+			max[i] = Math.min(tiledOutput.dimensions[i] - 1, target.max(i) + margin);
+		}
+		RandomAccessibleInterval<? extends RealType<?>> tile = Views.zeroMin(tileData);
+		synchronized (tiledOutput) {
+			Cursor<FloatType> cursor = Views.interval(tiledOutput.accumulated, min, max).localizingCursor();
+			RandomAccess<FloatType> weightAccess = tiledOutput.weights.randomAccess();
+			RandomAccess<? extends RealType<?>> tileAccess = tile.randomAccess();
+			long[] position = new long[n];
+			while (cursor.hasNext()) {
+				cursor.fwd();
+				cursor.localize(position);
+				weightAccess.setPosition(position);
+				double weight = 1;
+				for (int i = 0; i < n; i++) {
+					long tilePosition = position[i] - tileMin[i];
+					weight *= axisWeights[i][(int) tilePosition];
+					tileAccess.setPosition(tilePosition, i);
+				}
+				FloatType value = cursor.get();
+				value.setReal(value.getRealDouble() + weight * tileAccess.get().getRealDouble());
+				FloatType weightSum = weightAccess.get();
+				weightSum.setReal(weightSum.getRealDouble() + weight);
+			}
+		}
+	}
+
+	private void writeTileToSink(TiledOutput<?> tiledOutput, RandomAccessibleInterval<? extends RealType<?>> tileData, Interval target) {
+		try {
+			// sinks are not expected to be thread safe
+			synchronized (tiledOutput.sink) {
+				tiledOutput.sink.writeTile(Views.translate(Views.zeroMin(tileData), Intervals.minAsLongArray(target)));
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * @return the region of the output covered by the given input tile
+	 */
+	private Interval getOutputInterval(TiledOutput<?> tiledOutput, Tile tile) {
+		long[] inputBlockSize = tiledInputView.getBlockSize();
+		long[] outputBlockSize = tiledOutput.blockSize;
+		int n = outputBlockSize.length;
+		long[] min = new long[n];
+		long[] size = new long[n];
+		for (int i = 0; i < n; i++) {
+			int j = tiledOutput.inputDimensions[i];
+			if(j < 0) {
+				size[i] = tiledOutput.dimensions[i];
+			} else {
+				min[i] = tile.min[j] * outputBlockSize[i] / inputBlockSize[j];
+				size[i] = tile.size[j] * outputBlockSize[i] / inputBlockSize[j];
+			}
+		}
+		return FinalInterval.createMinSize(min, size);
+	}
+
+	/**
+	 * @return all tiles which are not resolved yet
+	 */
+	TilePlan getTilePlan() {
+		List<Tile> remaining = getRemainingTiles();
+		long[] overlap = this.overlap;
+		List<String> outputNames = new ArrayList<>();
+		for (TiledOutput<?> tiledOutput : tiledOutputs) {
+			outputNames.add(tiledOutput.outputNode.getName());
+		}
+		List<TilePlan.Entry> entries = new ArrayList<>();
+		for (Tile tile : remaining) {
+			Map<String, long[][]> outputIntervals = new LinkedHashMap<>();
+			for (TiledOutput<?> tiledOutput : tiledOutputs) {
+				Interval interval = getOutputInterval(tiledOutput, tile);
+				outputIntervals.put(tiledOutput.outputNode.getName(), new long[][]{Intervals.minAsLongArray(interval), Intervals.dimensionsAsLongArray(interval)});
+			}
+			entries.add(new TilePlan.Entry(entries.size(), tile.min, tile.size, overlap, outputIntervals));
+		}
+		return new TilePlan(outputNames, entries);
+	}
+
+	/**
+	 * @return the input of the model for the given tile, including its padding
+	 */
+	RandomAccessibleInterval<TI> getInputTile(TilePlan.Entry tile) {
+		return PointwiseView.applyView(tiledInputView.getSource(), source -> Views.zeroMin(Views.interval(source, tile.getPaddedInterval())));
+	}
+
+	private RandomAccessibleInterval<TI> getInputTile(Tile tile) {
+		long[] overlap = this.overlap;
+		long[] min = new long[overlap.length];
+		long[] max = new long[overlap.length];
+		for (int d = 0; d < overlap.length; d++) {
+			min[d] = tile.min[d] - overlap[d];
+			max[d] = tile.min[d] + tile.size[d] - 1 + overlap[d];
+		}
+		return PointwiseView.applyView(tiledInputView.getSource(), source -> Views.zeroMin(Views.interval(source, min, max)));
+	}
+
+	private Tile takeNextTile() {
+		Tile tile = tiles.get(nextTile++);
+		assignedTiles.add(tile);
+		return tile;
+	}
+
+	/**
+	 * Puts the tiles which are assigned but not resolved yet back in front of the remaining tiles,
+	 * e.g. to continue after the prediction of a tile failed.
+	 */
+	void requeueRemainingTiles() {
+		setRemainingTiles(getRemainingTiles());
+	}
+
+	private List<Tile> getRemainingTiles() {
+		List<Tile> remaining = new ArrayList<>(assignedTiles);
+		remaining.addAll(tiles.subList(nextTile, tiles.size()));
+		if(!resolvedPlanTiles.isEmpty()) remaining.removeIf(tile -> resolvedPlanTiles.contains(getKey(tile)));
+		return remaining;
+	}
+
+	/**
+	 * Splits the tiles which are not resolved yet into smaller tiles, keeping the output of the resolved tiles.
+	 * Tiles are split in half along the batch axis first, then along the largest axis tiled with padding.
+	 * @return false if the tiles cannot be split any further
+	 */
+	boolean splitRemainingTiles() {
+		requeueRemainingTiles();
+		if(tiles.isEmpty()) return false;
+		long[] size = tiles.get(0).size;
+		int splitDimension = -1;
+		long splitSize = 0;
+		for (int i = 0; i < size.length; i++) {
+			if (inputNode.getDataAxis(i).getTiling() == TilingAction.TILE_WITHOUT_PADDING && size[i] > 1) {
+				splitDimension = i;
+				splitSize = (size[i] + 1) / 2;
+				break;
+			}
+		}
+		if(splitDimension < 0) {
+			for (int i = 0; i < size.length; i++) {
+				ModelZooAxis axis = inputNode.getDataAxis(i);
+				if (axis.getTiling() != TilingAction.TILE_WITH_PADDING) continue;
+				long halfSize = getTileSize(size[i], 2, axis);
+				if (halfSize < size[i] && (splitDimension < 0 || size[i] > size[splitDimension])) {
+					splitDimension = i;
+					splitSize = halfSize;
+				}
+			}
+		}
+		if(splitDimension < 0) return false;
+		// axes which were not tiled before are not padded yet
+		tiling[splitDimension] *= (size[splitDimension] + splitSize - 1) / splitSize;
+		overlap = computePadding(tiling);
+		List<Tile> split = new ArrayList<>();
+		for (Tile tile : tiles) {
+			for (long offset = 0; offset < size[splitDimension]; offset += splitSize) {
+				long[] min = tile.min.clone();
+				long[] splitTileSize = tile.size.clone();
+				// the last tile is moved back to keep all tiles the same size, overlapping the previous one
+				min[splitDimension] += Math.min(offset, size[splitDimension] - splitSize);
+				splitTileSize[splitDimension] = splitSize;
+				split.add(new Tile(min, splitTileSize));
+			}
+		}
+		log.info("Splitting the remaining " + tiles.size() + " tile(s) into " + split.size() + " tiles of size " + Arrays.toString(split.get(0).size));
+		setRemainingTiles(split);
+		return true;
+	}
+
+	private void setRemainingTiles(List<Tile> remaining) {
+		assignedTiles.clear();
+		stackedTileCounts.clear();
+		tilesResolvedBeforeSplit = resolvedTileCount.get();
+		tiles = remaining;
+		nextTile = 0;
+		resolvedPlanTiles.clear();
+	}
 
-		long[] tiling = new long[getData().numDimensions()];
-		Arrays.fill(tiling, 1);
-		tiling = computeTiling(tiling, tilesMin);
-		long[] padding = getPadding(tiling, defaultHalo);
+	/**
+	 * @return how many voxels get predicted with the current tiling, compared to the size of the input
+	 */
+	TilingOverhead getTilingOverhead() {
+		return tilingOverhead;
+	}
+
+	/**
+	 * @return the size of the tiles which are not resolved yet
+	 */
+	long[] getRemainingTileSize() {
+		return tiles.isEmpty() ? tiledInputView.getBlockSize() : tiles.get(0).size.clone();
+	}
+
+	/**
+	 * Tries to copy the tile data without halo from the predicted primitive array into the cells of the output.
+	 * @return false if the data is not stored in a way allowing a direct copy
+	 */
+	private boolean writeTileDirectly(TiledOutput<?> tiledOutput, RandomAccessibleInterval<?> data, RandomAccessibleInterval<?> tileData, long[] negativePadding, Interval target) {
+		int n = target.numDimensions();
+		if(negativePadding.length != n || tileData.numDimensions() != n) return false;
+		long[] sourceMin = new long[n];
+		long[] targetMin = Intervals.minAsLongArray(target);
+		long[] size = Intervals.dimensionsAsLongArray(target);
+		for (int d = 0; d < n; d++) {
+			if(tileData.dimension(d) + 2 * negativePadding[d] != size[d]) return false;
+			sourceMin[d] = tileData.min(d) - data.min(d) - negativePadding[d];
+		}
+		return DirectTileWriter.copy(data, sourceMin, tiledOutput.outputData, targetMin, size);
+	}
+
+	private static <T> RandomAccessibleInterval<T> getStackedTile(RandomAccessibleInterval<T> stack, int dimension, long index, long tileCount) {
+		long[] min = Intervals.minAsLongArray(stack);
+		long[] max = Intervals.maxAsLongArray(stack);
+		long tileSize = stack.dimension(dimension) / tileCount;
+		min[dimension] += index * tileSize;
+		max[dimension] = min[dimension] + tileSize - 1;
+		return Views.interval(stack, min, max);
+	}
+
+	void setLogger(Logger log) {
+		this.log = log;
+	}
+
+	/**
+	 * Enables stacking multiple tiles along the batch axis if the input and all outputs have a batch axis.
+	 */
+	void setTilesPerBatch(int tilesPerBatch) {
+		this.tilesPerBatch = 1;
+		batchDimension = -1;
+		if(tilesPerBatch <= 1) return;
+		for (int i = 0; i < getData().numDimensions(); i++) {
+			if (inputNode.getDataAxis(i).getTiling() == TilingAction.TILE_WITHOUT_PADDING) batchDimension = i;
+		}
+		if(batchDimension < 0) {
+			log.warn("Cannot stack tiles, the input has no batch axis");
+			return;
+		}
+		AxisType batchAxis = inputNode.getDataAxis(batchDimension).getType();
+		for (TiledOutput<?> tiledOutput : tiledOutputs) {
+			tiledOutput.batchDimension = -1;
+			for (int i = 0; i < tiledOutput.outputNode.numDimensions(); i++) {
+				if(tiledOutput.outputNode.getDataAxis(i).getType().equals(batchAxis)) tiledOutput.batchDimension = i;
+			}
+			if(tiledOutput.batchDimension < 0) {
+				log.warn("Cannot stack tiles, output " + tiledOutput.outputNode.getName() + " has no batch axis");
+				batchDimension = -1;
+				return;
+			}
+		}
+		this.tilesPerBatch = tilesPerBatch;
+		log.info("Stacking up to " + tilesPerBatch + " tiles per batch");
+	}
+
+	void createTiledInputView(int batchSize, TilingStrategy strategy, int tilesMin) {
+
+		long[] tiling = strategy.computeTiling(inputNode, outputNodes(), Intervals.dimensionsAsLongArray(getData()), tilesMin);
+		this.tilingStrategy = strategy;
+		long[] padding = computePadding(tiling);
 		computeBatching(tiling, batchSize);
 		System.out.println("Input dimensions: " + Arrays.toString(Intervals.dimensionsAsIntArray(getData())));
 		System.out.println("Axes: " + Arrays.toString(inputNode.getDataAxesArray()));
@@ -141,7 +576,16 @@ class TiledImageDataReference<TI extends RealType<TI> & NativeType<TI>> extends
 		RandomAccessibleInterval<TI> expandedInput = expandToFitBatchSize(inputNode, getData(), tiling);
 //		System.out.println("expandedinput: " + Arrays.toString(Intervals.dimensionsAsIntArray(expandedInput)));
 //		System.out.println("tiling: " + Arrays.toString(tiling));
-		expandedInput = expandToFitBlockSize(inputNode, expandedInput, tiling);
+		long[] blockSize = getBlockSize(inputNode, Intervals.dimensionsAsLongArray(expandedInput), tiling);
+		if(inputNode.getChunkSize() != null) {
+			long[] unalignedBlockSize = blockSize.clone();
+			alignToChunks(inputNode, inputNode.getChunkSize(), Intervals.dimensionsAsLongArray(expandedInput), blockSize, tiling);
+			if(!Arrays.equals(unalignedBlockSize, blockSize)) {
+				log.info("Aligning tile size " + Arrays.toString(unalignedBlockSize) + " with chunk size "
+						+ Arrays.toString(inputNode.getChunkSize()) + ": " + Arrays.toString(blockSize));
+			}
+		}
+		expandedInput = expandToFitBlockSize(inputNode, expandedInput, blockSize, tiling);
 //		System.out.println("expandedinput: " + Arrays.toString(Intervals.dimensionsAsIntArray(expandedInput)));
 //		System.out.println("tiling: " + Arrays.toString(tiling));
 		long[] tileSize = calculateTileSize(expandedInput, tiling);
@@ -153,8 +597,38 @@ class TiledImageDataReference<TI extends RealType<TI> & NativeType<TI>> extends
 		System.out.println("Final image tiling: " + Arrays.toString(Intervals.dimensionsAsIntArray(tiledView)));
 		System.out.println("Final tile padding: " + Arrays.toString(padding));
 
+		tilingOverhead = TilingOverhead.compute(Intervals.dimensionsAsLongArray(getData()), tiling, tileSize, padding);
+
+		this.tiling = tiling;
+		this.overlap = padding;
 		this.tiledInputView = tiledView;
-		tiledInputViewCursor = Views.iterable(tiledInputView).cursor();
+		createTiles(tileSize);
+	}
+
+	private long[] computePadding(long[] tiling) {
+		long[] padding = tilingStrategy.computePadding(inputNode, tiling);
+		if (haloScale == 1) return padding;
+		for (int i = 0; i < padding.length; i++) {
+			Integer step = inputNode.getDataAxis(i).getStep();
+			long unit = step == null ? 1 : step;
+			padding[i] = (long) Math.ceil(padding[i] * haloScale / unit) * unit;
+		}
+		return padding;
+	}
+
+	private void createTiles(long[] tileSize) {
+		List<Tile> blocks = new ArrayList<>();
+		LocalizingIntervalIterator iterator = new LocalizingIntervalIterator(tiledInputView);
+		while (iterator.hasNext()) {
+			iterator.fwd();
+			long[] min = new long[tileSize.length];
+			for (int d = 0; d < min.length; d++) {
+				min[d] = iterator.getLongPosition(d) * tileSize[d];
+			}
+			blocks.add(new Tile(min, tileSize.clone()));
+		}
+		resolvedTileCount.set(0);
+		setRemainingTiles(blocks);
 	}
 
 	void createTiledOutputView() {
@@ -168,6 +642,9 @@ class TiledImageDataReference<TI extends RealType<TI> & NativeType<TI>> extends
 		long[] grid = new long[tiledOutput.outputNode.numDimensions()];
 		long[] padding = new long[tiledOutput.outputNode.numDimensions()];
 		long[] dims = new long[tiledOutput.outputNode.numDimensions()];
+		// size of the output matching the input before it was expanded to fit the tiles
+		long[] croppedDims = new long[dims.length];
+		tiledOutput.inputDimensions = new int[dims.length];
 		AxisType[] inputAxes = inputNode.getDataAxesArray();
 		Arrays.fill(grid, 1);
 
@@ -177,13 +654,17 @@ class TiledImageDataReference<TI extends RealType<TI> & NativeType<TI>> extends
 			Integer offset = outputAxis.getOffset();
 			if(scale == null) scale = 1.;
 			if(offset == null) offset = 0;
+			tiledOutput.inputDimensions[i] = -1;
 			for (int j = 0; j < inputAxes.length; j++) {
 				if (inputAxes[j].equals(outputAxis.getType())) {
+					tiledOutput.inputDimensions[i] = j;
 					grid[i] = tiledInputView.dimension(j);
 					dims[i] = (long) (tiledInputView.getBlockSize()[j]*grid[i]* scale + offset);
+					croppedDims[i] = Math.min(dims[i], (long) (getData().dimension(j) * scale + offset));
 					break;
 				}
 			}
+			if(tiledOutput.inputDimensions[i] < 0) croppedDims[i] = dims[i];
 		}
 
 		// is this necessary?
@@ -198,28 +679,55 @@ class TiledImageDataReference<TI extends RealType<TI> & NativeType<TI>> extends
 		}
 		System.out.println("Size of single output tile: " + Arrays.toString(intTileSize));
 		System.out.println("Output dimensions: " + Arrays.toString(dims));
-		clearCacheDir();
+		tiledOutput.dimensions = dims;
+		tiledOutput.blockSize = tileSize;
+		if(outputSinks != null) {
+			tiledOutput.sink = (ChunkedImageSink<T>) outputSinks.apply(tiledOutput.outputNode);
+			try {
+				// border blocks of the sink are truncated, tiles predicted on the expanded border of the input are clipped
+				tiledOutput.sink.create(croppedDims, intTileSize, dataType);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			if(blending != TileBlending.NONE) {
+				log.warn("Tile blending is not supported when writing tiles to a sink, cropping tiles instead");
+			}
+			return;
+		}
 //		if(outputData != null) outputData.shutdown();
 		DiskCachedCellImg<T, ?> cellImg = new DiskCachedCellImgFactory<>(dataType,
 				DiskCachedCellImgOptions.options()
 						.cacheType(DiskCachedCellImgOptions.CacheType.SOFTREF)
-						.cacheDirectory(cacheDir)
-						.deleteCacheDirectoryOnExit(cacheDir == null)).create(dims);
+						.cacheDirectory(createOutputCacheDir())
+						.deleteCacheDirectoryOnExit(true)).create(dims);
 		tiledOutput.outputData = cellImg;
+		if(blending != TileBlending.NONE) {
+			tiledOutput.accumulated = createAccumulator(dims, createOutputCacheDir());
+			tiledOutput.weights = createAccumulator(dims, createOutputCacheDir());
+		}
 		TiledView<T> tiledOutputView = new TiledView<>(cellImg, tileSize, padding);
-		tiledOutput.tiledOutputViewCursor = Views.iterable(tiledOutputView).cursor();
+		tiledOutput.tiledOutputView = tiledOutputView;
 	}
 
-	private void clearCacheDir() {
-		if(cacheDir == null) return;
-		if(!cacheDir.toFile().exists()) {
-			System.err.println("Cache directory " + cacheDir + " does not exist");
-			return;
-		}
-		File[] files = cacheDir.toFile().listFiles();
-		if(files == null) return;
-		for (File file : files) {
-			if(!file.isDirectory()) file.delete();
+	private static DiskCachedCellImg<FloatType, ?> createAccumulator(long[] dims, Path cacheDirectory) {
+		return new DiskCachedCellImgFactory<>(new FloatType(),
+				DiskCachedCellImgOptions.options()
+						.cacheType(DiskCachedCellImgOptions.CacheType.SOFTREF)
+						.cacheDirectory(cacheDirectory)
+						.deleteCacheDirectoryOnExit(true)).create(dims);
+	}
+
+	/**
+	 * Each output gets its own subdirectory of the cache directory, so that the cells of previous
+	 * predictions stay available while their outputs are still used, e.g. written to disk.
+	 */
+	private Path createOutputCacheDir() {
+		if(cacheDir == null) return null;
+		try {
+			Files.createDirectories(cacheDir);
+			return Files.createTempDirectory(cacheDir, "output");
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
 		}
 	}
 
@@ -247,11 +755,14 @@ class TiledImageDataReference<TI extends RealType<TI> & NativeType<TI>> extends
 
 	}
 
-	private long[] getPadding(long[] tiling, int defaultHalo) {
+	/**
+	 * @return the halo of each axis tiled with padding into more than one tile, no padding for all other axes
+	 */
+	static long[] getPadding(InputImageNode inputNode, long[] tiling, int defaultHalo) {
 		long[] padding = new long[tiling.length];
 		for (int i = 0; i < padding.length; i++) {
-//			if (tiling[i] > 1) {
 			ModelZooAxis axis = inputNode.getDataAxis(i);
+			if (tiling[i] <= 1 || axis.getTiling() != TilingAction.TILE_WITH_PADDING) continue;
 			Integer halo = axis.getHalo();
 			Integer step = axis.getStep();
 			if (halo == null) halo = defaultHalo;
@@ -259,12 +770,11 @@ class TiledImageDataReference<TI extends RealType<TI> & NativeType<TI>> extends
 				halo = (int)Math.ceil((float)halo / (float)step)*step;
 			}
 			padding[i] = halo;
-//			}
 		}
 		return padding;
 	}
 
-	private long[] computeTiling(long[] tiling, int tilesMin) {
+	static long[] computeTiling(InputImageNode inputNode, long[] dims, long[] tiling, int tilesMin) {
 		int currentTiles = 1;
 		for (long tiles : tiling) {
 			currentTiles *= tiles;
@@ -277,7 +787,7 @@ class TiledImageDataReference<TI extends RealType<TI> & NativeType<TI>> extends
 			for (int i = 0; i < singleTile.length; i++) {
 				ModelZooAxis axis = inputNode.getDataAxis(i);
 				if (axis.getTiling() == TilingAction.TILE_WITH_PADDING) {
-					singleTile[i] = getTileSize(getData().dimension(i), tiling[i], axis);
+					singleTile[i] = getTileSize(dims[i], tiling[i], axis);
 					if (singleTile[i] > axis.getMin() && (maxDim < 0 ||
 							singleTile[i] > singleTile[maxDim])) {
 						maxDim = i;
@@ -286,7 +796,7 @@ class TiledImageDataReference<TI extends RealType<TI> & NativeType<TI>> extends
 			}
 			if (maxDim >= 0) {
 				tiling[maxDim] += 1;
-				return computeTiling(tiling, tilesMin);
+				return computeTiling(inputNode, dims, tiling, tilesMin);
 			} else {
 				return tiling;
 			}
@@ -318,7 +828,7 @@ class TiledImageDataReference<TI extends RealType<TI> & NativeType<TI>> extends
 		return tileSize;
 	}
 
-	private long getTileSize(long imgDimension, long tiling, ModelZooAxis axis) {
+	static long getTileSize(long imgDimension, long tiling, ModelZooAxis axis) {
 		Integer step = axis.getStep();
 		Integer min = axis.getMin();
 		if (step == null) step = 1;
@@ -329,14 +839,67 @@ class TiledImageDataReference<TI extends RealType<TI> & NativeType<TI>> extends
 		return Math.max(res, min);
 	}
 
+	private static long[] getBlockSize(InputImageNode inputNode, long[] dims, long[] tiling) {
+		long[] blockSize = new long[dims.length];
+		for (int i = 0; i < dims.length; i++) {
+			ModelZooAxis axis = inputNode.getDataAxis(i);
+			if (axis.getTiling() == TilingAction.TILE_WITH_PADDING) {
+				blockSize[i] = getTileSize(dims[i], tiling[i], axis);
+			} else {
+				blockSize[i] = dims[i] / tiling[i];
+			}
+		}
+		return blockSize;
+	}
+
+	/**
+	 * Changes the tile size of padded axes such that tile borders match the borders of the chunks the input is stored in.
+	 * Tiles larger than a chunk are shrunk to a multiple of the chunk size, tiles smaller than a chunk are shrunk to
+	 * a divisor of the chunk size. Tiles are only changed if the new size is still valid for the model.
+	 */
+	static void alignToChunks(InputImageNode inputNode, int[] chunkSize, long[] dims, long[] blockSize, long[] tiling) {
+		for (int i = 0; i < dims.length && i < chunkSize.length; i++) {
+			ModelZooAxis axis = inputNode.getDataAxis(i);
+			if (axis.getTiling() != TilingAction.TILE_WITH_PADDING || tiling[i] == 1) continue;
+			long step = axis.getStep() == null ? 1 : axis.getStep();
+			long min = axis.getMin() == null ? 1 : axis.getMin();
+			long chunk = chunkSize[i];
+			long aligned = -1;
+			if (blockSize[i] >= chunk) {
+				long unit = lcm(step, chunk);
+				aligned = blockSize[i] / unit * unit;
+			} else {
+				for (long size = blockSize[i] / step * step; size >= min && size > 0; size -= step) {
+					if (chunk % size == 0) {
+						aligned = size;
+						break;
+					}
+				}
+			}
+			if (aligned <= 0 || aligned < min || aligned == blockSize[i]) continue;
+			blockSize[i] = aligned;
+			tiling[i] = (dims[i] + aligned - 1) / aligned;
+		}
+	}
+
+	private static long lcm(long a, long b) {
+		long x = a, y = b;
+		while (y != 0) {
+			long t = x % y;
+			x = y;
+			y = t;
+		}
+		return a / x * b;
+	}
+
 	private RandomAccessibleInterval<TI> expandToFitBlockSize(
-			InputImageNode inputNode, RandomAccessibleInterval<TI> dataset, long[] tiling) {
+			InputImageNode inputNode, RandomAccessibleInterval<TI> dataset, long[] blockSize, long[] tiling) {
 		for (int i = 0; i < dataset.numDimensions(); i++) {
 			ModelZooAxis axis = inputNode.getDataAxis(i);
 			if (axis.getTiling() == TilingAction.TILE_WITH_PADDING) {
-				long tileSize = getTileSize(dataset.dimension(i), tiling[i], axis);
-				System.out.println("tile size " + i + ": " + tileSize + " step: " + axis.getStep());
-				dataset = expandDimToSize(dataset, i, tileSize * tiling[i]);
+				System.out.println("tile size " + i + ": " + blockSize[i] + " step: " + axis.getStep());
+				final int d = i;
+				dataset = PointwiseView.applyView(dataset, source -> expandDimToSize(source, d, blockSize[d] * tiling[d]));
 			}
 		}
 		return dataset;
@@ -354,13 +917,85 @@ class TiledImageDataReference<TI extends RealType<TI> & NativeType<TI>> extends
 				max));
 	}
 
-	void assignNextTile() {
-		inputNode.setData(new DefaultImageDataReference<>(tiledInputViewCursor.next(), getDataType()));
+	int assignNextTile() {
+		if(tilesPerBatch > 1) {
+			ImageDataReference<TI> tileStack = prepareNextTile();
+			inputNode.setData(tileStack);
+			return getTileCount(tileStack);
+		}
+		inputNode.setData(new DefaultImageDataReference<>(getInputTile(takeNextTile()), getDataType()));
+		return 1;
+	}
+
+	boolean hasInputTilesLeft() {
+		return nextTile < tiles.size();
+	}
+
+	/**
+	 * Copies the next input tile into memory so that the (lazy) input view is evaluated
+	 * independently of the thread running the prediction.
+	 */
+	ImageDataReference<TI> prepareNextTile() {
+		if(tilesPerBatch > 1) return stackNextTiles();
+		return copyTile(getInputTile(takeNextTile()));
+	}
+
+	/**
+	 * Copies the input of the given tile of a {@link TilePlan} into memory
+	 */
+	ImageDataReference<TI> prepareTile(TilePlan.Entry tile) {
+		return copyTile(getInputTile(tile));
+	}
+
+	private ImageDataReference<TI> copyTile(RandomAccessibleInterval<TI> tile) {
+		TI type = getDataType();
+		if(type == null) type = Util.getTypeFromInterval(tile).createVariable();
+		if(tile instanceof PointwiseView && type instanceof FloatType) {
+			float[] data = new float[(int) Intervals.numElements(tile)];
+			((PointwiseView<?>) tile).writeTo(FloatBuffer.wrap(data));
+			return new DefaultImageDataReference<>((Img<TI>) (Img<?>) ArrayImgs.floats(data, Intervals.dimensionsAsLongArray(tile)), type);
+		}
+		Img<TI> copy = new ArrayImgFactory<>(type).create(tile);
+		LoopBuilder.setImages(tile, copy).forEachPixel((in, out) -> out.set(in));
+		return new DefaultImageDataReference<>(copy, type);
+	}
+
+	/**
+	 * Copies up to {@link #tilesPerBatch} input tiles into one image, stacked along the batch axis.
+	 */
+	private ImageDataReference<TI> stackNextTiles() {
+		List<RandomAccessibleInterval<TI>> inputTiles = new ArrayList<>();
+		while(inputTiles.size() < tilesPerBatch && hasInputTilesLeft()) {
+			inputTiles.add(getInputTile(takeNextTile()));
+		}
+		TI type = getDataType();
+		if(type == null) type = Util.getTypeFromInterval(inputTiles.get(0)).createVariable();
+		long[] dims = Intervals.dimensionsAsLongArray(inputTiles.get(0));
+		dims[batchDimension] *= inputTiles.size();
+		Img<TI> stack = new ArrayImgFactory<>(type).create(dims);
+		for (int i = 0; i < inputTiles.size(); i++) {
+			RandomAccessibleInterval<TI> target = getStackedTile(stack, batchDimension, i, inputTiles.size());
+			LoopBuilder.setImages(inputTiles.get(i), target).forEachPixel((in, out) -> out.set(in));
+		}
+		stackedTileCounts.add(inputTiles.size());
+		return new TileStack<>(stack, type, inputTiles.size());
 	}
 
 	public void assignFullOutput() {
 		for (TiledOutput<?> tiledOutput : tiledOutputs) {
-			tiledOutput.outputNode.setData(new DefaultImageDataReference(tiledOutput.outputData, tiledOutput.outputNode.getData().getDataType()));
+			RandomAccessibleInterval<?> output = tiledOutput.outputData;
+			if(tiledOutput.accumulated != null) {
+				LoopBuilder.setImages(tiledOutput.outputData, tiledOutput.accumulated, tiledOutput.weights).multiThreaded()
+						.forEachPixel((out, sum, weight) -> out.setReal(weight.get() > 0 ? sum.get() / weight.get() : 0));
+			}
+			if(tiledOutput.sink != null) {
+				try {
+					output = tiledOutput.sink.finish();
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+			tiledOutput.outputNode.setData(new DefaultImageDataReference(output, tiledOutput.outputNode.getData().getDataType()));
 		}
 	}
 }
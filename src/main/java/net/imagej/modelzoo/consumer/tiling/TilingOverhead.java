@@ -0,0 +1,128 @@
+/*-
+ * #%L
+ * This is the bioimage.io modelzoo library for ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2020 Center for Systems Biology Dresden
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imagej.modelzoo.consumer.tiling;
+
+import net.imagej.modelzoo.consumer.model.node.InputImageNode;
+import net.imagej.modelzoo.consumer.model.node.ModelZooAxis;
+
+import java.util.Arrays;
+
+/**
+ * Compares the number of voxels the model has to predict for a tiling, including the padding of each tile
+ * and the expansion of the input to multiples of the axis step, with the number of voxels of the input.
+ */
+public class TilingOverhead {
+
+	private final long[] tiling;
+	private final long[] tileSize;
+	private final long[] padding;
+	private final long imageVoxels;
+	private final long inferenceVoxels;
+
+	private TilingOverhead(long[] tiling, long[] tileSize, long[] padding, long imageVoxels, long inferenceVoxels) {
+		this.tiling = tiling;
+		this.tileSize = tileSize;
+		this.padding = padding;
+		this.imageVoxels = imageVoxels;
+		this.inferenceVoxels = inferenceVoxels;
+	}
+
+	/**
+	 * @param dims dimensions of the input
+	 * @param tiling number of tiles along each dimension
+	 * @param tileSize size of a tile without padding
+	 * @param padding padding added to both sides of a tile
+	 */
+	public static TilingOverhead compute(long[] dims, long[] tiling, long[] tileSize, long[] padding) {
+		long imageVoxels = 1;
+		long inferenceVoxels = 1;
+		for (int i = 0; i < dims.length; i++) {
+			imageVoxels *= dims[i];
+			inferenceVoxels *= tiling[i] * (tileSize[i] + 2 * padding[i]);
+		}
+		return new TilingOverhead(tiling.clone(), tileSize.clone(), padding.clone(), imageVoxels, inferenceVoxels);
+	}
+
+	/**
+	 * Estimates the overhead of a tiling before the tiled input is created, respecting the min and step of each axis.
+	 */
+	public static TilingOverhead estimate(InputImageNode input, long[] dims, long[] tiling, long[] padding) {
+		long[] tileSize = new long[dims.length];
+		for (int i = 0; i < dims.length; i++) {
+			ModelZooAxis axis = input.getDataAxis(i);
+			if (axis.getTiling() == TilingAction.NO_TILING) {
+				tileSize[i] = dims[i] / tiling[i];
+			} else {
+				tileSize[i] = TiledImageDataReference.getTileSize(dims[i], tiling[i], axis);
+			}
+		}
+		return compute(dims, tiling, tileSize, padding);
+	}
+
+	public long[] getTiling() {
+		return tiling.clone();
+	}
+
+	public long[] getTileSize() {
+		return tileSize.clone();
+	}
+
+	public long[] getPadding() {
+		return padding.clone();
+	}
+
+	public long getImageVoxels() {
+		return imageVoxels;
+	}
+
+	/**
+	 * @return the number of voxels passed to the model for all tiles
+	 */
+	public long getInferenceVoxels() {
+		return inferenceVoxels;
+	}
+
+	public long getRedundantVoxels() {
+		return Math.max(0, inferenceVoxels - imageVoxels);
+	}
+
+	/**
+	 * @return the fraction of predicted voxels which are padding or expansion, not part of the input
+	 */
+	public double getRedundantFraction() {
+		return inferenceVoxels == 0 ? 0 : getRedundantVoxels() / (double) inferenceVoxels;
+	}
+
+	@Override
+	public String toString() {
+		return Arrays.toString(tiling) + " tile(s) of size " + Arrays.toString(tileSize) + " with padding " + Arrays.toString(padding)
+				+ ", " + String.format("%.1f", getRedundantFraction() * 100) + "% redundant voxels";
+	}
+}
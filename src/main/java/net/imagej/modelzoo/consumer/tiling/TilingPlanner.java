@@ -0,0 +1,231 @@
+/*-
+ * #%L
+ * This is the bioimage.io modelzoo library for ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2020 Center for Systems Biology Dresden
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imagej.modelzoo.consumer.tiling;
+
+import net.imagej.modelzoo.consumer.model.node.ImageDataReference;
+import net.imagej.modelzoo.consumer.model.node.InputImageNode;
+import net.imagej.modelzoo.consumer.model.node.ModelZooAxis;
+import net.imagej.modelzoo.consumer.model.node.OutputImageNode;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.util.Intervals;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Chooses the number of tiles and the batch size of a tiled prediction so that the estimated memory
+ * needed for predicting a single batch fits a given budget, instead of finding a working configuration
+ * by running into out of memory errors. Chosen configurations are remembered per model and input shape.
+ */
+public class TilingPlanner {
+
+	/**
+	 * Configuration of a tiled prediction
+	 */
+	public static class Plan {
+		private final int numberOfTiles;
+		private final int batchSize;
+		private final int tilesPerBatch;
+		private final long estimatedBytes;
+
+		public Plan(int numberOfTiles, int batchSize, int tilesPerBatch, long estimatedBytes) {
+			this.numberOfTiles = numberOfTiles;
+			this.batchSize = batchSize;
+			this.tilesPerBatch = tilesPerBatch;
+			this.estimatedBytes = estimatedBytes;
+		}
+
+		public int getNumberOfTiles() {
+			return numberOfTiles;
+		}
+
+		public int getBatchSize() {
+			return batchSize;
+		}
+
+		public int getTilesPerBatch() {
+			return tilesPerBatch;
+		}
+
+		/**
+		 * @return estimated memory needed for predicting a single batch of tiles
+		 */
+		public long getEstimatedBytes() {
+			return estimatedBytes;
+		}
+
+		@Override
+		public String toString() {
+			return numberOfTiles + " tile(s), batch size " + batchSize + ", " + tilesPerBatch
+					+ " tile(s) per batch, ~" + (estimatedBytes / (1024 * 1024)) + " MB per batch";
+		}
+	}
+
+	// bytes per element of the float tensors passed to the model
+	private static final int tensorBytes = 4;
+
+	private final Map<String, Plan> plans = new ConcurrentHashMap<>();
+	private double workingMemoryFactor = 4;
+
+	/**
+	 * @param factor How much memory the model needs while predicting, relative to the size of its input and output tensors
+	 */
+	public void setWorkingMemoryFactor(double factor) {
+		this.workingMemoryFactor = factor;
+	}
+
+	public double getWorkingMemoryFactor() {
+		return workingMemoryFactor;
+	}
+
+	/**
+	 * @return the largest batch with the fewest tiles whose estimated memory fits the budget,
+	 * or the smallest possible configuration in case none fits
+	 */
+	public Plan plan(InputImageNode input, List<OutputImageNode> outputs, long memoryBudget, int maxBatchSize, int maxTilesPerBatch) {
+		long[] dims = Intervals.dimensionsAsLongArray(input.getData().getData());
+		long[] tiling = new long[dims.length];
+		Arrays.fill(tiling, 1);
+		Plan smallest = null;
+		int tilesMin = 1;
+		while (true) {
+			tiling = TiledImageDataReference.computeTiling(input, dims, tiling, tilesMin);
+			int tiles = (int) product(tiling);
+			for (int tilesPerBatch = Math.max(1, maxTilesPerBatch); tilesPerBatch >= 1; tilesPerBatch /= 2) {
+				for (int batchSize = Math.max(1, maxBatchSize); batchSize >= 1; batchSize /= 2) {
+					long bytes = estimateBytes(input, outputs, dims, tiling, batchSize, tilesPerBatch);
+					Plan plan = new Plan(tiles, batchSize, tilesPerBatch, bytes);
+					if (bytes <= memoryBudget) return plan;
+					if (smallest == null || bytes < smallest.getEstimatedBytes()) smallest = plan;
+				}
+			}
+			// stop once the image cannot be split any further
+			if (tiles < tilesMin) break;
+			tilesMin = tiles + 1;
+		}
+		return smallest;
+	}
+
+	/**
+	 * @return estimated memory needed for predicting a single batch with the given configuration
+	 */
+	public long estimateBytes(InputImageNode input, List<OutputImageNode> outputs, int numberOfTiles, int batchSize, int tilesPerBatch) {
+		long[] dims = Intervals.dimensionsAsLongArray(input.getData().getData());
+		long[] tiling = new long[dims.length];
+		Arrays.fill(tiling, 1);
+		tiling = TiledImageDataReference.computeTiling(input, dims, tiling, numberOfTiles);
+		return estimateBytes(input, outputs, dims, tiling, batchSize, tilesPerBatch);
+	}
+
+	private long estimateBytes(InputImageNode input, List<OutputImageNode> outputs, long[] dims, long[] tiling, int batchSize, int tilesPerBatch) {
+		long[] padding = TiledImageDataReference.getPadding(input, tiling, DefaultTiling.defaultHalo);
+		long[] tileDims = new long[dims.length];
+		for (int i = 0; i < dims.length; i++) {
+			ModelZooAxis axis = input.getDataAxis(i);
+			if (axis.getTiling() == TilingAction.TILE_WITH_PADDING) {
+				tileDims[i] = TiledImageDataReference.getTileSize(dims[i], tiling[i], axis) + 2 * padding[i];
+			} else if (axis.getTiling() == TilingAction.TILE_WITHOUT_PADDING) {
+				tileDims[i] = Math.min(batchSize, dims[i]) * tilesPerBatch;
+			} else {
+				tileDims[i] = dims[i];
+			}
+		}
+		// the input tile is copied into a tensor
+		long bytes = product(tileDims) * (bytesPerPixel(input.getData(), tensorBytes) + tensorBytes);
+		for (OutputImageNode output : outputs) {
+			// the output tensor is copied into an image
+			bytes += outputPixels(input, output, tileDims) * (bytesPerPixel(output.getData(), tensorBytes) + tensorBytes);
+		}
+		return (long) (bytes * workingMemoryFactor);
+	}
+
+	private static long outputPixels(InputImageNode input, OutputImageNode output, long[] inputTileDims) {
+		if (output.getData() == null || output.getData().getData() == null) return product(inputTileDims);
+		int n = output.getData().getData().numDimensions();
+		long pixels = 1;
+		for (int i = 0; i < n; i++) {
+			ModelZooAxis outputAxis = output.getDataAxis(i);
+			Double scale = outputAxis.getScale();
+			Integer offset = outputAxis.getOffset();
+			if (scale == null) scale = 1.;
+			if (offset == null) offset = 0;
+			for (int j = 0; j < inputTileDims.length; j++) {
+				if (input.getDataAxis(j).getType().equals(outputAxis.getType())) {
+					pixels *= Math.max(1, (long) (inputTileDims[j] * scale + offset));
+					break;
+				}
+			}
+		}
+		return pixels;
+	}
+
+	private static int bytesPerPixel(ImageDataReference<?> reference, int defaultBytes) {
+		if (reference == null) return defaultBytes;
+		RealType<?> type = reference.getDataType();
+		if (type == null) return defaultBytes;
+		return Math.max(1, (type.getBitsPerPixel() + 7) / 8);
+	}
+
+	private static long product(long[] array) {
+		long rtn = 1;
+		for (long i : array) {
+			rtn *= i;
+		}
+		return rtn;
+	}
+
+	/**
+	 * @return key identifying the prediction of the given model on an input of the given dimensions
+	 */
+	public static String getKey(String modelKey, long[] inputDimensions) {
+		return modelKey + Arrays.toString(inputDimensions);
+	}
+
+	/**
+	 * @return the configuration remembered for the given key or null
+	 */
+	public Plan getRememberedPlan(String key) {
+		return plans.get(key);
+	}
+
+	public void remember(String key, Plan plan) {
+		plans.put(key, plan);
+	}
+
+	public void forget(String key) {
+		plans.remove(key);
+	}
+
+	public void clear() {
+		plans.clear();
+	}
+}
@@ -0,0 +1,65 @@
+/*-
+ * #%L
+ * This is the bioimage.io modelzoo library for ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2020 Center for Systems Biology Dresden
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imagej.modelzoo.consumer.tiling;
+
+import net.imagej.modelzoo.consumer.ModelZooPredictionOptions;
+import net.imagej.modelzoo.consumer.model.node.InputImageNode;
+import net.imagej.modelzoo.consumer.model.node.OutputImageNode;
+import org.scijava.plugin.SciJavaPlugin;
+
+import java.util.List;
+
+/**
+ * Decides how an input image gets split into tiles for prediction.
+ * Strategies are discovered as plugins and selected by name via {@link ModelZooPredictionOptions#tilingStrategy(String)}.
+ */
+public interface TilingStrategy extends SciJavaPlugin {
+
+	/**
+	 * Called before the tiling is computed, with the options of the prediction
+	 */
+	default void setup(ModelZooPredictionOptions.Values options) {
+	}
+
+	/**
+	 * @param dims dimensions of the input image
+	 * @param tilesMin the tiling has to consist of at least this many tiles, if the axes of the input allow it
+	 * @return the number of tiles along each dimension of the input
+	 */
+	long[] computeTiling(InputImageNode input, List<OutputImageNode> outputs, long[] dims, int tilesMin);
+
+	/**
+	 * @param tiling the number of tiles along each dimension of the input
+	 * @return the padding added to both sides of each tile along each dimension of the input
+	 */
+	default long[] computePadding(InputImageNode input, long[] tiling) {
+		return TiledImageDataReference.getPadding(input, tiling, DefaultTiling.defaultHalo);
+	}
+}
@@ -38,7 +38,9 @@ import net.imagej.DatasetService;
 import net.imagej.modelzoo.DefaultModelZooArchive;
 import net.imagej.modelzoo.ImageTensorSample;
 import net.imagej.modelzoo.ModelZooArchive;
+import net.imagej.modelzoo.ModelZooService;
 import net.imagej.modelzoo.consumer.model.TensorSample;
+import net.imagej.modelzoo.metrics.ModelZooMetrics;
 import net.imagej.modelzoo.specification.ImageJModelSpecification;
 import net.imglib2.RandomAccessibleInterval;
 import org.jetbrains.annotations.NotNull;
@@ -88,12 +90,22 @@ public class ModelZooIOPlugin extends AbstractIOPlugin<ModelZooArchive> {
 	@Parameter
 	private DatasetService datasetService;
 
+	@Parameter(required = false)
+	private ModelZooService modelZooService;
+
 	// TODO remove when compatible with scifio 0.41.2
 	@Parameter
 	private DatasetIOService datasetIOService;
 
 	@Override
 	public ModelZooArchive open(Location source) throws IOException {
+		ModelZooMetrics metrics = modelZooService != null ? modelZooService.metrics() : ModelZooMetrics.disabled();
+		try (ModelZooMetrics.Timer ignored = metrics.start(ModelZooMetrics.IO_OPEN)) {
+			return openArchive(source);
+		}
+	}
+
+	private ModelZooArchive openArchive(Location source) throws IOException {
 		statusService.showStatus("Opening " + source + "..");
 
 		DefaultModelZooArchive archive = new DefaultModelZooArchive();
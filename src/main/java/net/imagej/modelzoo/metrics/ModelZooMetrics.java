@@ -0,0 +1,213 @@
+/*-
+ * #%L
+ * This is the bioimage.io modelzoo library for ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2020 Center for Systems Biology Dresden
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imagej.modelzoo.metrics;
+
+import com.google.gson.GsonBuilder;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects timings (as {@link TimingHistogram}s) and counters of the prediction stages.
+ * Measurements accumulate until {@link #reset()} is called and can be written as JSON or CSV.
+ * Additional {@link ModelZooMetricsListener}s get notified about each measurement.
+ */
+public class ModelZooMetrics {
+
+	public static final String LOAD_MODEL = "prediction.loadModel";
+	public static final String WARM_UP = "prediction.warmUp";
+	public static final String PREPROCESSING = "prediction.preprocessing";
+	public static final String EXECUTE_PREDICTION = "prediction.executePrediction";
+	public static final String POSTPROCESSING = "prediction.postprocessing";
+	public static final String CREATE_OUTPUT = "prediction.createOutput";
+	public static final String TILE_PREPARE = "tile.prepare";
+	public static final String TILE_INFER = "tile.infer";
+	public static final String TILE_WRITE_BACK = "tile.writeBack";
+	public static final String EXECUTE_GRAPH = "tensorflow.executeGraph";
+	public static final String IO_OPEN = "io.open";
+
+	public static final String PREDICTIONS = "predictions";
+	public static final String TILES = "tiles";
+	public static final String OOM_RETRIES = "oomRetries";
+	public static final String BYTES_TO_TENSOR = "bytesToTensor";
+	public static final String BYTES_FROM_TENSOR = "bytesFromTensor";
+	public static final String TENSOR_BUFFER_ALLOCATIONS = "tensorflow.bufferAllocations";
+	public static final String TENSOR_BUFFER_REUSES = "tensorflow.bufferReuses";
+	public static final String IMAGE_VOXELS = "tiling.imageVoxels";
+	public static final String INFERENCE_VOXELS = "tiling.inferenceVoxels";
+
+	private static final ModelZooMetrics DISABLED = new ModelZooMetrics(false);
+
+	private final boolean enabled;
+	private final Map<String, TimingHistogram> timings = new ConcurrentHashMap<>();
+	private final Map<String, AtomicLong> counters = new ConcurrentHashMap<>();
+	private final List<ModelZooMetricsListener> listeners = new CopyOnWriteArrayList<>();
+
+	public ModelZooMetrics() {
+		this(true);
+	}
+
+	private ModelZooMetrics(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 * @return instance ignoring all measurements, for components running without a {@link net.imagej.modelzoo.ModelZooService}
+	 */
+	public static ModelZooMetrics disabled() {
+		return DISABLED;
+	}
+
+	/**
+	 * Measures the time until the returned timer is closed, meant to be used with try-with-resources.
+	 */
+	public Timer start(String metric) {
+		return new Timer(metric);
+	}
+
+	public void time(String metric, long nanos) {
+		if (!enabled) return;
+		timings.computeIfAbsent(metric, key -> new TimingHistogram()).record(nanos);
+		for (ModelZooMetricsListener listener : listeners) {
+			listener.timingRecorded(metric, nanos);
+		}
+	}
+
+	public void count(String metric, long delta) {
+		if (!enabled) return;
+		long value = counters.computeIfAbsent(metric, key -> new AtomicLong()).addAndGet(delta);
+		for (ModelZooMetricsListener listener : listeners) {
+			listener.counterIncremented(metric, delta, value);
+		}
+	}
+
+	public void addListener(ModelZooMetricsListener listener) {
+		listeners.add(listener);
+	}
+
+	public void removeListener(ModelZooMetricsListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * @return the histogram of the given metric or null if nothing was recorded
+	 */
+	public TimingHistogram getTiming(String metric) {
+		return timings.get(metric);
+	}
+
+	public long getCount(String metric) {
+		AtomicLong counter = counters.get(metric);
+		return counter == null ? 0 : counter.get();
+	}
+
+	public void reset() {
+		timings.clear();
+		counters.clear();
+	}
+
+	/**
+	 * Writes all metrics to the given file, as CSV if the file name ends with {@code .csv}, as JSON otherwise.
+	 */
+	public void dump(Path file) throws IOException {
+		if (file.getParent() != null) Files.createDirectories(file.getParent());
+		try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			if (file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".csv")) writeCSV(writer);
+			else writeJSON(writer);
+		}
+	}
+
+	public void writeJSON(Writer writer) {
+		Map<String, Object> timingsJSON = new LinkedHashMap<>();
+		new TreeMap<>(timings).forEach((metric, histogram) -> {
+			Map<String, Object> values = new LinkedHashMap<>();
+			values.put("count", histogram.getCount());
+			values.put("total_ms", millis(histogram.getTotalNanos()));
+			values.put("mean_ms", millis(histogram.getMeanNanos()));
+			values.put("min_ms", millis(histogram.getMinNanos()));
+			values.put("p50_ms", millis(histogram.getPercentileNanos(50)));
+			values.put("p90_ms", millis(histogram.getPercentileNanos(90)));
+			values.put("p99_ms", millis(histogram.getPercentileNanos(99)));
+			values.put("max_ms", millis(histogram.getMaxNanos()));
+			timingsJSON.put(metric, values);
+		});
+		Map<String, Object> countersJSON = new LinkedHashMap<>();
+		new TreeMap<>(counters).forEach((metric, value) -> countersJSON.put(metric, value.get()));
+		Map<String, Object> json = new LinkedHashMap<>();
+		json.put("timings", timingsJSON);
+		json.put("counters", countersJSON);
+		new GsonBuilder().setPrettyPrinting().create().toJson(json, writer);
+	}
+
+	public void writeCSV(Writer writer) throws IOException {
+		writer.write("metric,type,count,total_ms,mean_ms,min_ms,p50_ms,p90_ms,p99_ms,max_ms\n");
+		for (Map.Entry<String, TimingHistogram> entry : new TreeMap<>(timings).entrySet()) {
+			TimingHistogram histogram = entry.getValue();
+			writer.write(String.format(Locale.ROOT, "%s,timing,%d,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f\n",
+					entry.getKey(), histogram.getCount(),
+					millis(histogram.getTotalNanos()), millis(histogram.getMeanNanos()), millis(histogram.getMinNanos()),
+					millis(histogram.getPercentileNanos(50)), millis(histogram.getPercentileNanos(90)),
+					millis(histogram.getPercentileNanos(99)), millis(histogram.getMaxNanos())));
+		}
+		for (Map.Entry<String, AtomicLong> entry : new TreeMap<>(counters).entrySet()) {
+			writer.write(entry.getKey() + ",counter," + entry.getValue().get() + ",,,,,,,\n");
+		}
+	}
+
+	private static double millis(double nanos) {
+		return nanos / 1e6;
+	}
+
+	public class Timer implements AutoCloseable {
+
+		private final String metric;
+		private final long start;
+
+		private Timer(String metric) {
+			this.metric = metric;
+			this.start = enabled ? System.nanoTime() : 0;
+		}
+
+		@Override
+		public void close() {
+			if (enabled) time(metric, System.nanoTime() - start);
+		}
+	}
+}
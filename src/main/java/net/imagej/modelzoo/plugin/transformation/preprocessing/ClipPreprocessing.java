@@ -33,11 +33,14 @@ import net.imagej.modelzoo.consumer.model.node.DefaultImageDataReference;
 import net.imagej.modelzoo.consumer.model.node.ImageDataReference;
 import net.imagej.modelzoo.consumer.model.node.processor.DefaultImageNodePreprocessor;
 import net.imagej.modelzoo.consumer.model.node.processor.NodePreprocessor;
+import net.imagej.modelzoo.consumer.preprocessing.PointwiseTransform;
+import net.imagej.modelzoo.consumer.preprocessing.PointwiseView;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.converter.Converter;
 import net.imglib2.converter.Converters;
 import net.imglib2.type.NativeType;
 import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.real.FloatType;
 import org.scijava.plugin.Plugin;
 
 @Plugin(type = NodePreprocessor.class, name = ClipTransformation.name)
@@ -47,7 +50,11 @@ public class ClipPreprocessing extends DefaultImageNodePreprocessor<ClipTransfor
 	private Number max;
 
 	@Override
-	protected <I extends RealType<I> & NativeType<I>, O extends RealType<O> & NativeType<O>> ImageDataReference<O> process(ImageDataReference<I> in, ImageDataReference<O> outType) {
+	protected <I extends RealType<I> & NativeType<I>, O extends RealType<O> & NativeType<O>> ImageDataReference<?> process(ImageDataReference<I> in, ImageDataReference<O> outType) {
+		if(outType.getDataType() instanceof FloatType) {
+			PointwiseTransform transform = PointwiseTransform.clamp(min.doubleValue(), max.doubleValue());
+			return new DefaultImageDataReference<>(PointwiseView.create(in.getData(), transform), new FloatType());
+		}
 		Converter<? super I, ? super O> converter = (input, output) -> {
 			output.setReal(Math.max(min.doubleValue(), Math.min(input.getRealDouble(), max.doubleValue())));
 		};
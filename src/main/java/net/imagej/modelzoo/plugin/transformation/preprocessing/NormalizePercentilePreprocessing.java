@@ -29,20 +29,18 @@
 package net.imagej.modelzoo.plugin.transformation.preprocessing;
 
 import io.bioimage.specification.transformation.PercentileTransformation;
+import net.imagej.modelzoo.consumer.ModelZooPredictionOptions;
 import net.imagej.modelzoo.consumer.model.node.DefaultImageDataReference;
 import net.imagej.modelzoo.consumer.model.node.ImageDataReference;
 import net.imagej.modelzoo.consumer.model.node.processor.DefaultImageNodePreprocessor;
 import net.imagej.modelzoo.consumer.model.node.processor.NodePreprocessor;
+import net.imagej.modelzoo.consumer.preprocessing.PointwiseTransform;
+import net.imagej.modelzoo.consumer.preprocessing.PointwiseView;
 import net.imagej.ops.OpService;
-import net.imglib2.Cursor;
-import net.imglib2.IterableInterval;
 import net.imglib2.RandomAccessibleInterval;
-import net.imglib2.converter.Converter;
-import net.imglib2.converter.Converters;
 import net.imglib2.type.NativeType;
 import net.imglib2.type.numeric.RealType;
 import net.imglib2.type.numeric.real.FloatType;
-import net.imglib2.util.Util;
 import org.scijava.plugin.Parameter;
 import org.scijava.plugin.Plugin;
 
@@ -65,6 +63,16 @@ public class NormalizePercentilePreprocessing
 
 	private boolean clip = false;
 
+	private double percentileAccuracy = ModelZooPredictionOptions.options().values.percentileAccuracy();
+	private boolean exactPercentiles = ModelZooPredictionOptions.options().values.exactPercentiles();
+
+	@Override
+	public void run(ModelZooPredictionOptions.Values options) {
+		percentileAccuracy = options.percentileAccuracy();
+		exactPercentiles = options.exactPercentiles();
+		super.run(options);
+	}
+
 	@Override
 	protected <I extends RealType<I> & NativeType<I>, O extends RealType<O> & NativeType<O>> ImageDataReference<FloatType> process(ImageDataReference<I> in, ImageDataReference<O> outType) {
 
@@ -73,45 +81,17 @@ public class NormalizePercentilePreprocessing
 		else factor = (maxDestVal - minDestVal) / (resValues[1] - resValues[0]);
 		minVal = resValues[0];
 
-		Converter<? super I, FloatType> converter = (input, output) -> {
-			output.set(normalize(input, minDestVal, maxDestVal));
-		};
-		RandomAccessibleInterval<FloatType> converted = Converters.convert(in.getData(), converter, new FloatType());
-		return new DefaultImageDataReference<>(converted, new FloatType());
-	}
-
-	private <T extends RealType<T>> float normalize( final T val, float min, float max ) {
-		if ( clip ) { return Math.max(
-				min,
-				Math.min( max, ( val.getRealFloat() - minVal ) * factor + min ) ); }
-		return Math.max( 0, ( val.getRealFloat() - minVal ) * factor + min );
+		PointwiseTransform transform = PointwiseTransform.affine(factor, minDestVal - minVal * factor)
+				.andThen(clip ? PointwiseTransform.clamp(minDestVal, maxDestVal) : PointwiseTransform.clamp(0, Double.POSITIVE_INFINITY));
+		return new DefaultImageDataReference<>(PointwiseView.create(in.getData(), transform), new FloatType());
 	}
 
+	/**
+	 * Computes the percentiles without copying the image, exactly unless approximated
+	 * percentiles of floating point types are requested (see {@link StreamingPercentiles}).
+	 */
 	public <T extends RealType<T>> float[] computePercentiles(RandomAccessibleInterval<T> src, float[] percentiles) {
-		final Cursor< T > cursor = ((IterableInterval)src).cursor();
-		int items = 1;
-		int i = 0;
-		for ( ; i < src.numDimensions(); i++ ) {
-			items *= src.dimension( i );
-		}
-		final float[] values = new float[ items ];
-		i = 0;
-		while ( cursor.hasNext() ) {
-			cursor.fwd();
-			values[ i ] = cursor.get().getRealFloat();
-			i++;
-		}
-
-		Util.quicksort( values );
-
-		final float[] res = new float[ percentiles.length ];
-		for ( i = 0; i < percentiles.length; i++ ) {
-			res[ i ] = values[ Math.min(
-					values.length - 1,
-					Math.max( 0, Math.round( ( values.length - 1 ) * percentiles[ i ] / 100.f ) ) ) ];
-		}
-
-		return res;
+		return StreamingPercentiles.compute(src, percentiles, percentileAccuracy, exactPercentiles);
 	}
 
 	@Override
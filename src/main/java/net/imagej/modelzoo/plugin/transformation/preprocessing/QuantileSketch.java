@@ -0,0 +1,178 @@
+/*-
+ * #%L
+ * This is the bioimage.io modelzoo library for ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2020 Center for Systems Biology Dresden
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imagej.modelzoo.plugin.transformation.preprocessing;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * KLL quantile sketch over float values. Memory is bounded by roughly three times
+ * the accuracy parameter k, independent of the number of values. Sketches of
+ * disjoint parts of an image can be merged.
+ */
+public class QuantileSketch {
+
+	private static final double CAPACITY_DECAY = 2. / 3.;
+	private static final int MIN_K = 8;
+	private static final int MAX_K = 1 << 16;
+
+	private final int k;
+	private float[][] levels = new float[0][];
+	private int[] sizes = new int[0];
+	private final Random random = new Random(42);
+	private long count = 0;
+	private int numRetained = 0;
+	private int maxRetained;
+
+	public QuantileSketch(int k) {
+		this.k = Math.max(MIN_K, Math.min(MAX_K, k));
+		addLevel();
+		maxRetained = computeMaxRetained();
+	}
+
+	/**
+	 * @param relativeError maximal rank error as fraction of the number of values
+	 * @return a sketch whose rank error is approximately bounded by {@code relativeError}
+	 */
+	public static QuantileSketch withRelativeError(double relativeError) {
+		if(relativeError <= 0) return new QuantileSketch(MAX_K);
+		// empirical relation between k and the normalized rank error of KLL sketches
+		return new QuantileSketch((int) Math.ceil(Math.pow(2.296 / relativeError, 1. / 0.9723)));
+	}
+
+	public int getK() {
+		return k;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public void update(float value) {
+		add(0, value);
+		count++;
+		if(numRetained >= maxRetained) compress();
+	}
+
+	public void merge(QuantileSketch other) {
+		while(levels.length < other.levels.length) addLevel();
+		for (int h = 0; h < other.levels.length; h++) {
+			float[] items = other.levels[h];
+			int size = other.sizes[h];
+			for (int i = 0; i < size; i++) add(h, items[i]);
+		}
+		count += other.count;
+		maxRetained = computeMaxRetained();
+		while(numRetained >= maxRetained) compress();
+	}
+
+	/**
+	 * @param rank zero based rank of the requested value in the sorted sequence of all values
+	 * @return approximation of the value with the given rank
+	 */
+	public float getValueAtRank(long rank) {
+		if(count == 0) return Float.NaN;
+		int numLevels = levels.length;
+		float[][] sorted = new float[numLevels][];
+		int[] positions = new int[numLevels];
+		for (int h = 0; h < numLevels; h++) {
+			sorted[h] = Arrays.copyOf(levels[h], sizes[h]);
+			Arrays.sort(sorted[h]);
+		}
+		float last = Float.NaN;
+		long weight = 0;
+		while(true) {
+			int next = -1;
+			for (int h = 0; h < numLevels; h++) {
+				if(positions[h] < sorted[h].length
+						&& (next < 0 || sorted[h][positions[h]] < sorted[next][positions[next]])) {
+					next = h;
+				}
+			}
+			if(next < 0) return last;
+			last = sorted[next][positions[next]++];
+			weight += 1L << next;
+			if(weight > rank) return last;
+		}
+	}
+
+	private void compress() {
+		int numLevels = levels.length;
+		for (int h = 0; h < numLevels; h++) {
+			int size = sizes[h];
+			if(size < levelCapacity(h, numLevels)) continue;
+			if(h + 1 == levels.length) {
+				addLevel();
+				maxRetained = computeMaxRetained();
+			}
+			float[] items = levels[h];
+			Arrays.sort(items, 0, size);
+			// an odd item stays on this level so that the total weight is preserved
+			int start = size % 2;
+			int offset = random.nextBoolean() ? 1 : 0;
+			for (int i = start + offset; i < size; i += 2) {
+				add(h + 1, items[i]);
+			}
+			numRetained -= size - start;
+			sizes[h] = start;
+			return;
+		}
+	}
+
+	private void add(int level, float value) {
+		float[] items = levels[level];
+		int size = sizes[level];
+		if(size == items.length) {
+			items = Arrays.copyOf(items, items.length * 2);
+			levels[level] = items;
+		}
+		items[size] = value;
+		sizes[level] = size + 1;
+		numRetained++;
+	}
+
+	private void addLevel() {
+		levels = Arrays.copyOf(levels, levels.length + 1);
+		levels[levels.length - 1] = new float[MIN_K];
+		sizes = Arrays.copyOf(sizes, sizes.length + 1);
+	}
+
+	private int levelCapacity(int level, int numLevels) {
+		return Math.max(2, (int) Math.ceil(k * Math.pow(CAPACITY_DECAY, numLevels - 1 - level)));
+	}
+
+	private int computeMaxRetained() {
+		int res = 0;
+		int numLevels = levels.length;
+		for (int h = 0; h < numLevels; h++) {
+			res += levelCapacity(h, numLevels);
+		}
+		return res;
+	}
+}
@@ -0,0 +1,288 @@
+/*-
+ * #%L
+ * This is the bioimage.io modelzoo library for ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2020 Center for Systems Biology Dresden
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imagej.modelzoo.plugin.transformation.preprocessing;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.cell.AbstractCellImg;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.parallel.Parallelization;
+import net.imglib2.parallel.TaskExecutor;
+import net.imglib2.type.numeric.IntegerType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.util.Intervals;
+import net.imglib2.util.Util;
+import net.imglib2.view.Views;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Computes percentiles of images of arbitrary size without copying the pixels.
+ * Images are processed in blocks (the cells of a {@link AbstractCellImg} or slabs of other images)
+ * in parallel using the {@link Parallelization} context of the caller.
+ * <p>
+ * The exact mode narrows down the requested ranks with fixed size histograms (one pass for
+ * integer types up to 16 bit, few passes otherwise). The approximate mode reads the image
+ * once and merges per-task {@link QuantileSketch}es.
+ * </p>
+ * The rank of a percentile p in an image with n pixels is {@code round((n - 1) * p / 100)},
+ * as if the float values of all pixels were sorted.
+ */
+public class StreamingPercentiles {
+
+	private static final int NUM_BINS = 1 << 16;
+
+	/**
+	 * Computes percentiles exactly for integer types and, unless {@code exact} is set,
+	 * approximately for all other types.
+	 */
+	public static <T extends RealType<T>> float[] compute(RandomAccessibleInterval<T> src, float[] percentiles, double relativeError, boolean exact) {
+		if(exact || isIntegerType(Util.getTypeFromInterval(src))) {
+			return computeExact(src, percentiles);
+		}
+		return computeApproximate(src, percentiles, relativeError);
+	}
+
+	public static <T extends RealType<T>> float[] computeExact(RandomAccessibleInterval<T> src, float[] percentiles) {
+		boolean integerKeys = isIntegerType(Util.getTypeFromInterval(src));
+		List<RandomAccessibleInterval<T>> blocks = splitIntoBlocks(src);
+
+		KeyRange range = merge(accumulate(blocks, KeyRange::new, (keyRange, block) -> {
+			Cursor<T> cursor = Views.flatIterable(block).cursor();
+			while(cursor.hasNext()) keyRange.add(toKey(cursor.next(), integerKeys));
+		}));
+		float[] res = new float[percentiles.length];
+		if(range.count == 0) return res;
+
+		int numPercentiles = percentiles.length;
+		long[] ranks = new long[numPercentiles];
+		long[] lo = new long[numPercentiles];
+		long[] hi = new long[numPercentiles];
+		long[] below = new long[numPercentiles];
+		for (int i = 0; i < numPercentiles; i++) {
+			ranks[i] = rank(range.count, percentiles[i]);
+			lo[i] = range.min;
+			hi[i] = range.max;
+		}
+
+		while(true) {
+			// collect the distinct key windows which still need to be narrowed down
+			List<long[]> windows = new ArrayList<>();
+			int[] windowIndex = new int[numPercentiles];
+			for (int i = 0; i < numPercentiles; i++) {
+				windowIndex[i] = -1;
+				if(lo[i] == hi[i]) continue;
+				for (int w = 0; w < windows.size(); w++) {
+					if(windows.get(w)[0] == lo[i] && windows.get(w)[1] == hi[i]) windowIndex[i] = w;
+				}
+				if(windowIndex[i] < 0) {
+					windowIndex[i] = windows.size();
+					windows.add(new long[]{lo[i], hi[i], binWidth(lo[i], hi[i])});
+				}
+			}
+			if(windows.isEmpty()) break;
+
+			long[][] histograms = mergeHistograms(accumulate(blocks, () -> createHistograms(windows), (hist, block) -> {
+				Cursor<T> cursor = Views.flatIterable(block).cursor();
+				while(cursor.hasNext()) {
+					long key = toKey(cursor.next(), integerKeys);
+					for (int w = 0; w < hist.length; w++) {
+						long[] window = windows.get(w);
+						if(key >= window[0] && key <= window[1]) hist[w][(int) ((key - window[0]) / window[2])]++;
+					}
+				}
+			}));
+
+			for (int i = 0; i < numPercentiles; i++) {
+				if(windowIndex[i] < 0) continue;
+				long[] histogram = histograms[windowIndex[i]];
+				long binWidth = windows.get(windowIndex[i])[2];
+				int bin = 0;
+				while(bin < histogram.length - 1 && below[i] + histogram[bin] <= ranks[i]) {
+					below[i] += histogram[bin];
+					bin++;
+				}
+				lo[i] += bin * binWidth;
+				hi[i] = Math.min(hi[i], lo[i] + binWidth - 1);
+			}
+		}
+
+		for (int i = 0; i < numPercentiles; i++) {
+			res[i] = fromKey(lo[i], integerKeys);
+		}
+		return res;
+	}
+
+	public static <T extends RealType<T>> float[] computeApproximate(RandomAccessibleInterval<T> src, float[] percentiles, double relativeError) {
+		List<QuantileSketch> sketches = accumulate(splitIntoBlocks(src), () -> QuantileSketch.withRelativeError(relativeError), (sketch, block) -> {
+			Cursor<T> cursor = Views.flatIterable(block).cursor();
+			while(cursor.hasNext()) sketch.update(cursor.next().getRealFloat());
+		});
+		QuantileSketch sketch = sketches.get(0);
+		for (int i = 1; i < sketches.size(); i++) {
+			sketch.merge(sketches.get(i));
+		}
+		float[] res = new float[percentiles.length];
+		if(sketch.getCount() == 0) return res;
+		for (int i = 0; i < percentiles.length; i++) {
+			res[i] = sketch.getValueAtRank(rank(sketch.getCount(), percentiles[i]));
+		}
+		return res;
+	}
+
+	static <T> List<RandomAccessibleInterval<T>> splitIntoBlocks(RandomAccessibleInterval<T> src) {
+		List<RandomAccessibleInterval<T>> res = new ArrayList<>();
+		int n = src.numDimensions();
+		if(src instanceof AbstractCellImg) {
+			CellGrid grid = ((AbstractCellImg<?, ?, ?, ?>) src).getCellGrid();
+			long numCells = Intervals.numElements(grid.getGridDimensions());
+			long[] cellMin = new long[n];
+			int[] cellDims = new int[n];
+			for (long i = 0; i < numCells; i++) {
+				grid.getCellDimensions(i, cellMin, cellDims);
+				long[] cellMax = new long[n];
+				for (int d = 0; d < n; d++) {
+					cellMax[d] = cellMin[d] + cellDims[d] - 1;
+				}
+				res.add(Views.interval(src, cellMin.clone(), cellMax));
+			}
+			return res;
+		}
+		if(n == 0 || Intervals.numElements(src) == 0) {
+			res.add(src);
+			return res;
+		}
+		int splitDimension = n - 1;
+		while(splitDimension > 0 && src.dimension(splitDimension) == 1) splitDimension--;
+		long size = src.dimension(splitDimension);
+		long numBlocks = Math.min(size, Parallelization.getTaskExecutor().suggestNumberOfTasks());
+		long[] min = Intervals.minAsLongArray(src);
+		long[] max = Intervals.maxAsLongArray(src);
+		for (long i = 0; i < numBlocks; i++) {
+			long[] blockMin = min.clone();
+			long[] blockMax = max.clone();
+			blockMin[splitDimension] = src.min(splitDimension) + i * size / numBlocks;
+			blockMax[splitDimension] = src.min(splitDimension) + (i + 1) * size / numBlocks - 1;
+			res.add(Views.interval(src, blockMin, blockMax));
+		}
+		return res;
+	}
+
+	/**
+	 * Distributes the blocks onto the tasks of the current {@link TaskExecutor},
+	 * each task accumulating its blocks into one accumulator.
+	 */
+	private static <T, A> List<A> accumulate(List<RandomAccessibleInterval<T>> blocks, Supplier<A> supplier, BiConsumer<A, RandomAccessibleInterval<T>> consumer) {
+		TaskExecutor executor = Parallelization.getTaskExecutor();
+		int numTasks = Math.max(1, Math.min(blocks.size(), executor.suggestNumberOfTasks()));
+		List<Integer> tasks = new ArrayList<>();
+		for (int i = 0; i < numTasks; i++) {
+			tasks.add(i);
+		}
+		return executor.forEachApply(tasks, task -> {
+			A accumulator = supplier.get();
+			for (int i = task; i < blocks.size(); i += numTasks) {
+				consumer.accept(accumulator, blocks.get(i));
+			}
+			return accumulator;
+		});
+	}
+
+	private static long rank(long count, float percentile) {
+		return Math.min(count - 1, Math.max(0, Math.round((count - 1) * (double) percentile / 100.)));
+	}
+
+	private static long binWidth(long lo, long hi) {
+		long range = hi - lo + 1;
+		return (range + NUM_BINS - 1) / NUM_BINS;
+	}
+
+	private static boolean isIntegerType(RealType<?> type) {
+		return type instanceof IntegerType && type.getBitsPerPixel() <= 32;
+	}
+
+	private static <T extends RealType<T>> long toKey(T value, boolean integerKeys) {
+		if(integerKeys) return ((IntegerType<?>) value).getIntegerLong();
+		// flip the bits of negative values so that the integer order matches the float order
+		int bits = Float.floatToIntBits(value.getRealFloat());
+		return bits ^ ((bits >> 31) & 0x7fffffff);
+	}
+
+	private static float fromKey(long key, boolean integerKeys) {
+		if(integerKeys) return key;
+		int bits = (int) key;
+		return Float.intBitsToFloat(bits ^ ((bits >> 31) & 0x7fffffff));
+	}
+
+	private static long[][] createHistograms(List<long[]> windows) {
+		long[][] res = new long[windows.size()][];
+		for (int w = 0; w < res.length; w++) {
+			long[] window = windows.get(w);
+			res[w] = new long[(int) ((window[1] - window[0]) / window[2] + 1)];
+		}
+		return res;
+	}
+
+	private static long[][] mergeHistograms(List<long[][]> histograms) {
+		long[][] res = histograms.get(0);
+		for (int i = 1; i < histograms.size(); i++) {
+			for (int w = 0; w < res.length; w++) {
+				for (int bin = 0; bin < res[w].length; bin++) {
+					res[w][bin] += histograms.get(i)[w][bin];
+				}
+			}
+		}
+		return res;
+	}
+
+	private static KeyRange merge(List<KeyRange> ranges) {
+		KeyRange res = new KeyRange();
+		for (KeyRange range : ranges) {
+			res.count += range.count;
+			res.min = Math.min(res.min, range.min);
+			res.max = Math.max(res.max, range.max);
+		}
+		return res;
+	}
+
+	private static class KeyRange {
+		long count = 0;
+		long min = Long.MAX_VALUE;
+		long max = Long.MIN_VALUE;
+
+		void add(long key) {
+			count++;
+			if(key < min) min = key;
+			if(key > max) max = key;
+		}
+	}
+}
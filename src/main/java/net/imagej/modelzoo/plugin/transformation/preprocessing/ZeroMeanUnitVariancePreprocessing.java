@@ -33,8 +33,8 @@ import net.imagej.modelzoo.consumer.model.node.DefaultImageDataReference;
 import net.imagej.modelzoo.consumer.model.node.ImageDataReference;
 import net.imagej.modelzoo.consumer.model.node.processor.DefaultImageNodePreprocessor;
 import net.imagej.modelzoo.consumer.model.node.processor.NodePreprocessor;
-import net.imglib2.converter.Converter;
-import net.imglib2.converter.Converters;
+import net.imagej.modelzoo.consumer.preprocessing.PointwiseTransform;
+import net.imagej.modelzoo.consumer.preprocessing.PointwiseView;
 import net.imglib2.type.NativeType;
 import net.imglib2.type.numeric.RealType;
 import net.imglib2.type.numeric.real.FloatType;
@@ -49,9 +49,8 @@ public class ZeroMeanUnitVariancePreprocessing extends DefaultImageNodePreproces
 
 	@Override
 	protected <I extends RealType<I> & NativeType<I>, O extends RealType<O> & NativeType<O>> ImageDataReference<FloatType> process(ImageDataReference<I> in, ImageDataReference<O> outType) {
-		Converter<? super I, FloatType> converter = (Converter<I, FloatType>) (input, output)
-				-> output.setReal((input.getRealFloat() - mean.floatValue()) / std.floatValue());
-		return new DefaultImageDataReference<>(Converters.convert(in.getData(), converter, new FloatType()), new FloatType());
+		PointwiseTransform transform = PointwiseTransform.affine(1. / std.doubleValue(), -mean.doubleValue() / std.doubleValue());
+		return new DefaultImageDataReference<>(PointwiseView.create(in.getData(), transform), new FloatType());
 	}
 
 	@Override
@@ -60,6 +60,16 @@ public class TiledView<T> extends AbstractInterval implements
 
 	private final long[] overlap;
 
+	// views of the tiles, created once per tile when it is first accessed, the array is created on the first access
+	private volatile RandomAccessibleInterval<T>[] tiles;
+
+	private final long[] strides;
+
+	private final long numTiles;
+
+	// tiles are not cached if there are more than this
+	private static final long maxCachedTiles = 1 << 12;
+
 	private TiledView(final RandomAccessibleInterval<T> source,
 	                  final long... blockSize) {
 		this(source, blockSize, new long[blockSize.length]);
@@ -80,6 +90,36 @@ public class TiledView<T> extends AbstractInterval implements
 			max[d] = (source.dimension(d) - 1) / blockSize[d];
 		}
 		this.overlap = overlap;
+		strides = new long[n];
+		long numTiles = 1;
+		for (int d = 0; d < n; ++d) {
+			strides[d] = numTiles;
+			numTiles *= max[d] + 1;
+		}
+		this.numTiles = numTiles;
+	}
+
+	/**
+	 * @return the cache of the tile views, null if there are too many tiles to cache them
+	 */
+	private RandomAccessibleInterval<T>[] getTiles() {
+		if (numTiles > maxCachedTiles) return null;
+		RandomAccessibleInterval<T>[] result = tiles;
+		if (result == null) {
+			synchronized (this) {
+				result = tiles;
+				if (result == null) {
+					result = createArray((int) numTiles);
+					tiles = result;
+				}
+			}
+		}
+		return result;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> RandomAccessibleInterval<T>[] createArray(int size) {
+		return new RandomAccessibleInterval[size];
 	}
 
 	public RandomAccessibleInterval<T> getSource() {
@@ -96,7 +136,7 @@ public class TiledView<T> extends AbstractInterval implements
 
 	@Override
 	public TiledViewRandomAccess<T> randomAccess() {
-		return new TiledViewRandomAccess<>(source, blockSize, max, overlap);
+		return new TiledViewRandomAccess<>(this, source, blockSize, max, overlap, strides);
 	}
 
 	@Override
@@ -119,13 +159,20 @@ public class TiledView<T> extends AbstractInterval implements
 
 		private final long[] tempMax;
 
-		TiledViewRandomAccess(final RandomAccessibleInterval<T> source,
-		                      final long[] blockSize, final long[] max, final long[] overlap) {
+		private final TiledView<T> view;
+
+		private final long[] strides;
+
+		TiledViewRandomAccess(final TiledView<T> view, final RandomAccessibleInterval<T> source,
+		                      final long[] blockSize, final long[] max, final long[] overlap,
+		                      final long[] strides) {
 			super(source.numDimensions());
+			this.view = view;
 			this.source = source;
 			this.blockSize = blockSize;
 			this.overlap = overlap;
 			this.max = max;
+			this.strides = strides;
 			tempMin = new long[n];
 			tempMax = new long[n];
 		}
@@ -136,12 +183,37 @@ public class TiledView<T> extends AbstractInterval implements
 			blockSize = ra.blockSize;
 			overlap = ra.overlap;
 			max = ra.max;
+			view = ra.view;
+			strides = ra.strides;
 			tempMin = ra.tempMin.clone();
 			tempMax = ra.tempMax.clone();
 		}
 
+		/**
+		 * @return the view of the current tile. Each tile view is created once and reused,
+		 * so iterating the tiles repeatedly does not allocate any new views.
+		 */
 		@Override
 		public RandomAccessibleInterval<T> get() {
+			final RandomAccessibleInterval<T>[] tiles = view.getTiles();
+			if (tiles == null) return createTile();
+			long index = 0;
+			for (int d = 0; d < n; ++d) {
+				index += position[d] * strides[d];
+			}
+			RandomAccessibleInterval<T> tile = tiles[(int) index];
+			if (tile == null) {
+				// tile views are immutable, concurrent accesses at worst create the same view twice
+				tile = createTile();
+				tiles[(int) index] = tile;
+			}
+			return tile;
+		}
+
+		/**
+		 * @return a new view of the current tile
+		 */
+		public RandomAccessibleInterval<T> createTile() {
 			for (int d = 0; d < n; ++d) {
 				tempMin[d] = position[d] * blockSize[d];
 				if (position[d] < max[d]) {
@@ -153,13 +225,6 @@ public class TiledView<T> extends AbstractInterval implements
 				tempMin[d] -= overlap[d];
 				tempMax[d] += overlap[d];
 			}
-			// TODO: [Review] Creating multiple views per call probably isn't
-			// what we want.
-			// - zeroMin: do we want to ensure zeroMin at all? if yes: see
-			// remarks at CombinedView.get() (--> RandomAccess that handles
-			// translation)
-			// - ínterval: maintain an unsafe interval view whose bounds are
-			// updated each time this.get() is called?
 			return Views.zeroMin(Views.interval(source, tempMin, tempMax));
 		}
 
@@ -0,0 +1,152 @@
+/*-
+ * #%L
+ * This is the bioimage.io modelzoo library for ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2020 Center for Systems Biology Dresden
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imagej.modelzoo;
+
+import io.bioimage.specification.ModelSpecification;
+import net.imagej.modelzoo.consumer.model.ModelZooModel;
+import net.imagej.modelzoo.consumer.model.node.ModelZooNode;
+import org.junit.Test;
+import org.scijava.io.location.Location;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ModelZooModelCacheTest {
+
+	@Test
+	public void testReuse() throws Exception {
+		ModelZooModelCache cache = new ModelZooModelCache(2);
+		ModelZooModel first = cache.acquire("a", DummyModel::new);
+		cache.release(first);
+		ModelZooModel second = cache.acquire("a", DummyModel::new);
+		assertSame(first, second);
+		assertEquals(1, ((DummyModel) first).resets);
+		assertFalse(((DummyModel) first).disposed);
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+	}
+
+	@Test
+	public void testConcurrentUsage() throws Exception {
+		ModelZooModelCache cache = new ModelZooModelCache(2);
+		ModelZooModel first = cache.acquire("a", DummyModel::new);
+		ModelZooModel second = cache.acquire("a", DummyModel::new);
+		assertNotSame(first, second);
+		cache.release(second);
+		assertTrue(((DummyModel) second).disposed);
+		cache.release(first);
+		assertFalse(((DummyModel) first).disposed);
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void testEviction() throws Exception {
+		ModelZooModelCache cache = new ModelZooModelCache(1);
+		DummyModel a = (DummyModel) cache.acquire("a", DummyModel::new);
+		cache.release(a);
+		DummyModel b = (DummyModel) cache.acquire("b", DummyModel::new);
+		assertTrue(a.disposed);
+		assertFalse(b.disposed);
+		cache.invalidate("b");
+		assertFalse(b.disposed);
+		cache.release(b);
+		assertTrue(b.disposed);
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testNotReusable() throws Exception {
+		ModelZooModelCache cache = new ModelZooModelCache(1);
+		DummyModel model = (DummyModel) cache.acquire("a", () -> new DummyModel(false));
+		cache.release(model);
+		assertTrue(model.disposed);
+		assertEquals(0, cache.size());
+	}
+
+	private static class DummyModel implements ModelZooModel {
+
+		private final boolean reusable;
+		int resets = 0;
+		boolean disposed = false;
+
+		DummyModel() {
+			this(true);
+		}
+
+		DummyModel(boolean reusable) {
+			this.reusable = reusable;
+		}
+
+		@Override
+		public void loadModel(Location location, String modelName, ModelSpecification specification) {
+		}
+
+		@Override
+		public List<ModelZooNode<?>> getInputNodes() {
+			return Collections.emptyList();
+		}
+
+		@Override
+		public List<ModelZooNode<?>> getOutputNodes() {
+			return Collections.emptyList();
+		}
+
+		@Override
+		public boolean isInitialized() {
+			return true;
+		}
+
+		@Override
+		public boolean libraryLoaded() {
+			return true;
+		}
+
+		@Override
+		public void predict() {
+		}
+
+		@Override
+		public boolean reset() {
+			resets++;
+			return reusable;
+		}
+
+		@Override
+		public void dispose() {
+			disposed = true;
+		}
+	}
+}
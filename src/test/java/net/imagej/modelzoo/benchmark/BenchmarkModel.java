@@ -0,0 +1,149 @@
+/*-
+ * #%L
+ * This is the bioimage.io modelzoo library for ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2020 Center for Systems Biology Dresden
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imagej.modelzoo.benchmark;
+
+import io.bioimage.specification.ModelSpecification;
+import net.imagej.axis.Axes;
+import net.imagej.axis.AxisType;
+import net.imagej.modelzoo.consumer.model.DefaultModelZooModel;
+import net.imagej.modelzoo.consumer.model.node.DefaultImageDataReference;
+import net.imagej.modelzoo.consumer.model.node.InputImageNode;
+import net.imagej.modelzoo.consumer.model.node.ModelZooAxis;
+import net.imagej.modelzoo.consumer.model.node.OutputImageNode;
+import net.imagej.modelzoo.consumer.tiling.TilingAction;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.loops.LoopBuilder;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.Views;
+import org.scijava.io.location.Location;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Fake model with a single XYT input and output node. The prediction either copies
+ * the input or applies a 3x3 mean filter in XY, so that benchmarks measure the
+ * surrounding infrastructure without depending on a deep learning framework.
+ */
+public class BenchmarkModel extends DefaultModelZooModel {
+
+	private final InputImageNode inputNode = new InputImageNode();
+	private final OutputImageNode outputNode = new OutputImageNode();
+	private final boolean convolve;
+
+	public BenchmarkModel(Img<FloatType> input, boolean convolve) {
+		this.convolve = convolve;
+		AxisType[] axisTypes = {Axes.X, Axes.Y, Axes.TIME};
+		for (AxisType axisType : axisTypes) {
+			ModelZooAxis axis = new ModelZooAxis(axisType);
+			if(axisType.equals(Axes.TIME)) {
+				axis.setMin(1);
+				axis.setStep(1);
+				axis.setHalo(0);
+				axis.setTiling(TilingAction.TILE_WITHOUT_PADDING);
+			} else {
+				axis.setMin(16);
+				axis.setStep(16);
+				axis.setHalo(16);
+				axis.setTiling(TilingAction.TILE_WITH_PADDING);
+			}
+			inputNode.addAxis(axis);
+			ModelZooAxis outputAxis = new ModelZooAxis(axisType);
+			outputAxis.setScale(1.);
+			outputAxis.setOffset(0);
+			outputNode.addAxis(outputAxis);
+		}
+		inputNode.setDataMapping(Arrays.asList(axisTypes));
+		inputNode.setData(new DefaultImageDataReference<>(input, new FloatType()));
+		outputNode.setDataMapping(Arrays.asList(axisTypes));
+		outputNode.setReference(inputNode);
+		outputNode.setData(new DefaultImageDataReference<>(input, new FloatType()));
+		inputNodes.add(inputNode);
+		outputNodes.add(outputNode);
+	}
+
+	/**
+	 * @return XYT image filled with reproducible random values
+	 */
+	public static Img<FloatType> createInput(long width, long height, long time) {
+		Img<FloatType> img = ArrayImgs.floats(width, height, time);
+		Random random = new Random(42);
+		for (FloatType pixel : img) pixel.set(random.nextFloat() * 1000);
+		return img;
+	}
+
+	public InputImageNode getInputNode() {
+		return inputNode;
+	}
+
+	public OutputImageNode getOutputNode() {
+		return outputNode;
+	}
+
+	@Override
+	public void loadModel(Location source, String modelName, ModelSpecification specification) {
+	}
+
+	@Override
+	public boolean isInitialized() {
+		return true;
+	}
+
+	@Override
+	public boolean libraryLoaded() {
+		return true;
+	}
+
+	@Override
+	public void predict() {
+		RandomAccessibleInterval<FloatType> input = Views.zeroMin((RandomAccessibleInterval<FloatType>) inputNode.getData().getData());
+		Img<FloatType> output = ArrayImgs.floats(Intervals.dimensionsAsLongArray(input));
+		if(convolve) {
+			RandomAccessible<FloatType> extended = Views.extendBorder(input);
+			for (int x = -1; x <= 1; x++) {
+				for (int y = -1; y <= 1; y++) {
+					RandomAccessibleInterval<FloatType> shifted = Views.interval(Views.translate(extended, x, y, 0), input);
+					LoopBuilder.setImages(shifted, output).forEachPixel((in, out) -> out.setReal(out.getRealFloat() + in.getRealFloat() / 9.f));
+				}
+			}
+		} else {
+			LoopBuilder.setImages(input, output).forEachPixel((in, out) -> out.set(in));
+		}
+		outputNode.setData(new DefaultImageDataReference<>(output, new FloatType()));
+	}
+
+	@Override
+	public boolean reset() {
+		return true;
+	}
+}
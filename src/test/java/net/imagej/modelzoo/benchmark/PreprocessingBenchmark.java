@@ -0,0 +1,157 @@
+/*-
+ * #%L
+ * This is the bioimage.io modelzoo library for ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2020 Center for Systems Biology Dresden
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imagej.modelzoo.benchmark;
+
+import io.bioimage.specification.transformation.ClipTransformation;
+import io.bioimage.specification.transformation.PercentileTransformation;
+import io.bioimage.specification.transformation.ZeroMeanUnitVarianceTransformation;
+import net.imagej.modelzoo.consumer.ModelZooPredictionOptions;
+import net.imagej.modelzoo.consumer.model.node.DefaultImageDataReference;
+import net.imagej.modelzoo.consumer.model.node.InputImageNode;
+import net.imagej.modelzoo.consumer.model.node.processor.DefaultImageNodePreprocessor;
+import net.imagej.modelzoo.plugin.transformation.preprocessing.ClipPreprocessing;
+import net.imagej.modelzoo.plugin.transformation.preprocessing.NormalizePercentilePreprocessing;
+import net.imagej.modelzoo.plugin.transformation.preprocessing.ZeroMeanUnitVariancePreprocessing;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the preprocessing plugins, including the evaluation of their (lazy) result.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PreprocessingBenchmark {
+
+	@Param({"512", "2048"})
+	private int size;
+
+	@Param({"false", "true"})
+	private boolean exactPercentiles;
+
+	private Img<FloatType> input;
+	private BenchmarkModel model;
+	private ModelZooPredictionOptions options;
+
+	@Setup
+	public void setup() {
+		input = BenchmarkModel.createInput(size, size, 1);
+		model = new BenchmarkModel(input, false);
+		options = ModelZooPredictionOptions.options().exactPercentiles(exactPercentiles);
+	}
+
+	@Benchmark
+	public double normalizePercentile() {
+		PercentileTransformation transformation = new PercentileTransformation();
+		transformation.setMinPercentile(3);
+		transformation.setMaxPercentile(99.8);
+		NormalizePercentilePreprocessing preprocessing = new NormalizePercentilePreprocessing();
+		preprocessing.readSpecification(transformation);
+		return run(preprocessing);
+	}
+
+	@Benchmark
+	public double zeroMeanUnitVariance() {
+		ZeroMeanUnitVarianceTransformation transformation = new ZeroMeanUnitVarianceTransformation();
+		transformation.setMean(500);
+		transformation.setStd(280);
+		ZeroMeanUnitVariancePreprocessing preprocessing = new ZeroMeanUnitVariancePreprocessing();
+		preprocessing.readSpecification(transformation);
+		return run(preprocessing);
+	}
+
+	@Benchmark
+	public double clip() {
+		ClipTransformation transformation = new ClipTransformation();
+		transformation.setMin(100);
+		transformation.setMax(900);
+		ClipPreprocessing preprocessing = new ClipPreprocessing();
+		preprocessing.readSpecification(transformation);
+		return run(preprocessing);
+	}
+
+	@Benchmark
+	public double zeroMeanUnitVarianceAndClip() {
+		ZeroMeanUnitVarianceTransformation normalization = new ZeroMeanUnitVarianceTransformation();
+		normalization.setMean(500);
+		normalization.setStd(280);
+		ZeroMeanUnitVariancePreprocessing normalize = new ZeroMeanUnitVariancePreprocessing();
+		normalize.readSpecification(normalization);
+		ClipTransformation clipping = new ClipTransformation();
+		clipping.setMin(-1);
+		clipping.setMax(1);
+		ClipPreprocessing clip = new ClipPreprocessing();
+		clip.readSpecification(clipping);
+		return run(normalize, clip);
+	}
+
+	private double run(DefaultImageNodePreprocessor<?>... preprocessings) {
+		InputImageNode node = model.getInputNode();
+		node.setData(new DefaultImageDataReference<>(input, new FloatType()));
+		for (DefaultImageNodePreprocessor<?> preprocessing : preprocessings) {
+			preprocessing.setup(node, model);
+			preprocessing.run(options.values);
+		}
+		return sum((RandomAccessibleInterval) node.getData().getData());
+	}
+
+	private static <T extends RealType<T>> double sum(RandomAccessibleInterval<T> data) {
+		double sum = 0;
+		for (T pixel : Views.iterable(data)) {
+			sum += pixel.getRealDouble();
+		}
+		return sum;
+	}
+
+	public static void main(String... args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(PreprocessingBenchmark.class.getSimpleName()).build()).run();
+	}
+}
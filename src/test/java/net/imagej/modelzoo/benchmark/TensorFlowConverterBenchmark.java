@@ -0,0 +1,133 @@
+/*-
+ * #%L
+ * This is the bioimage.io modelzoo library for ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2020 Center for Systems Biology Dresden
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imagej.modelzoo.benchmark;
+
+import net.imagej.modelzoo.consumer.model.tensorflow.TensorFlowConverter;
+import net.imagej.tensorflow.TensorFlowService;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.planar.PlanarImgs;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.scijava.Context;
+import org.tensorflow.Tensor;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the bulk copy of {@link net.imglib2.img.array.ArrayImg} / {@link net.imglib2.img.planar.PlanarImg}
+ * storage into a tensor with the generic, pixel by pixel conversion used for views,
+ * and measures the conversion of an image into a tensor and back.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TensorFlowConverterBenchmark {
+
+	// image axes x, y, z (z being the batch axis of the model), tensor axes b, y, x
+	private static final int[] MAPPING = {2, 1, 0};
+
+	@Param({"256", "1024"})
+	private int size;
+
+	private Context context;
+	private Img<FloatType> arrayImg;
+	private Img<FloatType> planarImg;
+	private RandomAccessibleInterval<FloatType> view;
+
+	@Setup
+	public void setup() {
+		context = new Context(TensorFlowService.class);
+		context.service(TensorFlowService.class).loadLibrary();
+		arrayImg = ArrayImgs.floats(size, size, 4);
+		planarImg = PlanarImgs.floats(size, size, 4);
+		int i = 0;
+		for (FloatType pixel : arrayImg) pixel.set(i++ % 4096);
+		i = 0;
+		for (FloatType pixel : planarImg) pixel.set(i++ % 4096);
+		// a view is not backed by native storage and takes the generic path
+		view = Views.zeroMin(arrayImg);
+	}
+
+	@TearDown
+	public void tearDown() {
+		context.dispose();
+	}
+
+	@Benchmark
+	public long arrayImgFastPath() {
+		return convert(arrayImg);
+	}
+
+	@Benchmark
+	public long planarImgFastPath() {
+		return convert(planarImg);
+	}
+
+	@Benchmark
+	public long genericPath() {
+		return convert(view);
+	}
+
+	@Benchmark
+	public RandomAccessibleInterval<FloatType> roundTrip() {
+		try (Tensor<?> tensor = TensorFlowConverter.imageToTensor(arrayImg, MAPPING)) {
+			return TensorFlowConverter.tensorToImage(tensor, MAPPING);
+		}
+	}
+
+	private static long convert(RandomAccessibleInterval<FloatType> image) {
+		try (Tensor<?> tensor = TensorFlowConverter.imageToTensor(image, MAPPING)) {
+			return tensor.numElements();
+		}
+	}
+
+	public static void main(String... args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(TensorFlowConverterBenchmark.class.getSimpleName()).build()).run();
+	}
+}
@@ -0,0 +1,351 @@
+/*-
+ * #%L
+ * This is the bioimage.io modelzoo library for ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2020 Center for Systems Biology Dresden
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imagej.modelzoo.consumer;
+
+import net.imagej.axis.Axes;
+import net.imagej.axis.AxisType;
+import net.imagej.modelzoo.consumer.model.ModelZooModel;
+import net.imagej.modelzoo.consumer.model.node.DefaultImageDataReference;
+import net.imagej.modelzoo.consumer.model.node.ImageDataReference;
+import net.imagej.modelzoo.consumer.model.node.InputImageNode;
+import net.imagej.modelzoo.consumer.model.node.ModelZooAxis;
+import net.imagej.modelzoo.consumer.model.node.ModelZooNode;
+import net.imagej.modelzoo.consumer.model.node.OutputImageNode;
+import net.imagej.modelzoo.consumer.tiling.DefaultTiling;
+import net.imagej.modelzoo.consumer.tiling.TilingAction;
+import io.bioimage.specification.ModelSpecification;
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.converter.Converter;
+import net.imglib2.converter.Converters;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.Views;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.Context;
+import org.scijava.app.StatusService;
+import org.scijava.io.location.Location;
+import org.scijava.log.LogService;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TiledPredictionExecutorTest {
+
+	private Context context;
+
+	@Before
+	public void createContext() {
+		context = new Context(LogService.class, StatusService.class);
+	}
+
+	@After
+	public void disposeContext() {
+		context.dispose();
+	}
+
+	@Test
+	public void testPipelinedMatchesSequential() {
+		IdentityModel sequential = new IdentityModel(createInput());
+		createExecutor(sequential, 0).run();
+		IdentityModel pipelined = new IdentityModel(createInput());
+		createExecutor(pipelined, 2).run();
+		assertTrue(pipelined.predictions.get() > 1);
+		assertEquals(sequential.predictions.get(), pipelined.predictions.get());
+		assertSameImage(sequential.getOutput(), pipelined.getOutput());
+		assertSameImage(createInput(), pipelined.getOutput());
+	}
+
+	@Test
+	public void testPrefetchErrorStopsPipeline() {
+		Img<FloatType> input = createInput();
+		// reading the pixels of the last tile fails
+		Converter<FloatType, FloatType> failing = (in, out) -> {
+			if(in.get() >= input.size() - 1) throw new IllegalArgumentException("Cannot read input");
+			out.set(in);
+		};
+		IdentityModel model = new IdentityModel(Converters.convert((RandomAccessibleInterval<FloatType>) input, failing, new FloatType()));
+		try {
+			createExecutor(model, 2).run();
+			fail();
+		} catch (IllegalArgumentException e) {
+			assertEquals("Cannot read input", e.getMessage());
+		}
+		assertFalse(pipelineThreadsAlive());
+	}
+
+	@Test
+	public void testWriteBackErrorStopsPipeline() {
+		IdentityModel model = new IdentityModel(createInput());
+		Converter<FloatType, FloatType> failing = (in, out) -> {
+			throw new IllegalArgumentException("Cannot write output");
+		};
+		model.prediction = (count, tile) -> count == 2 ? Converters.convert(tile, failing, new FloatType()) : tile;
+		try {
+			createExecutor(model, 1).run();
+			fail();
+		} catch (IllegalArgumentException e) {
+			assertEquals("Cannot write output", e.getMessage());
+		}
+		assertFalse(pipelineThreadsAlive());
+		int predictions = model.predictions.get();
+		assertTrue(predictions < 6);
+	}
+
+	@Test
+	public void testPipelinedTilesAreRequeuedAfterOutOfMemory() {
+		IdentityModel model = new IdentityModel(createInput());
+		model.prediction = (count, tile) -> {
+			if(count == 3) throw new OutOfMemoryError();
+			return tile;
+		};
+		TiledPredictionExecutor executor = createExecutor(model, 2);
+		runAndRetry(executor);
+		assertSameImage(createInput(), model.getOutput());
+	}
+
+	@Test
+	public void testProbingHandlesTensorFlowOutOfMemory() {
+		IdentityModel model = new IdentityModel(createInput());
+		// TensorFlow reports running out of memory as IllegalStateException
+		model.prediction = (count, tile) -> {
+			if(Intervals.numElements(tile) > 32 * 32) throw new IllegalStateException("OOM when allocating tensor");
+			return tile;
+		};
+		TiledPredictionExecutor executor = createExecutor(model, 0);
+		executor.setNumberOfTiles(1);
+		executor.setProbeTiling(true);
+		executor.run();
+		assertTrue(executor.getNumberOfTiles() > 1);
+		assertSameImage(createInput(), model.getOutput());
+	}
+
+	@Test
+	public void testParallelWorkersDoNotStackTiles() {
+		IdentityModel model = new IdentityModel(createInput());
+		model.concurrent = true;
+		TiledPredictionExecutor executor = createExecutor(model, 0);
+		executor.setParallelWorkers(2);
+		executor.setTilesPerBatch(4);
+		executor.run();
+		assertEquals(1, executor.getTilesPerBatch());
+		assertEquals(6, model.predictions.get());
+		assertSameImage(createInput(), model.getOutput());
+	}
+
+	@Test
+	public void testWarmUpUsesFirstPlannedTile() {
+		IdentityModel model = new IdentityModel(createInput());
+		TiledPredictionExecutor executor = createExecutor(model, 0);
+		executor.setWarmUp(true);
+		executor.run();
+
+		IdentityModel plannedModel = new IdentityModel(createInput());
+		DefaultTiling tiling = new DefaultTiling(plannedModel.input, Collections.singletonList(plannedModel.output));
+		tiling.setNumberOfTiles(6);
+		tiling.setBatchSize(10);
+		tiling.init();
+		long[] padded = Intervals.dimensionsAsLongArray(tiling.getTilePlan().get(0).getPaddedInterval());
+		Map<AxisType, Long> expected = new HashMap<>();
+		expected.put(Axes.X, padded[0]);
+		expected.put(Axes.Y, padded[1]);
+		assertEquals(Collections.singletonList(expected), model.warmUps);
+	}
+
+	@Test
+	public void testWarmUpIsSkippedWithoutTiling() {
+		IdentityModel model = new IdentityModel(createInput());
+		TiledPredictionExecutor executor = createExecutor(model, 0);
+		executor.setWarmUp(true);
+		executor.setTilingEnabled(false);
+		executor.run();
+		assertEquals(1, model.predictions.get());
+		assertTrue(model.warmUps.isEmpty());
+	}
+
+	@Test
+	public void testNoWarmUpShapeForEmptyPlan() {
+		IdentityModel model = new IdentityModel(createInput());
+		DefaultTiling tiling = new DefaultTiling(model.input, Collections.singletonList(model.output));
+		tiling.setNumberOfTiles(6);
+		tiling.init();
+		assertNull(TiledPredictionExecutor.getWarmUpShape(model.input, tiling.getTilePlan().subPlan(0, 0)));
+	}
+
+	private TiledPredictionExecutor createExecutor(IdentityModel model, int pipelineDepth) {
+		TiledPredictionExecutor executor = new TiledPredictionExecutor(model, context);
+		executor.setNumberOfTiles(6);
+		executor.setPipelineDepth(pipelineDepth);
+		return executor;
+	}
+
+	/**
+	 * Handles out of memory errors the same way {@link AbstractModelZooPrediction} does
+	 */
+	private static void runAndRetry(TiledPredictionExecutor executor) {
+		while(true) {
+			try {
+				executor.run();
+				return;
+			} catch (OutOfMemoryError e) {
+				assertTrue(executor.increaseTiling());
+			}
+		}
+	}
+
+	private static boolean pipelineThreadsAlive() {
+		return Thread.getAllStackTraces().keySet().stream()
+				.anyMatch(thread -> thread.isAlive() && thread.getName().startsWith("modelzoo-tile-"));
+	}
+
+	private static Img<FloatType> createInput() {
+		Img<FloatType> input = ArrayImgs.floats(64, 48);
+		int i = 0;
+		for (FloatType pixel : input) pixel.set(i++);
+		return input;
+	}
+
+	private static void assertSameImage(RandomAccessibleInterval<FloatType> expected, RandomAccessibleInterval<FloatType> actual) {
+		RandomAccess<FloatType> actualAccess = actual.randomAccess();
+		Cursor<FloatType> cursor = Views.iterable(expected).localizingCursor();
+		while(cursor.hasNext()) {
+			cursor.fwd();
+			actualAccess.setPosition(cursor);
+			assertEquals(cursor.get().get(), actualAccess.get().get(), 0);
+		}
+	}
+
+	/**
+	 * Model with a single XY input, its prediction returns the input tile unless {@link #prediction} changes it.
+	 */
+	static class IdentityModel implements ModelZooModel {
+
+		final InputImageNode input = new InputImageNode();
+		final OutputImageNode output = new OutputImageNode();
+		final AtomicInteger predictions = new AtomicInteger();
+		boolean concurrent = false;
+		final List<Map<AxisType, Long>> warmUps = new ArrayList<>();
+		// called with the number of the prediction (starting at 1) and the input tile
+		BiFunction<Integer, RandomAccessibleInterval<FloatType>, RandomAccessibleInterval<FloatType>> prediction = (count, tile) -> tile;
+
+		IdentityModel(RandomAccessibleInterval<FloatType> data) {
+			List<AxisType> axisTypes = Arrays.asList(Axes.X, Axes.Y);
+			for (AxisType axisType : axisTypes) {
+				ModelZooAxis axis = new ModelZooAxis(axisType);
+				axis.setMin(8);
+				axis.setStep(8);
+				axis.setHalo(4);
+				axis.setTiling(TilingAction.TILE_WITH_PADDING);
+				input.addAxis(axis);
+				ModelZooAxis outputAxis = new ModelZooAxis(axisType);
+				outputAxis.setScale(1.);
+				outputAxis.setOffset(0);
+				output.addAxis(outputAxis);
+			}
+			input.setName("input");
+			input.setDataMapping(axisTypes);
+			input.setData(new DefaultImageDataReference<>(data, new FloatType()));
+			output.setName("output");
+			output.setDataMapping(axisTypes);
+			output.setReference(input);
+			output.setData(new DefaultImageDataReference<>(data, new FloatType()));
+		}
+
+		RandomAccessibleInterval<FloatType> getOutput() {
+			return (RandomAccessibleInterval<FloatType>) output.getData().getData();
+		}
+
+		@Override
+		public void predict() {
+			RandomAccessibleInterval<FloatType> tile = (RandomAccessibleInterval<FloatType>) input.getData().getData();
+			output.setData(new DefaultImageDataReference<>(prediction.apply(predictions.incrementAndGet(), tile), new FloatType()));
+		}
+
+		@Override
+		public void warmUp(Map<AxisType, Long> tileShape) {
+			warmUps.add(tileShape);
+		}
+
+		@Override
+		public boolean supportsConcurrentPrediction() {
+			return concurrent;
+		}
+
+		@Override
+		public List<ImageDataReference<?>> predict(List<ImageDataReference<?>> inputs) {
+			RandomAccessibleInterval<FloatType> tile = (RandomAccessibleInterval<FloatType>) inputs.get(0).getData();
+			return Collections.singletonList(new DefaultImageDataReference<>(prediction.apply(predictions.incrementAndGet(), tile), new FloatType()));
+		}
+
+		@Override
+		public void loadModel(Location location, String modelName, ModelSpecification specification) {
+		}
+
+		@Override
+		public List<ModelZooNode<?>> getInputNodes() {
+			return Collections.singletonList(input);
+		}
+
+		@Override
+		public List<ModelZooNode<?>> getOutputNodes() {
+			return Collections.singletonList(output);
+		}
+
+		@Override
+		public boolean isInitialized() {
+			return true;
+		}
+
+		@Override
+		public boolean libraryLoaded() {
+			return true;
+		}
+
+		@Override
+		public void dispose() {
+		}
+	}
+}
@@ -0,0 +1,102 @@
+/*-
+ * #%L
+ * This is the bioimage.io modelzoo library for ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2020 Center for Systems Biology Dresden
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imagej.modelzoo.consumer.command;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class BatchInputScannerTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testScan() throws IOException {
+		Path root = folder.getRoot().toPath();
+		create(root, "b.tif", "a.tif", "a.json", ".hidden.tif",
+				"sub/c.tif", "sub/deeper/d.tif", "sub/raw/e.tif", ".cache/f.tif", "output/g.tif");
+
+		BatchInputScanner scanner = new BatchInputScanner(root);
+		assertEquals(Arrays.asList("a.json", "a.tif", "b.tif"), scan(scanner));
+
+		scanner.setIncludes("*.tif");
+		assertEquals(Arrays.asList("a.tif", "b.tif"), scan(scanner));
+
+		scanner.setMaxDepth(3);
+		scanner.skipDirectory(root.resolve("output"));
+		assertEquals(Arrays.asList("a.tif", "b.tif", "sub/c.tif", "sub/deeper/d.tif", "sub/raw/e.tif"), scan(scanner));
+
+		scanner.setMaxDepth(2);
+		assertEquals(Arrays.asList("a.tif", "b.tif", "sub/c.tif"), scan(scanner));
+
+		scanner.setMaxDepth(3);
+		scanner.setExcludes("raw, b.*");
+		assertEquals(Arrays.asList("a.tif", "sub/c.tif", "sub/deeper/d.tif"), scan(scanner));
+
+		scanner.setIncludes("sub/**");
+		scanner.setExcludes("");
+		assertEquals(Arrays.asList("sub/c.tif", "sub/deeper/d.tif", "sub/raw/e.tif"), scan(scanner));
+	}
+
+	@Test
+	public void testMirroredPath() {
+		Path root = folder.getRoot().toPath();
+		BatchInputScanner scanner = new BatchInputScanner(root);
+		Path output = root.resolveSibling("out");
+		assertEquals(output.resolve("sub").resolve("c.tif"), scanner.getMirroredPath(output, root.resolve("sub").resolve("c.tif")));
+	}
+
+	private List<String> scan(BatchInputScanner scanner) {
+		List<String> res = new ArrayList<>();
+		Path root = folder.getRoot().toPath();
+		for (Path path : scanner) {
+			res.add(root.relativize(path).toString().replace(File.separatorChar, '/'));
+		}
+		return res;
+	}
+
+	private static void create(Path root, String... files) throws IOException {
+		for (String file : files) {
+			Path path = root.resolve(file);
+			Files.createDirectories(path.getParent());
+			Files.createFile(path);
+		}
+	}
+}
@@ -0,0 +1,100 @@
+/*-
+ * #%L
+ * This is the bioimage.io modelzoo library for ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2020 Center for Systems Biology Dresden
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imagej.modelzoo.consumer.command;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BatchPredictionManifestTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testRestart() throws IOException {
+		File outputDir = folder.newFolder("output");
+		File done = writeFile("done.tif", "a");
+		File failed = writeFile("failed.tif", "b");
+		File changed = writeFile("changed.tif", "c");
+		File missing = writeFile("missing.tif", "d");
+
+		try (BatchPredictionManifest manifest = BatchPredictionManifest.open(outputDir)) {
+			manifest.record(done, "hash", "{a=1}", BatchPredictionManifest.Status.DONE, 10);
+			manifest.record(failed, "hash", "{a=1}", BatchPredictionManifest.Status.FAILED, 5);
+			manifest.record(changed, "hash", "{a=1}", BatchPredictionManifest.Status.DONE, 10);
+		}
+		Files.write(changed.toPath(), "changed".getBytes(StandardCharsets.UTF_8));
+		// simulate a process which died while writing the manifest
+		Files.write(new File(outputDir, BatchPredictionManifest.FILE_NAME).toPath(),
+				"{\"input\":\"".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+		try (BatchPredictionManifest manifest = BatchPredictionManifest.open(outputDir)) {
+			assertTrue(manifest.isDone(done, "hash", "{a=1}"));
+			assertEquals(10, manifest.getEntry(done).getDurationMillis());
+			assertFalse(manifest.isDone(done, "otherHash", "{a=1}"));
+			assertFalse(manifest.isDone(done, "hash", "{a=2}"));
+			assertFalse(manifest.isDone(failed, "hash", "{a=1}"));
+			assertFalse(manifest.isDone(changed, "hash", "{a=1}"));
+			assertFalse(manifest.isDone(missing, "hash", "{a=1}"));
+			manifest.record(failed, "hash", "{a=1}", BatchPredictionManifest.Status.DONE, 7);
+		}
+
+		try (BatchPredictionManifest manifest = BatchPredictionManifest.open(outputDir)) {
+			assertTrue(manifest.isDone(failed, "hash", "{a=1}"));
+		}
+	}
+
+	@Test
+	public void testHash() throws IOException {
+		File a = writeFile("a", "content");
+		File b = writeFile("b", "content");
+		File c = writeFile("c", "other content");
+		assertEquals(BatchPredictionManifest.hash(a), BatchPredictionManifest.hash(b));
+		assertNotEquals(BatchPredictionManifest.hash(a), BatchPredictionManifest.hash(c));
+		assertEquals(64, BatchPredictionManifest.hash(a).length());
+	}
+
+	private File writeFile(String name, String content) throws IOException {
+		File file = folder.newFile(name);
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+		return file;
+	}
+}
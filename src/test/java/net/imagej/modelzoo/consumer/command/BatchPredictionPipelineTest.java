@@ -0,0 +1,146 @@
+/*-
+ * #%L
+ * This is the bioimage.io modelzoo library for ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2020 Center for Systems Biology Dresden
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imagej.modelzoo.consumer.command;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BatchPredictionPipelineTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testFailingFilesAreIsolated() throws IOException, InterruptedException {
+		List<File> files = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			files.add(folder.newFile("file" + i + ".txt"));
+		}
+		File unreadable = files.get(3);
+		File failingPrediction = files.get(7);
+		File unwritable = files.get(11);
+
+		AtomicInteger runningPredictions = new AtomicInteger();
+		AtomicInteger maxRunningPredictions = new AtomicInteger();
+		Map<File, String> written = new ConcurrentHashMap<>();
+
+		BatchPredictionPipeline<String, String> pipeline = new BatchPredictionPipeline<>(
+				file -> {
+					if(file.equals(unreadable)) throw new IOException("cannot read");
+					return file.getName();
+				},
+				(file, input) -> {
+					int running = runningPredictions.incrementAndGet();
+					maxRunningPredictions.accumulateAndGet(running, Math::max);
+					try {
+						Thread.sleep(2);
+						if(file.equals(failingPrediction)) throw new OutOfMemoryError();
+						return input.toUpperCase();
+					} finally {
+						runningPredictions.decrementAndGet();
+					}
+				},
+				(file, output) -> {
+					if(file.equals(unwritable)) throw new IOException("cannot write");
+					written.put(file, output);
+				});
+		pipeline.setReaderThreads(3);
+		pipeline.setWriterThreads(2);
+		pipeline.setQueueCapacity(2);
+		BatchPredictionPipeline.Summary summary = pipeline.run(files);
+
+		assertEquals(1, maxRunningPredictions.get());
+		assertEquals(17, summary.getSucceededCount());
+		assertEquals(3, summary.getFailures().size());
+		assertTrue(summary.getFailures().get(unreadable) instanceof IOException);
+		assertTrue(summary.getFailures().get(failingPrediction) instanceof OutOfMemoryError);
+		assertTrue(summary.getFailures().get(unwritable) instanceof IOException);
+		assertEquals(17, written.size());
+		assertEquals("FILE0.TXT", written.get(files.get(0)));
+		assertFalse(written.containsKey(unwritable));
+		assertTrue(summary.getFilesPerSecond() > 0);
+	}
+
+	@Test
+	public void testInputsAreConsumedLazily() throws InterruptedException {
+		AtomicInteger listed = new AtomicInteger();
+		AtomicInteger maxAhead = new AtomicInteger();
+		AtomicInteger predicted = new AtomicInteger();
+		Iterator<File> files = new Iterator<File>() {
+			@Override
+			public boolean hasNext() {
+				return listed.get() < 100;
+			}
+
+			@Override
+			public File next() {
+				int ahead = listed.incrementAndGet() - predicted.get();
+				maxAhead.accumulateAndGet(ahead, Math::max);
+				return new File("file" + listed.get());
+			}
+		};
+		BatchPredictionPipeline<String, String> pipeline = new BatchPredictionPipeline<>(
+				File::getName,
+				(file, input) -> {
+					Thread.sleep(1);
+					predicted.incrementAndGet();
+					return input;
+				},
+				(file, output) -> {});
+		pipeline.setReaderThreads(2);
+		pipeline.setQueueCapacity(3);
+		BatchPredictionPipeline.Summary summary = pipeline.run(files);
+		assertEquals(100, summary.getSucceededCount());
+		// reading threads + queue + the file currently predicted + the file waiting for a free slot
+		assertTrue(maxAhead.get() <= 2 + 3 + 2);
+	}
+
+	@Test
+	public void testEmpty() throws InterruptedException {
+		BatchPredictionPipeline<String, String> pipeline = new BatchPredictionPipeline<>(
+				File::getName, (file, input) -> input, (file, output) -> {});
+		BatchPredictionPipeline.Summary summary = pipeline.run(new ArrayList<>());
+		assertEquals(0, summary.getSucceededCount());
+		assertEquals(0, summary.getFailures().size());
+	}
+}
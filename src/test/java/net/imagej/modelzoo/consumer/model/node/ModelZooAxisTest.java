@@ -0,0 +1,57 @@
+/*-
+ * #%L
+ * This is the bioimage.io modelzoo library for ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2020 Center for Systems Biology Dresden
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imagej.modelzoo.consumer.model.node;
+
+import net.imagej.axis.Axes;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class ModelZooAxisTest {
+
+	@Test
+	public void testValidSize() {
+		ModelZooAxis axis = new ModelZooAxis(Axes.X);
+		axis.setMin(16);
+		axis.setStep(8);
+		assertEquals(16, axis.getValidSize(1));
+		assertEquals(16, axis.getValidSize(16));
+		assertEquals(24, axis.getValidSize(17));
+		assertEquals(256, axis.getValidSize(256));
+		assertEquals(264, axis.getValidSize(260));
+
+		ModelZooAxis channel = new ModelZooAxis(Axes.CHANNEL);
+		channel.setMin(3);
+		channel.setStep(0);
+		assertEquals(3, channel.getValidSize(256));
+
+		assertEquals(1, new ModelZooAxis(Axes.TIME).getValidSize(10));
+	}
+}
@@ -0,0 +1,151 @@
+/*-
+ * #%L
+ * This is the bioimage.io modelzoo library for ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2020 Center for Systems Biology Dresden
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imagej.modelzoo.consumer.model.tensorflow;
+
+import net.imagej.modelzoo.consumer.model.SessionConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.tensorflow.DataType;
+import org.tensorflow.Graph;
+import org.tensorflow.Output;
+import org.tensorflow.Session;
+import org.tensorflow.Tensor;
+import org.tensorflow.Tensors;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a small convolutional network on the CPU with different session configurations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SessionConfigurationBenchmark {
+
+	private static final int CHANNELS = 16;
+	private static final int LAYERS = 4;
+
+	@Param({"default", "singleThread", "intraOp4", "perSessionThreads", "noConstantFolding", "xlaJit"})
+	private String configuration;
+
+	@Param({"256"})
+	private int size;
+
+	private Graph graph;
+	private Session session;
+	private Tensor<Float> input;
+
+	static SessionConfiguration createConfiguration(String name) {
+		switch (name) {
+			case "singleThread":
+				return new SessionConfiguration().intraOpThreads(1).interOpThreads(1);
+			case "intraOp4":
+				return new SessionConfiguration().intraOpThreads(4).interOpThreads(1);
+			case "perSessionThreads":
+				return new SessionConfiguration().usePerSessionThreads(true);
+			case "noConstantFolding":
+				return new SessionConfiguration().constantFolding(false);
+			case "xlaJit":
+				return new SessionConfiguration().xlaJit(true);
+			default:
+				return new SessionConfiguration();
+		}
+	}
+
+	@Setup
+	public void setup() {
+		Random random = new Random(42);
+		graph = createNetwork(random);
+		session = new Session(graph, TensorFlowSessionPool.createConfigProto(createConfiguration(configuration)).toByteArray());
+		float[][][][] data = new float[1][size][size][1];
+		for (float[][] row : data[0]) {
+			for (float[] pixel : row) {
+				pixel[0] = random.nextFloat();
+			}
+		}
+		input = Tensors.create(data);
+	}
+
+	private static Graph createNetwork(Random random) {
+		Graph graph = new Graph();
+		Output<Float> x = graph.opBuilder("Placeholder", "input").setAttr("dtype", DataType.FLOAT).build().output(0);
+		int channels = 1;
+		for (int i = 0; i < LAYERS; i++) {
+			float[][][][] kernel = new float[3][3][channels][CHANNELS];
+			for (float[][][] kx : kernel) for (float[][] ky : kx) for (float[] kc : ky) for (int c = 0; c < kc.length; c++) {
+				kc[c] = (float) random.nextGaussian() * 0.1f;
+			}
+			try (Tensor<Float> weights = Tensors.create(kernel)) {
+				Output<Float> w = graph.opBuilder("Const", "weights" + i).setAttr("dtype", DataType.FLOAT).setAttr("value", weights).build().output(0);
+				x = graph.opBuilder("Conv2D", "conv" + i).addInput(x).addInput(w)
+						.setAttr("strides", new long[]{1, 1, 1, 1}).setAttr("padding", "SAME").build().output(0);
+				x = graph.opBuilder("Relu", "relu" + i).addInput(x).build().output(0);
+			}
+			channels = CHANNELS;
+		}
+		graph.opBuilder("Identity", "output").addInput(x).build();
+		return graph;
+	}
+
+	@TearDown
+	public void tearDown() {
+		input.close();
+		session.close();
+		graph.close();
+	}
+
+	@Benchmark
+	public long predict() {
+		try (Tensor<?> output = session.runner().feed("input", input).fetch("output").run().get(0)) {
+			return output.numElements();
+		}
+	}
+
+	public static void main(String... args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(SessionConfigurationBenchmark.class.getSimpleName()).build()).run();
+	}
+}
@@ -0,0 +1,85 @@
+/*-
+ * #%L
+ * This is the bioimage.io modelzoo library for ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2020 Center for Systems Biology Dresden
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imagej.modelzoo.consumer.model.tensorflow;
+
+import net.imagej.modelzoo.consumer.model.SessionConfiguration;
+import org.junit.Test;
+import org.tensorflow.framework.ConfigProto;
+import org.tensorflow.framework.OptimizerOptions;
+import org.tensorflow.framework.RewriterConfig;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SessionConfigurationTest {
+
+	@Test
+	public void testDefaults() {
+		Map<String, Object> archiveDefaults = new LinkedHashMap<>();
+		archiveDefaults.put("intraOpThreads", 4);
+		archiveDefaults.put("interOpThreads", 2);
+		archiveDefaults.put("usePerSessionThreads", true);
+		SessionConfiguration defaults = SessionConfiguration.fromMap(archiveDefaults);
+		assertEquals(archiveDefaults, defaults.toMap());
+
+		SessionConfiguration configuration = new SessionConfiguration().intraOpThreads(1).constantFolding(false).withDefaults(defaults);
+		assertEquals(1, (int) configuration.getIntraOpThreads());
+		assertEquals(2, (int) configuration.getInterOpThreads());
+		assertTrue(configuration.getUsePerSessionThreads());
+		assertFalse(configuration.getConstantFolding());
+		assertEquals(configuration, new SessionConfiguration().intraOpThreads(1).constantFolding(false).withDefaults(defaults));
+
+		assertTrue(new SessionConfiguration().withDefaults(null).isEmpty());
+		assertTrue(SessionConfiguration.fromSpecification(null).isEmpty());
+	}
+
+	@Test
+	public void testConfigProto() {
+		ConfigProto empty = TensorFlowSessionPool.createConfigProto(new SessionConfiguration());
+		assertEquals(0, empty.getIntraOpParallelismThreads());
+		assertEquals(RewriterConfig.Toggle.DEFAULT, empty.getGraphOptions().getRewriteOptions().getConstantFolding());
+
+		ConfigProto config = TensorFlowSessionPool.createConfigProto(new SessionConfiguration()
+				.intraOpThreads(4)
+				.interOpThreads(1)
+				.usePerSessionThreads(true)
+				.constantFolding(false)
+				.xlaJit(true));
+		assertEquals(4, config.getIntraOpParallelismThreads());
+		assertEquals(1, config.getInterOpParallelismThreads());
+		assertTrue(config.getUsePerSessionThreads());
+		assertEquals(RewriterConfig.Toggle.OFF, config.getGraphOptions().getRewriteOptions().getConstantFolding());
+		assertEquals(OptimizerOptions.GlobalJitLevel.ON_1, config.getGraphOptions().getOptimizerOptions().getGlobalJitLevel());
+	}
+}
@@ -0,0 +1,163 @@
+/*-
+ * #%L
+ * This is the bioimage.io modelzoo library for ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2020 Center for Systems Biology Dresden
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imagej.modelzoo.consumer.model.tensorflow;
+
+import net.imagej.modelzoo.AbstractModelZooTest;
+import net.imagej.modelzoo.consumer.preprocessing.PointwiseTransform;
+import net.imagej.modelzoo.consumer.preprocessing.PointwiseView;
+import net.imagej.modelzoo.metrics.ModelZooMetrics;
+import net.imagej.tensorflow.TensorFlowService;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.planar.PlanarImgs;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
+import org.junit.Before;
+import org.junit.Test;
+import org.tensorflow.DataType;
+import org.tensorflow.Tensor;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class TensorBufferPoolTest extends AbstractModelZooTest {
+
+	@Before
+	public void loadTensorFlow() {
+		createImageJ();
+		ij.get(TensorFlowService.class).loadLibrary();
+	}
+
+	@Test
+	public void testReuse() {
+		TensorBufferPool pool = new TensorBufferPool();
+		ModelZooMetrics metrics = new ModelZooMetrics();
+		ByteBuffer buffer = pool.acquire(DataType.FLOAT, new long[]{1, 4, 5}, metrics);
+		assertEquals(80, buffer.capacity());
+		pool.release(DataType.FLOAT, new long[]{1, 4, 5}, buffer);
+		assertSame(buffer, pool.acquire(DataType.FLOAT, new long[]{1, 4, 5}, metrics));
+		assertNotSame(buffer, pool.acquire(DataType.FLOAT, new long[]{1, 4, 5}, metrics));
+		assertNotSame(buffer, pool.acquire(DataType.INT32, new long[]{1, 4, 5}, metrics));
+		assertEquals(3, metrics.getCount(ModelZooMetrics.TENSOR_BUFFER_ALLOCATIONS));
+		assertEquals(1, metrics.getCount(ModelZooMetrics.TENSOR_BUFFER_REUSES));
+	}
+
+	@Test
+	public void testClear() {
+		TensorBufferPool pool = new TensorBufferPool();
+		ModelZooMetrics metrics = new ModelZooMetrics();
+		for (int i = 0; i < TensorBufferPool.MAX_SHAPES + 1; i++) {
+			long[] shape = {i + 1};
+			pool.release(DataType.FLOAT, shape, pool.acquire(DataType.FLOAT, shape, metrics));
+		}
+		assertEquals(TensorBufferPool.MAX_SHAPES, pool.getIdleCount());
+		pool.clear();
+		assertEquals(0, pool.getIdleCount());
+	}
+
+	@Test
+	public void testView() {
+		Img<FloatType> img = ArrayImgs.floats(5, 4, 3);
+		fill(img);
+		RandomAccessibleInterval<FloatType> view = Views.zeroMin(Views.interval(img, new long[]{1, 0, 0}, new long[]{3, 3, 2}));
+		TensorBufferPool pool = new TensorBufferPool();
+		ModelZooMetrics metrics = new ModelZooMetrics();
+		assertSameAsGenericConversion(view, new int[]{2, 1, 0}, pool, metrics);
+		assertSameAsGenericConversion(view, new int[]{2, 1, 0}, pool, metrics);
+		assertSameAsGenericConversion(view, new int[]{1, 2, 0}, pool, metrics);
+		assertEquals(2, metrics.getCount(ModelZooMetrics.TENSOR_BUFFER_ALLOCATIONS));
+		assertEquals(1, metrics.getCount(ModelZooMetrics.TENSOR_BUFFER_REUSES));
+		assertEquals(2, pool.getIdleCount());
+	}
+
+	@Test
+	public void testPlanarImg() {
+		Img<FloatType> img = PlanarImgs.floats(5, 4, 3);
+		fill(img);
+		ModelZooMetrics metrics = new ModelZooMetrics();
+		assertSameAsGenericConversion(img, new int[]{2, 1, 0}, new TensorBufferPool(), metrics);
+		assertEquals(1, metrics.getCount(ModelZooMetrics.TENSOR_BUFFER_ALLOCATIONS));
+	}
+
+	@Test
+	public void testPointwiseView() {
+		Img<UnsignedByteType> img = ArrayImgs.unsignedBytes(5, 4, 3);
+		int i = 0;
+		for (UnsignedByteType pixel : img) pixel.set(i++);
+		PointwiseView<?> view = PointwiseView.create(img, PointwiseTransform.affine(0.5, -3).andThen(PointwiseTransform.clamp(0, 20)));
+		assertSameAsGenericConversion(view, new int[]{2, 1, 0}, new TensorBufferPool(), new ModelZooMetrics());
+		assertSameAsGenericConversion(view, new int[]{0, 2, 1}, new TensorBufferPool(), new ModelZooMetrics());
+	}
+
+	@Test
+	public void testIntView() {
+		Img<IntType> img = ArrayImgs.ints(5, 4, 3);
+		int i = 0;
+		for (IntType pixel : img) pixel.set(i++);
+		RandomAccessibleInterval<IntType> view = Views.zeroMin(Views.interval(img, new long[]{1, 1, 0}, new long[]{4, 3, 2}));
+		try (Tensor<?> pooled = TensorFlowConverter.imageToTensor(view, new int[]{2, 1, 0}, new TensorBufferPool(), new ModelZooMetrics());
+		     Tensor<?> generic = TensorFlowConverter.imageToTensor(view, new int[]{2, 1, 0})) {
+			assertArrayEquals(generic.shape(), pooled.shape());
+			IntBuffer expected = IntBuffer.allocate(generic.numElements());
+			IntBuffer actual = IntBuffer.allocate(pooled.numElements());
+			generic.writeTo(expected);
+			pooled.writeTo(actual);
+			assertArrayEquals(expected.array(), actual.array());
+		}
+	}
+
+	private static <T extends RealType<T>> void assertSameAsGenericConversion(RandomAccessibleInterval<T> img, int[] mapping, TensorBufferPool pool, ModelZooMetrics metrics) {
+		try (Tensor<?> pooled = TensorFlowConverter.imageToTensor(img, mapping, pool, metrics);
+		     Tensor<?> generic = TensorFlowConverter.imageToTensor(Views.zeroMin(img), mapping)) {
+			assertArrayEquals(generic.shape(), pooled.shape());
+			assertArrayEquals(toArray(generic), toArray(pooled), 0);
+		}
+	}
+
+	private static float[] toArray(Tensor<?> tensor) {
+		FloatBuffer buffer = FloatBuffer.allocate(tensor.numElements());
+		tensor.writeTo(buffer);
+		return buffer.array();
+	}
+
+	private static void fill(Img<FloatType> img) {
+		int i = 0;
+		for (FloatType pixel : img) pixel.set(i++);
+	}
+}
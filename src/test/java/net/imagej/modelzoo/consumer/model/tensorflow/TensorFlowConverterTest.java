@@ -0,0 +1,100 @@
+/*-
+ * #%L
+ * This is the bioimage.io modelzoo library for ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2020 Center for Systems Biology Dresden
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imagej.modelzoo.consumer.model.tensorflow;
+
+import net.imagej.modelzoo.AbstractModelZooTest;
+import net.imagej.tensorflow.TensorFlowService;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.planar.PlanarImgs;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
+import org.junit.Before;
+import org.junit.Test;
+import org.tensorflow.Tensor;
+
+import java.nio.FloatBuffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class TensorFlowConverterTest extends AbstractModelZooTest {
+
+	@Before
+	public void loadTensorFlow() {
+		createImageJ();
+		ij.get(TensorFlowService.class).loadLibrary();
+	}
+
+	@Test
+	public void testArrayImg() {
+		Img<FloatType> img = ArrayImgs.floats(5, 4, 1);
+		fill(img);
+		// tensor axes: b, y, x
+		assertSameAsGenericConversion(img, new int[]{2, 1, 0});
+	}
+
+	@Test
+	public void testPlanarImg() {
+		Img<FloatType> img = PlanarImgs.floats(5, 4, 3);
+		fill(img);
+		assertSameAsGenericConversion(img, new int[]{2, 1, 0});
+	}
+
+	@Test
+	public void testIncompatibleMapping() {
+		Img<FloatType> img = ArrayImgs.floats(5, 4, 3);
+		fill(img);
+		assertNull(TensorFlowConverter.tensorFromNativeStorage(img, new int[]{0, 1, 2}));
+		// singleton dimensions can be mapped anywhere
+		assertNotNull(TensorFlowConverter.tensorFromNativeStorage(ArrayImgs.floats(5, 4, 1), new int[]{1, 0, 2}));
+	}
+
+	private void assertSameAsGenericConversion(RandomAccessibleInterval<FloatType> img, int[] mapping) {
+		try (Tensor<?> fast = TensorFlowConverter.tensorFromNativeStorage(img, mapping);
+		     Tensor<?> generic = TensorFlowConverter.imageToTensor(Views.zeroMin(img), mapping)) {
+			assertNotNull(fast);
+			assertArrayEquals(generic.shape(), fast.shape());
+			assertArrayEquals(toArray(generic), toArray(fast), 0);
+		}
+	}
+
+	private static float[] toArray(Tensor<?> tensor) {
+		FloatBuffer buffer = FloatBuffer.allocate(tensor.numElements());
+		tensor.writeTo(buffer);
+		return buffer.array();
+	}
+
+	private static void fill(Img<FloatType> img) {
+		int i = 0;
+		for (FloatType pixel : img) pixel.set(i++);
+	}
+}
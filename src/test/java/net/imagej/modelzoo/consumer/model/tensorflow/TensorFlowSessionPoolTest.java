@@ -0,0 +1,143 @@
+/*-
+ * #%L
+ * This is the bioimage.io modelzoo library for ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2020 Center for Systems Biology Dresden
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imagej.modelzoo.consumer.model.tensorflow;
+
+import net.imagej.modelzoo.consumer.model.SessionConfiguration;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.tensorflow.DataType;
+import org.tensorflow.Graph;
+import org.tensorflow.Operation;
+import org.tensorflow.Output;
+import org.tensorflow.SavedModelBundle;
+import org.tensorflow.Session;
+import org.tensorflow.Shape;
+import org.tensorflow.Tensor;
+import org.tensorflow.Tensors;
+import org.tensorflow.framework.GraphDef;
+import org.tensorflow.framework.MetaGraphDef;
+import org.tensorflow.framework.SavedModel;
+import org.tensorflow.util.SaverDef;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class TensorFlowSessionPoolTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testRestoredVariables() throws IOException, InterruptedException {
+		File export = folder.newFolder("model");
+		writeSavedModel(export, new float[]{2, -1, 0.5f});
+		try (SavedModelBundle model = SavedModelBundle.load(export.getAbsolutePath(), "serve")) {
+			float[] expected = predict(model.session());
+			assertArrayEquals(new float[]{2, -2, 1.5f}, expected, 0);
+			SessionConfiguration configuration = new SessionConfiguration().intraOpThreads(1).interOpThreads(1);
+			try (TensorFlowSessionPool pool = new TensorFlowSessionPool(model, 2, configuration)) {
+				assertEquals(2, pool.getSessions().size());
+				for (Session session : pool.getSessions()) {
+					assertArrayEquals(expected, predict(session), 0);
+				}
+				Session session = pool.acquire();
+				assertArrayEquals(expected, predict(session), 0);
+				pool.release(session);
+			}
+		}
+	}
+
+	private static float[] predict(Session session) {
+		try (Tensor<Float> input = Tensors.create(new float[]{1, 2, 3});
+		     Tensor<?> output = session.runner().feed("input", input).fetch("output").run().get(0)) {
+			float[] result = new float[3];
+			output.expect(Float.class).copyTo(result);
+			return result;
+		}
+	}
+
+	/**
+	 * Writes a model multiplying its input with a variable, together with the saver restoring the variable on load.
+	 */
+	private static void writeSavedModel(File export, float[] weights) throws IOException {
+		try (Graph graph = new Graph();
+		     Tensor<Float> initial = Tensors.create(weights);
+		     Tensor<String> prefix = Tensors.create("model");
+		     Tensor<String> names = Tensors.create(new byte[][]{"weights".getBytes()});
+		     Tensor<String> slices = Tensors.create(new byte[][]{new byte[0]})) {
+			Output<?> input = graph.opBuilder("Placeholder", "input").setAttr("dtype", DataType.FLOAT).build().output(0);
+			Output<?> variable = graph.opBuilder("VariableV2", "weights")
+					.setAttr("dtype", DataType.FLOAT).setAttr("shape", Shape.make(weights.length)).build().output(0);
+			Output<?> value = constant(graph, "weights/initial_value", initial);
+			Operation init = graph.opBuilder("Assign", "weights/assign").addInput(variable).addInput(value).build();
+			graph.opBuilder("Mul", "output").addInput(input).addInput(variable).build();
+
+			Output<?> filename = constant(graph, "save/Const", prefix);
+			Output<?> tensorNames = constant(graph, "save/tensor_names", names);
+			Output<?> shapeAndSlices = constant(graph, "save/shape_and_slices", slices);
+			Operation save = graph.opBuilder("SaveV2", "save/SaveV2")
+					.addInput(filename).addInput(tensorNames).addInput(shapeAndSlices)
+					.addInputList(new Output<?>[]{variable}).build();
+			graph.opBuilder("Identity", "save/control_dependency").addInput(filename).addControlInput(save).build();
+			Output<?> restored = graph.opBuilder("RestoreV2", "save/RestoreV2")
+					.addInput(filename).addInput(tensorNames).addInput(shapeAndSlices)
+					.setAttr("dtypes", new DataType[]{DataType.FLOAT}).build().output(0);
+			Operation assign = graph.opBuilder("Assign", "save/Assign").addInput(variable).addInput(restored).build();
+			graph.opBuilder("NoOp", "save/restore_all").addControlInput(assign).build();
+
+			SaverDef saver = SaverDef.newBuilder()
+					.setFilenameTensorName("save/Const:0")
+					.setSaveTensorName("save/control_dependency:0")
+					.setRestoreOpName("save/restore_all")
+					.build();
+			try (Session session = new Session(graph);
+			     Tensor<String> checkpoint = Tensors.create(new File(export, "variables/variables").getAbsolutePath())) {
+				session.runner().addTarget(init).run();
+				session.runner().feed("save/Const", checkpoint).fetch("save/control_dependency").run().forEach(Tensor::close);
+			}
+			MetaGraphDef metaGraph = MetaGraphDef.newBuilder()
+					.setMetaInfoDef(MetaGraphDef.MetaInfoDef.newBuilder().addTags("serve"))
+					.setGraphDef(GraphDef.parseFrom(graph.toGraphDef()))
+					.setSaverDef(saver)
+					.build();
+			SavedModel savedModel = SavedModel.newBuilder().setSavedModelSchemaVersion(1).addMetaGraphs(metaGraph).build();
+			Files.write(new File(export, "saved_model.pb").toPath(), savedModel.toByteArray());
+		}
+	}
+
+	private static Output<?> constant(Graph graph, String name, Tensor<?> value) {
+		return graph.opBuilder("Const", name).setAttr("dtype", value.dataType()).setAttr("value", value).build().output(0);
+	}
+}
@@ -0,0 +1,130 @@
+/*-
+ * #%L
+ * This is the bioimage.io modelzoo library for ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2020 Center for Systems Biology Dresden
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imagej.modelzoo.consumer.preprocessing;
+
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.planar.PlanarImgs;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.Views;
+import org.junit.Test;
+
+import java.nio.FloatBuffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PointwiseViewTest {
+
+	private static final double[] VALUES = {Double.NaN, -300, -2.5, -1, 0, 0.3, 1, 7, 255, 1e6};
+
+	@Test
+	public void testAndThen() {
+		PointwiseTransform[] transforms = {
+				PointwiseTransform.affine(2, -3),
+				PointwiseTransform.affine(-0.5, 10),
+				PointwiseTransform.affine(0, 4),
+				PointwiseTransform.clamp(-2, 5),
+				PointwiseTransform.clamp(0, Double.POSITIVE_INFINITY),
+				PointwiseTransform.clamp(100, 200)
+		};
+		for (PointwiseTransform first : transforms) {
+			for (PointwiseTransform second : transforms) {
+				PointwiseTransform fused = first.andThen(second);
+				for (double value : VALUES) {
+					assertEquals(fused.toString(), second.apply(first.apply(value)), fused.apply(value), 1e-9);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testIdentity() {
+		assertEquals(PointwiseTransform.affine(2, 1), PointwiseTransform.IDENTITY.andThen(PointwiseTransform.affine(2, 1)));
+		assertEquals(PointwiseTransform.affine(2, 1), PointwiseTransform.affine(2, 1).andThen(PointwiseTransform.IDENTITY));
+	}
+
+	@Test
+	public void testFusion() {
+		Img<UnsignedByteType> img = ArrayImgs.unsignedBytes(4, 3);
+		PointwiseView<?> normalized = PointwiseView.create(img, PointwiseTransform.affine(0.5, -1));
+		RandomAccessibleInterval<FloatType> padded = PointwiseView.applyView(normalized, source -> Views.interval(Views.extendMirrorDouble(source), Intervals.createMinMax(0, 0, 7, 2)));
+		PointwiseView<?> clipped = PointwiseView.create(padded, PointwiseTransform.clamp(0, 1));
+		assertSame(img, normalized.getSource());
+		assertTrue(padded instanceof PointwiseView);
+		assertFalse(clipped.getSource() instanceof PointwiseView);
+		assertEquals(PointwiseTransform.affine(0.5, -1).andThen(PointwiseTransform.clamp(0, 1)), clipped.getTransform());
+		assertEquals(8, clipped.dimension(0));
+	}
+
+	@Test
+	public void testWriteArrayImg() {
+		Img<UnsignedByteType> img = ArrayImgs.unsignedBytes(5, 4, 3);
+		fill(img);
+		assertWriteMatchesConversion(PointwiseView.create(img, PointwiseTransform.affine(1. / 7, -20).andThen(PointwiseTransform.clamp(-1, 3))));
+	}
+
+	@Test
+	public void testWritePlanarImg() {
+		Img<FloatType> img = PlanarImgs.floats(5, 4, 3);
+		fill(img);
+		assertWriteMatchesConversion(PointwiseView.create(img, PointwiseTransform.affine(-2, 1)));
+	}
+
+	@Test
+	public void testWriteView() {
+		Img<FloatType> img = ArrayImgs.floats(5, 4, 3);
+		fill(img);
+		PointwiseView<?> view = PointwiseView.create(img, PointwiseTransform.clamp(10, 40));
+		assertWriteMatchesConversion(PointwiseView.applyView(view, source -> Views.zeroMin(Views.interval(source, Intervals.createMinMax(1, 1, 0, 3, 2, 2)))));
+	}
+
+	private static void assertWriteMatchesConversion(RandomAccessibleInterval<FloatType> view) {
+		int size = (int) Intervals.numElements(view);
+		float[] expected = new float[size];
+		int i = 0;
+		for (FloatType pixel : Views.flatIterable(view)) expected[i++] = pixel.get();
+		FloatBuffer actual = FloatBuffer.allocate(size);
+		((PointwiseView<?>) view).writeTo(actual);
+		assertEquals(size, actual.position());
+		assertArrayEquals(expected, actual.array(), 0);
+	}
+
+	private static <T extends RealType<T>> void fill(Img<T> img) {
+		int i = 0;
+		for (T pixel : img) pixel.setReal(i++);
+	}
+}
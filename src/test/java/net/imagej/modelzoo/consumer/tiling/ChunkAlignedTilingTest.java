@@ -0,0 +1,150 @@
+/*-
+ * #%L
+ * This is the bioimage.io modelzoo library for ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2020 Center for Systems Biology Dresden
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imagej.modelzoo.consumer.tiling;
+
+import net.imagej.axis.Axes;
+import net.imagej.axis.AxisType;
+import net.imagej.modelzoo.consumer.model.node.DefaultImageDataReference;
+import net.imagej.modelzoo.consumer.model.node.InputImageNode;
+import net.imagej.modelzoo.consumer.model.node.ModelZooAxis;
+import net.imagej.modelzoo.consumer.model.node.OutputImageNode;
+import net.imagej.modelzoo.consumer.model.prediction.ChunkedImageSource;
+import net.imagej.modelzoo.consumer.model.prediction.ImageInput;
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class ChunkAlignedTilingTest {
+
+	@Test
+	public void testAlignToChunks() {
+		InputImageNode node = createInputNode(Axes.X, Axes.Y);
+		long[] blockSize = {104, 24};
+		long[] tiling = {2, 5};
+		TiledImageDataReference.alignToChunks(node, new int[]{32, 64}, new long[]{200, 120}, blockSize, tiling);
+		// larger than a chunk: multiple of the chunk size
+		assertEquals(96, blockSize[0]);
+		assertEquals(3, tiling[0]);
+		// smaller than a chunk: divisor of the chunk size
+		assertEquals(16, blockSize[1]);
+		assertEquals(8, tiling[1]);
+	}
+
+	@Test
+	public void testChunkedInput() {
+		AtomicInteger readChunks = new AtomicInteger();
+		ChunkedImageSource<FloatType> source = new ChunkedImageSource<FloatType>() {
+			@Override
+			public long[] getDimensions() {
+				return new long[]{200, 120};
+			}
+
+			@Override
+			public int[] getChunkSize() {
+				return new int[]{32, 32};
+			}
+
+			@Override
+			public FloatType getType() {
+				return new FloatType();
+			}
+
+			@Override
+			public void readChunk(RandomAccessibleInterval<FloatType> chunk) {
+				readChunks.incrementAndGet();
+				Cursor<FloatType> cursor = Views.iterable(chunk).localizingCursor();
+				while (cursor.hasNext()) {
+					cursor.fwd();
+					cursor.get().set(cursor.getLongPosition(0) + 1000 * cursor.getLongPosition(1));
+				}
+			}
+		};
+		RandomAccessibleInterval<FloatType> input = new ImageInput<>("input", source, "XY").getImage();
+
+		InputImageNode nodeIn = createInputNode(Axes.X, Axes.Y);
+		OutputImageNode nodeOut = new OutputImageNode();
+		for (ModelZooAxis axis : nodeIn.getAxes()) {
+			ModelZooAxis outputAxis = new ModelZooAxis(axis.getType());
+			outputAxis.setScale(1.);
+			outputAxis.setOffset(0);
+			nodeOut.addAxis(outputAxis);
+		}
+		nodeIn.initializeWithData(new DefaultImageDataReference<>(input, new FloatType()));
+		nodeOut.setDataMapping(nodeIn.getDataMapping());
+		nodeOut.setReference(nodeIn);
+		nodeOut.setData(new DefaultImageDataReference<>(input, new FloatType()));
+		assertArrayEquals(new int[]{32, 32}, nodeIn.getChunkSize());
+
+		DefaultTiling tiling = new DefaultTiling(nodeIn, Collections.singletonList(nodeOut));
+		tiling.setNumberOfTiles(4);
+		tiling.init();
+		// tiles of 104 pixels along X are shrunk to 96 pixels (3 chunks) to match the chunk borders
+		assertEquals(6, tiling.getTilesNum());
+		while(tiling.hasTilesLeft()) {
+			tiling.assignNextTile();
+			nodeOut.setData(new DefaultImageDataReference<>((RandomAccessibleInterval<FloatType>) nodeIn.getData().getData(), new FloatType()));
+			tiling.resolveCurrentTile();
+		}
+		tiling.finish();
+
+		RandomAccessibleInterval<FloatType> output = (RandomAccessibleInterval<FloatType>) nodeOut.getData().getData();
+		RandomAccess<FloatType> outputAccess = output.randomAccess();
+		Cursor<FloatType> cursor = Views.iterable(input).localizingCursor();
+		while(cursor.hasNext()) {
+			cursor.fwd();
+			outputAccess.setPosition(cursor);
+			assertEquals(cursor.get().get(), outputAccess.get().get(), 0);
+		}
+		assertEquals(7 * 4, readChunks.get());
+	}
+
+	private static InputImageNode createInputNode(AxisType... axisTypes) {
+		InputImageNode node = new InputImageNode();
+		for (AxisType axisType : axisTypes) {
+			ModelZooAxis axis = new ModelZooAxis(axisType);
+			axis.setMin(8);
+			axis.setStep(8);
+			axis.setHalo(4);
+			axis.setTiling(TilingAction.TILE_WITH_PADDING);
+			node.addAxis(axis);
+		}
+		node.setDataMapping(Arrays.asList(axisTypes));
+		return node;
+	}
+}
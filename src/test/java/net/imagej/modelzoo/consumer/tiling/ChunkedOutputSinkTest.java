@@ -0,0 +1,130 @@
+/*-
+ * #%L
+ * This is the bioimage.io modelzoo library for ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2020 Center for Systems Biology Dresden
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imagej.modelzoo.consumer.tiling;
+
+import net.imagej.modelzoo.consumer.model.node.InputImageNode;
+import net.imagej.modelzoo.consumer.model.node.OutputImageNode;
+import net.imagej.modelzoo.consumer.model.prediction.N5ImageSink;
+import net.imagej.modelzoo.consumer.model.prediction.N5ImageSource;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Intervals;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.stream.Stream;
+
+import static net.imagej.modelzoo.consumer.tiling.TilingTestFixture.assertOutputMatches;
+import static net.imagej.modelzoo.consumer.tiling.TilingTestFixture.predictIdentity;
+import static net.imagej.modelzoo.consumer.tiling.TilingTestFixture.setupNodes;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ChunkedOutputSinkTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testWriteTilesToN5() throws IOException {
+		Path dataset = predictToN5(ArrayImgs.floats(128, 64));
+		try (Stream<Path> files = Files.walk(dataset)) {
+			assertEquals(2, files.filter(Files::isRegularFile).filter(file -> !file.endsWith("attributes.json")).count());
+		}
+		N5ImageSource<FloatType> source = new N5ImageSource<>(dataset);
+		assertArrayEquals(new long[]{128, 64}, source.getDimensions());
+		assertArrayEquals(new int[]{64, 64}, source.getChunkSize());
+	}
+
+	@Test
+	public void testCropToInputSize() throws IOException {
+		// the input gets expanded to 112x56 to fit the tiles
+		Path dataset = predictToN5(ArrayImgs.floats(100, 50));
+		N5ImageSource<FloatType> source = new N5ImageSource<>(dataset);
+		assertArrayEquals(new long[]{100, 50}, source.getDimensions());
+		// border blocks are truncated to the size of the dataset
+		long pixels = 0;
+		try (Stream<Path> files = Files.walk(dataset)) {
+			for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile).filter(file -> !file.endsWith("attributes.json"))::iterator) {
+				// block header: mode, number of dimensions and size of each dimension, then 4 bytes per pixel
+				pixels += (Files.size(file) - 4 - 4 * 2) / 4;
+			}
+		}
+		assertEquals(100 * 50, pixels);
+	}
+
+	/**
+	 * Predicts the identity of the given input tile by tile into an N5 dataset, the tiles are split after the first tile.
+	 * @return the directory of the dataset
+	 */
+	private Path predictToN5(Img<FloatType> input) throws IOException {
+		int i = 0;
+		for (FloatType pixel : input) pixel.set(i++);
+
+		InputImageNode nodeIn = new InputImageNode();
+		OutputImageNode nodeOut = new OutputImageNode();
+		nodeOut.setName("output");
+		setupNodes(nodeIn, nodeOut, input, 8, 8, 4);
+
+		Path container = folder.getRoot().toPath().resolve("prediction.n5");
+		DefaultTiling tiling = new DefaultTiling(nodeIn, Collections.singletonList(nodeOut));
+		tiling.setOutputSinks(node -> new N5ImageSink<>(container.resolve(node.getName())));
+		tiling.setNumberOfTiles(2);
+		tiling.init();
+
+		// predict the first tile, then split the remaining tiles so that they do not match the blocks of the dataset
+		tiling.assignNextTile();
+		predictIdentity(nodeIn, nodeOut);
+		tiling.resolveCurrentTile();
+		tiling.assignNextTile();
+		assertTrue(tiling.splitRemainingTiles());
+		while(tiling.hasTilesLeft()) {
+			tiling.assignNextTile();
+			predictIdentity(nodeIn, nodeOut);
+			tiling.resolveCurrentTile();
+		}
+		tiling.finish();
+
+		Path dataset = container.resolve("output");
+		assertTrue(Files.exists(container.resolve("attributes.json")));
+		assertTrue(Files.exists(dataset.resolve("attributes.json")));
+		assertArrayEquals(Intervals.dimensionsAsLongArray(input), Intervals.dimensionsAsLongArray(
+				(RandomAccessibleInterval<?>) nodeOut.getData().getData()));
+		assertOutputMatches(input, nodeOut);
+		return dataset;
+	}
+}
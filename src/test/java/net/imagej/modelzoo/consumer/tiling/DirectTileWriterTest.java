@@ -0,0 +1,84 @@
+/*-
+ * #%L
+ * This is the bioimage.io modelzoo library for ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2020 Center for Systems Biology Dresden
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imagej.modelzoo.consumer.tiling;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.real.FloatType;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DirectTileWriterTest {
+
+	@Test
+	public void testCopyIntoCells() {
+		Img<FloatType> source = ArrayImgs.floats(20, 18, 3);
+		int i = 0;
+		for (FloatType pixel : source) pixel.set(i++);
+		Img<FloatType> target = new CellImgFactory<>(new FloatType(), 7, 5, 2).create(40, 30, 3);
+		long[] sourceMin = {4, 4, 0};
+		long[] targetMin = {12, 9, 0};
+		long[] size = {12, 10, 3};
+
+		assertTrue(DirectTileWriter.copy(source, sourceMin, target, targetMin, size));
+
+		RandomAccess<FloatType> sourceAccess = source.randomAccess();
+		Cursor<FloatType> cursor = target.localizingCursor();
+		long[] position = new long[3];
+		while (cursor.hasNext()) {
+			cursor.fwd();
+			cursor.localize(position);
+			boolean inside = true;
+			for (int d = 0; d < 3; d++) {
+				inside &= position[d] >= targetMin[d] && position[d] < targetMin[d] + size[d];
+				position[d] += sourceMin[d] - targetMin[d];
+			}
+			if (inside) {
+				sourceAccess.setPosition(position);
+				assertEquals(sourceAccess.get().get(), cursor.get().get(), 0);
+			} else {
+				assertEquals(0, cursor.get().get(), 0);
+			}
+		}
+	}
+
+	@Test
+	public void testUnsupportedTypes() {
+		Img<IntType> target = new CellImgFactory<>(new IntType(), 8).create(16, 16);
+		assertFalse(DirectTileWriter.copy(ArrayImgs.floats(16, 16), new long[2], target, new long[2], new long[]{16, 16}));
+		assertFalse(DirectTileWriter.copy(ArrayImgs.floats(16, 16), new long[]{4, 4}, ArrayImgs.floats(16, 16), new long[2], new long[]{8, 8}));
+	}
+}
@@ -0,0 +1,97 @@
+/*-
+ * #%L
+ * This is the bioimage.io modelzoo library for ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2020 Center for Systems Biology Dresden
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imagej.modelzoo.consumer.tiling;
+
+import net.imagej.axis.Axes;
+import net.imagej.axis.AxisType;
+import net.imagej.modelzoo.consumer.model.node.DefaultImageDataReference;
+import net.imagej.modelzoo.consumer.model.node.InputImageNode;
+import net.imagej.modelzoo.consumer.model.node.ModelZooAxis;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.type.numeric.real.FloatType;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MinimalOverlapPlannerTest {
+
+	@Test
+	public void testSingleTileIsNotPadded() {
+		long[] dims = {300, 200};
+		MinimalOverlapPlanner planner = new MinimalOverlapPlanner(createNode(dims), dims);
+		TilingOverhead overhead = planner.plan(1);
+		assertArrayEquals(new long[]{1, 1}, overhead.getTiling());
+		assertArrayEquals(new long[]{0, 0}, overhead.getPadding());
+		// only the expansion to a multiple of the step is redundant
+		assertEquals(304 * 208, overhead.getInferenceVoxels());
+		assertEquals(1 - 300. * 200. / (304. * 208.), overhead.getRedundantFraction(), 1e-9);
+
+		overhead = planner.estimate(new long[]{2, 1});
+		assertArrayEquals(new long[]{16, 0}, overhead.getPadding());
+		assertEquals(2 * (160 + 32) * 208, overhead.getInferenceVoxels());
+	}
+
+	@Test
+	public void testPlanHasLeastInferenceVolume() {
+		long[] dims = {500, 300};
+		MinimalOverlapPlanner planner = new MinimalOverlapPlanner(createNode(dims), dims);
+		for (int tilesMin = 1; tilesMin <= 12; tilesMin++) {
+			TilingOverhead plan = planner.plan(tilesMin);
+			long[] tiling = plan.getTiling();
+			assertTrue(tiling[0] * tiling[1] >= tilesMin);
+			for (int x = 1; x <= tilesMin; x++) {
+				for (int y = 1; y <= tilesMin; y++) {
+					if (x * y < tilesMin) continue;
+					assertTrue(plan.getInferenceVoxels() <= planner.estimate(new long[]{x, y}).getInferenceVoxels());
+				}
+			}
+		}
+	}
+
+	private InputImageNode createNode(long[] dims) {
+		InputImageNode node = new InputImageNode();
+		AxisType[] axisTypes = {Axes.X, Axes.Y};
+		for (AxisType axisType : axisTypes) {
+			ModelZooAxis axis = new ModelZooAxis(axisType);
+			axis.setMin(16);
+			axis.setStep(16);
+			axis.setHalo(16);
+			axis.setTiling(TilingAction.TILE_WITH_PADDING);
+			node.addAxis(axis);
+		}
+		node.setDataMapping(Arrays.asList(axisTypes));
+		node.setData(new DefaultImageDataReference<>(ArrayImgs.floats(dims), new FloatType()));
+		return node;
+	}
+}
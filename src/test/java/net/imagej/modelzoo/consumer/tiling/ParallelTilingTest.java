@@ -0,0 +1,127 @@
+/*-
+ * #%L
+ * This is the bioimage.io modelzoo library for ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2020 Center for Systems Biology Dresden
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imagej.modelzoo.consumer.tiling;
+
+import net.imagej.modelzoo.consumer.model.node.ImageDataReference;
+import net.imagej.modelzoo.consumer.model.node.InputImageNode;
+import net.imagej.modelzoo.consumer.model.node.OutputImageNode;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.type.numeric.real.FloatType;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static net.imagej.modelzoo.consumer.tiling.TilingTestFixture.assertOutputMatches;
+import static net.imagej.modelzoo.consumer.tiling.TilingTestFixture.setupNodes;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ParallelTilingTest {
+
+	@Test
+	public void testResolveTilesConcurrently() throws Exception {
+		Img<FloatType> input = createInput();
+		InputImageNode nodeIn = new InputImageNode();
+		OutputImageNode nodeOut = new OutputImageNode();
+		nodeOut.setName("output");
+		setupNodes(nodeIn, nodeOut, input, 8, 8, 8);
+		DefaultTiling tiling = createTiling(nodeIn, nodeOut);
+
+		Queue<TilePlan.Entry> queue = new ConcurrentLinkedQueue<>(tiling.getTilePlan().getEntries());
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+		List<Future<?>> workers = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			workers.add(pool.submit(() -> {
+				TilePlan.Entry entry;
+				while ((entry = queue.poll()) != null) {
+					ImageDataReference<?> tile = tiling.prepareTile(entry);
+					tiling.resolveTile(entry, Collections.singletonList(tile));
+				}
+			}));
+		}
+		for (Future<?> worker : workers) {
+			worker.get();
+		}
+		pool.shutdown();
+		assertEquals(tiling.getTilesTotalCount(), tiling.getDoneTileCount());
+		tiling.finish();
+		assertOutputMatches(input, nodeOut);
+	}
+
+	@Test
+	public void testSplitSkipsResolvedTiles() {
+		Img<FloatType> input = createInput();
+		InputImageNode nodeIn = new InputImageNode();
+		OutputImageNode nodeOut = new OutputImageNode();
+		nodeOut.setName("output");
+		setupNodes(nodeIn, nodeOut, input, 8, 8, 8);
+		DefaultTiling tiling = createTiling(nodeIn, nodeOut);
+
+		TilePlan plan = tiling.getTilePlan();
+		int resolved = plan.size() / 2;
+		for (int i = 0; i < resolved; i++) {
+			TilePlan.Entry entry = plan.get(plan.size() - 1 - i);
+			tiling.resolveTile(entry, Collections.singletonList(tiling.prepareTile(entry)));
+		}
+		assertTrue(tiling.splitRemainingTiles());
+		TilePlan remaining = tiling.getTilePlan();
+		assertEquals(2 * (plan.size() - resolved), remaining.size());
+		assertEquals(resolved + remaining.size(), tiling.getTilesTotalCount());
+		for (TilePlan.Entry entry : remaining) {
+			tiling.resolveTile(entry, Collections.singletonList(tiling.prepareTile(entry)));
+		}
+		assertEquals(tiling.getTilesTotalCount(), tiling.getDoneTileCount());
+		tiling.finish();
+		assertOutputMatches(input, nodeOut);
+	}
+
+	private static Img<FloatType> createInput() {
+		Img<FloatType> input = ArrayImgs.floats(100, 60, 2);
+		int i = 0;
+		for (FloatType pixel : input) pixel.set(i++);
+		return input;
+	}
+
+	private static DefaultTiling createTiling(InputImageNode nodeIn, OutputImageNode nodeOut) {
+		DefaultTiling tiling = new DefaultTiling(nodeIn, Collections.singletonList(nodeOut));
+		tiling.setNumberOfTiles(6);
+		tiling.setBatchSize(1);
+		tiling.init();
+		return tiling;
+	}
+}
@@ -0,0 +1,86 @@
+/*-
+ * #%L
+ * This is the bioimage.io modelzoo library for ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2020 Center for Systems Biology Dresden
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imagej.modelzoo.consumer.tiling;
+
+import net.imagej.modelzoo.consumer.model.node.InputImageNode;
+import net.imagej.modelzoo.consumer.model.node.OutputImageNode;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.type.numeric.real.FloatType;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static net.imagej.modelzoo.consumer.tiling.TilingTestFixture.assertOutputMatches;
+import static net.imagej.modelzoo.consumer.tiling.TilingTestFixture.predictIdentity;
+import static net.imagej.modelzoo.consumer.tiling.TilingTestFixture.setupNodes;
+import static org.junit.Assert.assertEquals;
+
+public class TileBlendingTest {
+
+	@Test
+	public void testLinearWeightsOfNeighborsSumToOne() {
+		int blockSize = 32;
+		int margin = 8;
+		double[] weights = TileBlending.LINEAR.createWeights(blockSize + 2 * margin, margin);
+		// the first tile covers [-margin, blockSize + margin), the second one [blockSize - margin, 2 * blockSize + margin)
+		for (int x = blockSize - margin; x < blockSize + margin; x++) {
+			double first = weights[x + margin];
+			double second = weights[x - blockSize + margin];
+			assertEquals(1, first + second, 1e-9);
+		}
+		assertEquals(1, weights[blockSize / 2 + margin], 0);
+	}
+
+	@Test
+	public void testBlendedTilesMatchInput() {
+		for (TileBlending blending : TileBlending.values()) {
+			Img<FloatType> input = ArrayImgs.floats(100, 60, 2);
+			int i = 0;
+			for (FloatType pixel : input) pixel.set(i++ % 1000);
+			InputImageNode nodeIn = new InputImageNode();
+			OutputImageNode nodeOut = new OutputImageNode();
+			setupNodes(nodeIn, nodeOut, input, 8, 8, 8);
+
+			DefaultTiling tiling = new DefaultTiling(nodeIn, Collections.singletonList(nodeOut));
+			tiling.setNumberOfTiles(6);
+			tiling.setBatchSize(2);
+			tiling.setBlending(blending);
+			tiling.init();
+			while(tiling.hasTilesLeft()) {
+				tiling.assignNextTile();
+				predictIdentity(nodeIn, nodeOut);
+				tiling.resolveCurrentTile();
+			}
+			tiling.finish();
+			assertOutputMatches(input, nodeOut, 1e-2);
+		}
+	}
+}
@@ -0,0 +1,130 @@
+/*-
+ * #%L
+ * This is the bioimage.io modelzoo library for ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2020 Center for Systems Biology Dresden
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imagej.modelzoo.consumer.tiling;
+
+import net.imagej.modelzoo.consumer.model.node.ImageDataReference;
+import net.imagej.modelzoo.consumer.model.node.InputImageNode;
+import net.imagej.modelzoo.consumer.model.node.OutputImageNode;
+import net.imglib2.Interval;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Intervals;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static net.imagej.modelzoo.consumer.tiling.TilingTestFixture.assertOutputMatches;
+import static net.imagej.modelzoo.consumer.tiling.TilingTestFixture.setupNodes;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class TilePlanTest {
+
+	@Test
+	public void testResolveTilesInAnyOrder() {
+		Img<FloatType> input = ArrayImgs.floats(100, 60, 2);
+		int i = 0;
+		for (FloatType pixel : input) pixel.set(i++);
+		InputImageNode nodeIn = new InputImageNode();
+		OutputImageNode nodeOut = new OutputImageNode();
+		nodeOut.setName("output");
+		setupNodes(nodeIn, nodeOut, input, 8, 8, 8);
+
+		DefaultTiling tiling = new DefaultTiling(nodeIn, Collections.singletonList(nodeOut));
+		tiling.setNumberOfTiles(6);
+		tiling.setBatchSize(1);
+		tiling.init();
+		TilePlan plan = tiling.getTilePlan();
+		assertEquals(tiling.getTilesTotalCount(), plan.size());
+
+		List<TilePlan.Entry> entries = new ArrayList<>(plan.getEntries());
+		Collections.reverse(entries);
+		for (TilePlan.Entry entry : entries) {
+			ImageDataReference<?> tile = tiling.prepareTile(entry);
+			assertArrayEquals(Intervals.dimensionsAsLongArray(entry.getPaddedInterval()), Intervals.dimensionsAsLongArray(tile.getData()));
+			tiling.resolveTile(entry, Collections.singletonList(tile));
+		}
+		assertEquals(plan.size(), tiling.getDoneTileCount());
+		tiling.finish();
+		assertOutputMatches(input, nodeOut);
+	}
+
+	@Test
+	public void testSplitAndSerialize() throws IOException, ClassNotFoundException {
+		InputImageNode nodeIn = new InputImageNode();
+		OutputImageNode nodeOut = new OutputImageNode();
+		nodeOut.setName("output");
+		setupNodes(nodeIn, nodeOut, ArrayImgs.floats(100, 60, 2), 8, 8, 8);
+		DefaultTiling tiling = new DefaultTiling(nodeIn, Collections.singletonList(nodeOut));
+		tiling.setNumberOfTiles(6);
+		tiling.setBatchSize(1);
+		tiling.init();
+		TilePlan plan = tiling.getTilePlan();
+
+		List<TilePlan> parts = plan.split(4);
+		assertEquals(4, parts.size());
+		int index = 0;
+		for (TilePlan part : parts) {
+			for (TilePlan.Entry entry : part) {
+				assertEquals(index++, entry.getIndex());
+			}
+		}
+		assertEquals(plan.size(), index);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(plan);
+		}
+		TilePlan copy;
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+			copy = (TilePlan) in.readObject();
+		}
+		assertEquals(plan.size(), copy.size());
+		assertEquals(plan.getOutputNames(), copy.getOutputNames());
+		for (int i = 0; i < plan.size(); i++) {
+			assertIntervalEquals(plan.get(i).getSourceInterval(), copy.get(i).getSourceInterval());
+			assertIntervalEquals(plan.get(i).getPaddedInterval(), copy.get(i).getPaddedInterval());
+			assertIntervalEquals(plan.get(i).getOutputInterval(nodeOut.getName()), copy.get(i).getOutputInterval(nodeOut.getName()));
+		}
+	}
+
+	private static void assertIntervalEquals(Interval expected, Interval actual) {
+		assertArrayEquals(Intervals.minAsLongArray(expected), Intervals.minAsLongArray(actual));
+		assertArrayEquals(Intervals.maxAsLongArray(expected), Intervals.maxAsLongArray(actual));
+	}
+}
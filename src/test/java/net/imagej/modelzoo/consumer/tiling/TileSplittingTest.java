@@ -0,0 +1,141 @@
+/*-
+ * #%L
+ * This is the bioimage.io modelzoo library for ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2020 Center for Systems Biology Dresden
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imagej.modelzoo.consumer.tiling;
+
+import net.imagej.modelzoo.consumer.model.node.InputImageNode;
+import net.imagej.modelzoo.consumer.model.node.OutputImageNode;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.type.numeric.real.FloatType;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static net.imagej.modelzoo.consumer.tiling.TilingTestFixture.assertOutputMatches;
+import static net.imagej.modelzoo.consumer.tiling.TilingTestFixture.predictIdentity;
+import static net.imagej.modelzoo.consumer.tiling.TilingTestFixture.setupNodes;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TileSplittingTest {
+
+	@Test
+	public void testSplitRemainingTilesKeepsResolvedOutput() {
+		Img<FloatType> input = ArrayImgs.floats(128, 64, 2);
+		int i = 0;
+		for (FloatType pixel : input) pixel.set(i++);
+
+		InputImageNode nodeIn = new InputImageNode();
+		OutputImageNode nodeOut = new OutputImageNode();
+		setupNodes(nodeIn, nodeOut, input, 8, 8, 4);
+
+		DefaultTiling tiling = new DefaultTiling(nodeIn, Collections.singletonList(nodeOut));
+		tiling.setNumberOfTiles(2);
+		tiling.setBatchSize(2);
+		tiling.init();
+		assertEquals(2, tiling.getTilesTotalCount());
+
+		// first tile succeeds
+		tiling.assignNextTile();
+		predictIdentity(nodeIn, nodeOut);
+		tiling.resolveCurrentTile();
+
+		// second tile fails, the remaining tile gets split along the batch axis first
+		tiling.assignNextTile();
+		assertTrue(tiling.splitRemainingTiles());
+		assertEquals(1, tiling.getDoneTileCount());
+		assertEquals(3, tiling.getTilesTotalCount());
+		assertEquals(1, tiling.getBatchSize());
+
+		// then along the largest tiled axis
+		assertTrue(tiling.splitRemainingTiles());
+		assertEquals(5, tiling.getTilesTotalCount());
+
+		int predictions = 0;
+		while(tiling.hasTilesLeft()) {
+			tiling.assignNextTile();
+			RandomAccessibleInterval<?> tile = nodeIn.getData().getData();
+			assertEquals(1, tile.dimension(2));
+			predictIdentity(nodeIn, nodeOut);
+			tiling.resolveCurrentTile();
+			predictions++;
+		}
+		tiling.finish();
+		assertEquals(4, predictions);
+		assertEquals(5, tiling.getDoneTileCount());
+		assertOutputMatches(input, nodeOut);
+	}
+
+	@Test
+	public void testSplitStopsAtMinimalTileSize() {
+		Img<FloatType> input = ArrayImgs.floats(32, 32, 1);
+		InputImageNode nodeIn = new InputImageNode();
+		OutputImageNode nodeOut = new OutputImageNode();
+		setupNodes(nodeIn, nodeOut, input, 8, 8, 4);
+		DefaultTiling tiling = new DefaultTiling(nodeIn, Collections.singletonList(nodeOut));
+		tiling.init();
+		tiling.assignNextTile();
+		int splits = 0;
+		while(tiling.splitRemainingTiles()) splits++;
+		// 32x32 -> 8x8, halving X and Y twice each
+		assertEquals(4, splits);
+		assertEquals(16, tiling.getTilesTotalCount());
+		assertFalse(tiling.splitRemainingTiles());
+	}
+
+	@Test
+	public void testResumeWithStackedTiles() {
+		Img<FloatType> input = ArrayImgs.floats(64, 48, 1);
+		int i = 0;
+		for (FloatType pixel : input) pixel.set(i++);
+		InputImageNode nodeIn = new InputImageNode();
+		OutputImageNode nodeOut = new OutputImageNode();
+		setupNodes(nodeIn, nodeOut, input, 8, 8, 4);
+
+		DefaultTiling tiling = new DefaultTiling(nodeIn, Collections.singletonList(nodeOut));
+		tiling.setNumberOfTiles(4);
+		tiling.setTilesPerBatch(4);
+		tiling.init();
+		long total = tiling.getTilesTotalCount();
+		// the first stack fails, continue without stacking
+		tiling.assignNextTile();
+		tiling.resume(1);
+		assertEquals(0, tiling.getDoneTileCount());
+		while(tiling.hasTilesLeft()) {
+			tiling.assignNextTile();
+			predictIdentity(nodeIn, nodeOut);
+			tiling.resolveCurrentTile();
+		}
+		tiling.finish();
+		assertEquals(total, tiling.getDoneTileCount());
+		assertOutputMatches(input, nodeOut);
+	}
+}
@@ -0,0 +1,93 @@
+/*-
+ * #%L
+ * This is the bioimage.io modelzoo library for ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2020 Center for Systems Biology Dresden
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imagej.modelzoo.consumer.tiling;
+
+import net.imagej.modelzoo.consumer.model.node.InputImageNode;
+import net.imagej.modelzoo.consumer.model.node.OutputImageNode;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.type.numeric.real.FloatType;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.stream.Stream;
+
+import static net.imagej.modelzoo.consumer.tiling.TilingTestFixture.assertOutputMatches;
+import static net.imagej.modelzoo.consumer.tiling.TilingTestFixture.predictIdentity;
+import static net.imagej.modelzoo.consumer.tiling.TilingTestFixture.setupNodes;
+import static org.junit.Assert.assertEquals;
+
+public class TiledOutputCacheTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testPredictionsUseSeparateCacheDirectories() throws IOException {
+		Path cacheDir = folder.getRoot().toPath().resolve("cache");
+		Img<FloatType> first = createInput(0);
+		Img<FloatType> second = createInput(1000);
+		OutputImageNode firstOutput = predict(first, cacheDir);
+		// the output of the first prediction might still be in use, e.g. written to disk, during the second one
+		OutputImageNode secondOutput = predict(second, cacheDir);
+		try (Stream<Path> files = Files.list(cacheDir)) {
+			assertEquals(2, files.filter(Files::isDirectory).count());
+		}
+		assertOutputMatches(first, firstOutput);
+		assertOutputMatches(second, secondOutput);
+	}
+
+	private static OutputImageNode predict(Img<FloatType> input, Path cacheDir) {
+		InputImageNode nodeIn = new InputImageNode();
+		OutputImageNode nodeOut = new OutputImageNode();
+		setupNodes(nodeIn, nodeOut, input, 8, 8, 4);
+		DefaultTiling tiling = new DefaultTiling(nodeIn, Collections.singletonList(nodeOut), cacheDir);
+		tiling.setNumberOfTiles(4);
+		tiling.init();
+		while(tiling.hasTilesLeft()) {
+			tiling.assignNextTile();
+			predictIdentity(nodeIn, nodeOut);
+			tiling.resolveCurrentTile();
+		}
+		tiling.finish();
+		return nodeOut;
+	}
+
+	private static Img<FloatType> createInput(int offset) {
+		Img<FloatType> input = ArrayImgs.floats(64, 48);
+		int i = offset;
+		for (FloatType pixel : input) pixel.set(i++);
+		return input;
+	}
+}
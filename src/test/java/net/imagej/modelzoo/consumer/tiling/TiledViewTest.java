@@ -0,0 +1,76 @@
+/*-
+ * #%L
+ * This is the bioimage.io modelzoo library for ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2020 Center for Systems Biology Dresden
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imagej.modelzoo.consumer.tiling;
+
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.TiledView;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Intervals;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class TiledViewTest {
+
+	@Test
+	public void testTileViewsAreReused() {
+		TiledView<FloatType> tiledView = new TiledView<>(ArrayImgs.floats(100, 50), new long[]{32, 32}, new long[]{4, 4});
+		assertArrayEquals(new long[]{4, 2}, Intervals.dimensionsAsLongArray(tiledView));
+		TiledView.TiledViewRandomAccess<FloatType> access = tiledView.randomAccess();
+		access.setPosition(new long[]{3, 1});
+		RandomAccessibleInterval<FloatType> tile = access.get();
+		// the last tile is smaller, tiles are extended by their overlap
+		assertArrayEquals(new long[]{4 + 8, 18 + 8}, Intervals.dimensionsAsLongArray(tile));
+		assertSame(tile, access.get());
+		TiledView.TiledViewRandomAccess<FloatType> otherAccess = tiledView.randomAccess();
+		otherAccess.setPosition(new long[]{3, 1});
+		assertSame(tile, otherAccess.get());
+		access.setPosition(new long[]{1, 0});
+		assertEquals(32 + 8, access.get().dimension(0));
+	}
+
+	@Test
+	public void testManyTilesAreNotCached() {
+		ArrayImg<FloatType, ?> img = ArrayImgs.floats(130, 40);
+		img.getAt(129, 39).set(1);
+		TiledView<FloatType> tiledView = new TiledView<>(img, new long[]{1, 1}, new long[]{0, 0});
+		TiledView.TiledViewRandomAccess<FloatType> access = tiledView.randomAccess();
+		access.setPosition(new long[]{129, 39});
+		RandomAccessibleInterval<FloatType> tile = access.get();
+		assertArrayEquals(new long[]{1, 1}, Intervals.dimensionsAsLongArray(tile));
+		assertEquals(1, tile.getAt(0, 0).get(), 0);
+		assertNotSame(tile, access.get());
+	}
+}
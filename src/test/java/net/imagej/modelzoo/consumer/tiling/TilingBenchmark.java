@@ -0,0 +1,120 @@
+/*-
+ * #%L
+ * This is the bioimage.io modelzoo library for ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2020 Center for Systems Biology Dresden
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imagej.modelzoo.consumer.tiling;
+
+import net.imagej.modelzoo.benchmark.BenchmarkModel;
+import net.imagej.modelzoo.consumer.model.node.ImageDataReference;
+import net.imagej.modelzoo.consumer.model.node.OutputImageNode;
+import net.imglib2.img.Img;
+import net.imglib2.type.numeric.real.FloatType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the creation of the tiled input view and the full tile loop
+ * (assigning, predicting and resolving each tile) with a {@link BenchmarkModel}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TilingBenchmark {
+
+	@Param({"512", "2048"})
+	private int size;
+
+	@Param({"1", "16"})
+	private int numberOfTiles;
+
+	@Param({"1", "4"})
+	private int tilesPerBatch;
+
+	@Param({"false", "true"})
+	private boolean convolve;
+
+	private Img<FloatType> input;
+	private BenchmarkModel model;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		input = BenchmarkModel.createInput(size, size, 1);
+	}
+
+	@Setup(Level.Invocation)
+	public void createModel() {
+		model = new BenchmarkModel(input, convolve);
+	}
+
+	@Benchmark
+	public long createTiledInputView() {
+		List<OutputImageNode> outputNodes = Collections.singletonList(model.getOutputNode());
+		TiledImageDataReference<?> reference = new TiledImageDataReference<>(model.getInputNode(), outputNodes,
+				model.getInputNode().getData(), Collections.singletonList(model.getOutputNode().getData()), null);
+		reference.createTiledInputView(10, new GreedyTilingStrategy(), numberOfTiles);
+		return reference.getTilesTotalCount();
+	}
+
+	@Benchmark
+	public ImageDataReference<?> predictTiles() {
+		DefaultTiling tiling = new DefaultTiling(model.getInputNode(), Collections.singletonList(model.getOutputNode()));
+		tiling.setNumberOfTiles(numberOfTiles);
+		tiling.setTilesPerBatch(tilesPerBatch);
+		tiling.init();
+		while(tiling.hasTilesLeft()) {
+			tiling.assignNextTile();
+			model.predict();
+			tiling.resolveCurrentTile();
+		}
+		tiling.finish();
+		return model.getOutputNode().getData();
+	}
+
+	public static void main(String... args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(TilingBenchmark.class.getSimpleName()).build()).run();
+	}
+}
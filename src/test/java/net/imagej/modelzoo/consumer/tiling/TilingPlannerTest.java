@@ -0,0 +1,88 @@
+/*-
+ * #%L
+ * This is the bioimage.io modelzoo library for ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2020 Center for Systems Biology Dresden
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imagej.modelzoo.consumer.tiling;
+
+import net.imagej.modelzoo.consumer.model.node.InputImageNode;
+import net.imagej.modelzoo.consumer.model.node.OutputImageNode;
+import net.imglib2.img.array.ArrayImgs;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static net.imagej.modelzoo.consumer.tiling.TilingTestFixture.setupNodes;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TilingPlannerTest {
+
+	@Test
+	public void testLargeBudgetUsesSingleTile() {
+		InputImageNode nodeIn = new InputImageNode();
+		OutputImageNode nodeOut = new OutputImageNode();
+		setupNodes(nodeIn, nodeOut, ArrayImgs.floats(256, 256, 4), 16, 16, 16);
+		TilingPlanner planner = new TilingPlanner();
+		TilingPlanner.Plan plan = planner.plan(nodeIn, Collections.singletonList(nodeOut), Long.MAX_VALUE, 10, 1);
+		assertEquals(1, plan.getNumberOfTiles());
+		assertEquals(10, plan.getBatchSize());
+		assertEquals(1, plan.getTilesPerBatch());
+	}
+
+	@Test
+	public void testSmallBudgetSplitsImage() {
+		InputImageNode nodeIn = new InputImageNode();
+		OutputImageNode nodeOut = new OutputImageNode();
+		setupNodes(nodeIn, nodeOut, ArrayImgs.floats(1024, 1024, 4), 16, 16, 16);
+		List<OutputImageNode> outputs = Collections.singletonList(nodeOut);
+		TilingPlanner planner = new TilingPlanner();
+		long budget = planner.estimateBytes(nodeIn, outputs, 1, 1, 1) / 5;
+		TilingPlanner.Plan plan = planner.plan(nodeIn, outputs, budget, 10, 1);
+		assertTrue(plan.getNumberOfTiles() > 1);
+		assertEquals(1, plan.getBatchSize());
+		assertTrue(plan.getEstimatedBytes() <= budget);
+		assertEquals(plan.getEstimatedBytes(), planner.estimateBytes(nodeIn, outputs, plan.getNumberOfTiles(), 1, 1));
+		// the planner prefers fewer, larger tiles
+		assertTrue(plan.getNumberOfTiles() <= 16);
+	}
+
+	@Test
+	public void testRememberPlan() {
+		TilingPlanner planner = new TilingPlanner();
+		String key = TilingPlanner.getKey("model", new long[]{1024, 1024, 4});
+		assertNull(planner.getRememberedPlan(key));
+		TilingPlanner.Plan plan = new TilingPlanner.Plan(4, 2, 1, 100);
+		planner.remember(key, plan);
+		assertSame(plan, planner.getRememberedPlan(key));
+		assertNull(planner.getRememberedPlan(TilingPlanner.getKey("model", new long[]{512, 1024, 4})));
+		planner.forget(key);
+		assertNull(planner.getRememberedPlan(key));
+	}
+}
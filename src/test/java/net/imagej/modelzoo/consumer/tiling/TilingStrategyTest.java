@@ -0,0 +1,88 @@
+/*-
+ * #%L
+ * This is the bioimage.io modelzoo library for ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2020 Center for Systems Biology Dresden
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imagej.modelzoo.consumer.tiling;
+
+import net.imagej.axis.Axes;
+import net.imagej.axis.AxisType;
+import net.imagej.modelzoo.consumer.model.node.DefaultImageDataReference;
+import net.imagej.modelzoo.consumer.model.node.InputImageNode;
+import net.imagej.modelzoo.consumer.model.node.ModelZooAxis;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.type.numeric.real.FloatType;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TilingStrategyTest {
+
+	@Test
+	public void testCubeStrategyMinimizesHalo() {
+		InputImageNode node = createNode(ArrayImgs.floats(300, 300));
+		long[] dims = {300, 300};
+		long[] greedy = new GreedyTilingStrategy().computeTiling(node, Collections.emptyList(), dims, 3);
+		long[] cube = new CubeTilingStrategy().computeTiling(node, Collections.emptyList(), dims, 3);
+		assertArrayEquals(new long[]{2, 2}, greedy);
+		// three tiles of 112 x 300 pixels process less halo than four tiles of 160 x 160 pixels
+		assertTrue(Arrays.equals(new long[]{3, 1}, cube) || Arrays.equals(new long[]{1, 3}, cube));
+	}
+
+	@Test
+	public void testFixedShapeStrategy() {
+		InputImageNode node = createNode(ArrayImgs.floats(1000, 500));
+		long[] dims = {1000, 500};
+		FixedShapeTilingStrategy strategy = new FixedShapeTilingStrategy();
+		strategy.setTileSize(200);
+		// the tile size is rounded down to a multiple of the step (192)
+		assertArrayEquals(new long[]{6, 3}, strategy.computeTiling(node, Collections.emptyList(), dims, 1));
+		long[] tiling = strategy.computeTiling(node, Collections.emptyList(), dims, 40);
+		assertTrue(tiling[0] * tiling[1] >= 40);
+	}
+
+	private InputImageNode createNode(Img<FloatType> input) {
+		InputImageNode node = new InputImageNode();
+		AxisType[] axisTypes = {Axes.X, Axes.Y};
+		for (AxisType axisType : axisTypes) {
+			ModelZooAxis axis = new ModelZooAxis(axisType);
+			axis.setMin(16);
+			axis.setStep(16);
+			axis.setHalo(16);
+			axis.setTiling(TilingAction.TILE_WITH_PADDING);
+			node.addAxis(axis);
+		}
+		node.setDataMapping(Arrays.asList(axisTypes));
+		node.setData(new DefaultImageDataReference<>(input, new FloatType()));
+		return node;
+	}
+}
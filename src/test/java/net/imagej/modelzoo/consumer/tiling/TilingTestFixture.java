@@ -0,0 +1,108 @@
+/*-
+ * #%L
+ * This is the bioimage.io modelzoo library for ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2020 Center for Systems Biology Dresden
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imagej.modelzoo.consumer.tiling;
+
+import net.imagej.axis.Axes;
+import net.imagej.axis.AxisType;
+import net.imagej.modelzoo.consumer.model.node.DefaultImageDataReference;
+import net.imagej.modelzoo.consumer.model.node.InputImageNode;
+import net.imagej.modelzoo.consumer.model.node.ModelZooAxis;
+import net.imagej.modelzoo.consumer.model.node.OutputImageNode;
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Node setup and assertions shared by the tiling tests
+ */
+final class TilingTestFixture {
+
+	private TilingTestFixture() {
+	}
+
+	/**
+	 * Sets up an identity mapping from {@code nodeIn} to {@code nodeOut} with padded X and Y axes
+	 * and, for three dimensional inputs, a time axis which is tiled without padding.
+	 */
+	static void setupNodes(InputImageNode nodeIn, OutputImageNode nodeOut, Img<FloatType> input, int min, int step, int halo) {
+		AxisType[] axisTypes = input.numDimensions() > 2 ?
+				new AxisType[]{Axes.X, Axes.Y, Axes.TIME} : new AxisType[]{Axes.X, Axes.Y};
+		for (AxisType axisType : axisTypes) {
+			ModelZooAxis axis = new ModelZooAxis(axisType);
+			if(axisType.equals(Axes.TIME)) {
+				axis.setMin(1);
+				axis.setStep(1);
+				axis.setHalo(0);
+				axis.setTiling(TilingAction.TILE_WITHOUT_PADDING);
+			} else {
+				axis.setMin(min);
+				axis.setStep(step);
+				axis.setHalo(halo);
+				axis.setTiling(TilingAction.TILE_WITH_PADDING);
+			}
+			nodeIn.addAxis(axis);
+			ModelZooAxis outputAxis = new ModelZooAxis(axisType);
+			outputAxis.setScale(1.);
+			outputAxis.setOffset(0);
+			nodeOut.addAxis(outputAxis);
+		}
+		nodeIn.setDataMapping(Arrays.asList(axisTypes));
+		nodeIn.setData(new DefaultImageDataReference<>(input, new FloatType()));
+		nodeOut.setDataMapping(Arrays.asList(axisTypes));
+		nodeOut.setReference(nodeIn);
+		nodeOut.setData(new DefaultImageDataReference<>(input, new FloatType()));
+	}
+
+	static void predictIdentity(InputImageNode nodeIn, OutputImageNode nodeOut) {
+		RandomAccessibleInterval<FloatType> tile = (RandomAccessibleInterval<FloatType>) nodeIn.getData().getData();
+		nodeOut.setData(new DefaultImageDataReference<>(tile, new FloatType()));
+	}
+
+	static void assertOutputMatches(Img<FloatType> input, OutputImageNode nodeOut) {
+		assertOutputMatches(input, nodeOut, 0);
+	}
+
+	static void assertOutputMatches(Img<FloatType> input, OutputImageNode nodeOut, double delta) {
+		RandomAccessibleInterval<FloatType> output = (RandomAccessibleInterval<FloatType>) nodeOut.getData().getData();
+		RandomAccess<FloatType> outputAccess = output.randomAccess();
+		Cursor<FloatType> cursor = Views.iterable(input).localizingCursor();
+		while(cursor.hasNext()) {
+			cursor.fwd();
+			outputAccess.setPosition(cursor);
+			assertEquals(cursor.get().get(), outputAccess.get().get(), delta);
+		}
+	}
+}
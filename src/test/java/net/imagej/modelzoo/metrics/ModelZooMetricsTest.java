@@ -0,0 +1,123 @@
+/*-
+ * #%L
+ * This is the bioimage.io modelzoo library for ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2020 Center for Systems Biology Dresden
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imagej.modelzoo.metrics;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ModelZooMetricsTest {
+
+	@Test
+	public void testTimingsAndCounters() {
+		ModelZooMetrics metrics = new ModelZooMetrics();
+		List<String> notified = new ArrayList<>();
+		metrics.addListener(new ModelZooMetricsListener() {
+			@Override
+			public void timingRecorded(String metric, long nanos) {
+				notified.add(metric);
+			}
+
+			@Override
+			public void counterIncremented(String metric, long delta, long value) {
+				notified.add(metric + "=" + value);
+			}
+		});
+		for (int i = 1; i <= 100; i++) {
+			metrics.time(ModelZooMetrics.TILE_INFER, i * 1000);
+		}
+		metrics.count(ModelZooMetrics.TILES, 3);
+		metrics.count(ModelZooMetrics.TILES, 2);
+
+		TimingHistogram histogram = metrics.getTiming(ModelZooMetrics.TILE_INFER);
+		assertEquals(100, histogram.getCount());
+		assertEquals(5050000, histogram.getTotalNanos());
+		assertEquals(1000, histogram.getMinNanos());
+		assertEquals(100000, histogram.getMaxNanos());
+		// percentiles are accurate up to a factor of two
+		long median = histogram.getPercentileNanos(50);
+		assertTrue(median >= 50000 && median <= 100000);
+		assertEquals(5, metrics.getCount(ModelZooMetrics.TILES));
+		assertEquals(102, notified.size());
+		assertEquals(ModelZooMetrics.TILES + "=5", notified.get(101));
+
+		metrics.reset();
+		assertNull(metrics.getTiming(ModelZooMetrics.TILE_INFER));
+		assertEquals(0, metrics.getCount(ModelZooMetrics.TILES));
+	}
+
+	@Test
+	public void testTimer() {
+		ModelZooMetrics metrics = new ModelZooMetrics();
+		try (ModelZooMetrics.Timer ignored = metrics.start(ModelZooMetrics.LOAD_MODEL)) {
+			metrics.count(ModelZooMetrics.PREDICTIONS, 1);
+		}
+		assertEquals(1, metrics.getTiming(ModelZooMetrics.LOAD_MODEL).getCount());
+		ModelZooMetrics.disabled().count(ModelZooMetrics.PREDICTIONS, 1);
+		assertEquals(0, ModelZooMetrics.disabled().getCount(ModelZooMetrics.PREDICTIONS));
+	}
+
+	@Test
+	public void testDump() throws IOException {
+		ModelZooMetrics metrics = new ModelZooMetrics();
+		metrics.time(ModelZooMetrics.EXECUTE_GRAPH, 2000000);
+		metrics.count(ModelZooMetrics.BYTES_TO_TENSOR, 1024);
+
+		StringWriter json = new StringWriter();
+		metrics.writeJSON(json);
+		JsonObject parsed = new JsonParser().parse(json.toString()).getAsJsonObject();
+		JsonObject timing = parsed.getAsJsonObject("timings").getAsJsonObject(ModelZooMetrics.EXECUTE_GRAPH);
+		assertEquals(1, timing.get("count").getAsLong());
+		assertEquals(2., timing.get("total_ms").getAsDouble(), 1e-9);
+		assertEquals(1024, parsed.getAsJsonObject("counters").get(ModelZooMetrics.BYTES_TO_TENSOR).getAsLong());
+
+		Path csv = Files.createTempFile("metrics", ".csv");
+		try {
+			metrics.dump(csv);
+			List<String> lines = Files.readAllLines(csv, StandardCharsets.UTF_8);
+			assertEquals(3, lines.size());
+			assertTrue(lines.get(1).startsWith(ModelZooMetrics.EXECUTE_GRAPH + ",timing,1,2.000,"));
+			assertEquals(ModelZooMetrics.BYTES_TO_TENSOR + ",counter,1024,,,,,,,", lines.get(2));
+		} finally {
+			Files.delete(csv);
+		}
+	}
+}
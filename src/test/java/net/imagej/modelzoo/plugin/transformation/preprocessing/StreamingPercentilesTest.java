@@ -0,0 +1,125 @@
+/*-
+ * #%L
+ * This is the bioimage.io modelzoo library for ImageJ.
+ * %%
+ * Copyright (C) 2019 - 2020 Center for Systems Biology Dresden
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imagej.modelzoo.plugin.transformation.preprocessing;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Util;
+import net.imglib2.view.Views;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class StreamingPercentilesTest {
+
+	private final float[] percentiles = {0, 1, 3, 50, 99.8f, 100};
+
+	@Test
+	public void testExactUnsignedShort() {
+		Img<UnsignedShortType> img = ArrayImgs.unsignedShorts(100, 80, 3);
+		Random random = new Random(1);
+		img.forEach(pixel -> pixel.set(random.nextInt(5000)));
+		assertExact(img);
+	}
+
+	@Test
+	public void testExactInt() {
+		Img<IntType> img = new CellImgFactory<>(new IntType(), 16).create(70, 50, 5);
+		Random random = new Random(2);
+		img.forEach(pixel -> pixel.set(random.nextInt()));
+		assertEquals(5 * 4, StreamingPercentiles.splitIntoBlocks(img).size());
+		assertExact(img);
+	}
+
+	@Test
+	public void testExactFloat() {
+		Img<FloatType> img = new CellImgFactory<>(new FloatType(), 32).create(90, 60, 4);
+		Random random = new Random(3);
+		img.forEach(pixel -> pixel.set((float) random.nextGaussian() * 100));
+		assertExact(img);
+	}
+
+	@Test
+	public void testApproximateFloat() {
+		Img<FloatType> img = ArrayImgs.floats(300, 300);
+		Random random = new Random(4);
+		img.forEach(pixel -> pixel.set((float) random.nextGaussian()));
+		float[] sorted = sortedValues(img);
+		double accuracy = 0.005;
+		float[] res = StreamingPercentiles.compute(img, percentiles, accuracy, false);
+		for (int i = 0; i < percentiles.length; i++) {
+			long rank = Math.round((sorted.length - 1) * percentiles[i] / 100.);
+			long lower = Math.max(0, rank - (long) (accuracy * sorted.length));
+			long upper = Math.min(sorted.length - 1, rank + (long) (accuracy * sorted.length));
+			assertTrue(res[i] >= sorted[(int) lower] && res[i] <= sorted[(int) upper]);
+		}
+	}
+
+	@Test
+	public void testSketchMerge() {
+		QuantileSketch sketch1 = new QuantileSketch(200);
+		QuantileSketch sketch2 = new QuantileSketch(200);
+		for (int i = 0; i < 100000; i++) {
+			(i % 2 == 0 ? sketch1 : sketch2).update(i);
+		}
+		sketch1.merge(sketch2);
+		assertEquals(100000, sketch1.getCount());
+		assertEquals(50000, sketch1.getValueAtRank(50000), 100000 * 0.02);
+		assertEquals(99000, sketch1.getValueAtRank(99000), 100000 * 0.02);
+	}
+
+	private <T extends RealType<T>> void assertExact(RandomAccessibleInterval<T> img) {
+		float[] sorted = sortedValues(img);
+		float[] res = StreamingPercentiles.compute(img, percentiles, 0.01, true);
+		for (int i = 0; i < percentiles.length; i++) {
+			int rank = Math.round((sorted.length - 1) * percentiles[i] / 100.f);
+			assertEquals(sorted[rank], res[i], 0);
+		}
+	}
+
+	private <T extends RealType<T>> float[] sortedValues(RandomAccessibleInterval<T> img) {
+		float[] values = new float[(int) Views.iterable(img).size()];
+		Cursor<T> cursor = Views.flatIterable(img).cursor();
+		for (int i = 0; cursor.hasNext(); i++) {
+			values[i] = cursor.next().getRealFloat();
+		}
+		Util.quicksort(values);
+		return values;
+	}
+}